@@ -0,0 +1,31 @@
+package com.eagle.benchmarks;
+
+import com.eagle.user.utils.IdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/** Formatting cost of {@link IdGenerator#generateId}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdGeneratorBenchmark {
+
+    private final IdGenerator<String> idGenerator = new IdGenerator<>(
+            id -> id,
+            id -> Long.parseLong(id.substring(3)),
+            n -> String.format("%05d", n));
+
+    private final Optional<String> lastEntry = Optional.of("EGL01234");
+
+    @Benchmark
+    public String generateNext() {
+        return idGenerator.generateId("EGL", lastEntry);
+    }
+
+    @Benchmark
+    public String generateFirst() {
+        return idGenerator.generateId("EGL", Optional.empty());
+    }
+}
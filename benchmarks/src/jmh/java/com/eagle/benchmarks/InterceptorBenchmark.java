@@ -0,0 +1,114 @@
+package com.eagle.benchmarks;
+
+import com.eagle.user.GlobalUserServiceGrpc;
+import com.eagle.user.UserIdRequest;
+import com.eagle.user.UserList;
+import com.eagle.user.grpc.auth.AdmissionControl;
+import com.eagle.user.grpc.auth.ApiKeyProperties;
+import com.eagle.user.grpc.auth.ConfiguredApiKeyRegistry;
+import com.eagle.user.grpc.interceptors.ApiKeyAuthInterceptor;
+import com.eagle.user.grpc.interceptors.RpcMetricsInterceptor;
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Per-call overhead of the global server interceptors, with a no-op call and handler. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InterceptorBenchmark {
+
+    private static final Metadata.Key<String> API_KEY =
+            Metadata.Key.of("eagle-api-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final ServerCallHandler<UserIdRequest, UserList> handler = (call, headers) -> new ServerCall.Listener<>() {};
+
+    private ApiKeyAuthInterceptor apiKeyAuthInterceptor;
+    private RpcMetricsInterceptor rpcMetricsInterceptor;
+    private Metadata validKey;
+    private Metadata invalidKey;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // sha-256 of "eagle", no limits, so every accepted call measures authentication plus admission
+        ApiKeyProperties properties = new ApiKeyProperties(List.of(new ApiKeyProperties.Client("bench",
+                "e73b48f750be953532c1d1757b5ba081e8a6b0408ea8b4e65ef1e65631a7da06", 0, 0, 0, null)));
+        apiKeyAuthInterceptor = new ApiKeyAuthInterceptor(new ConfiguredApiKeyRegistry(properties),
+                new AdmissionControl(properties, meterRegistry));
+        rpcMetricsInterceptor = new RpcMetricsInterceptor(meterRegistry);
+        validKey = new Metadata();
+        validKey.put(API_KEY, "eagle");
+        invalidKey = new Metadata();
+        invalidKey.put(API_KEY, "wrong");
+    }
+
+    @Benchmark
+    public ServerCall.Listener<UserIdRequest> apiKeyAccepted() {
+        NoopServerCall call = new NoopServerCall();
+        ServerCall.Listener<UserIdRequest> listener = apiKeyAuthInterceptor.interceptCall(call, validKey,
+                (c, headers) -> {
+                    c.close(Status.OK, new Metadata());
+                    return new ServerCall.Listener<>() {};
+                });
+        return listener;
+    }
+
+    @Benchmark
+    public ServerCall.Listener<UserIdRequest> apiKeyRejected() {
+        return apiKeyAuthInterceptor.interceptCall(new NoopServerCall(), invalidKey, handler);
+    }
+
+    @Benchmark
+    public ServerCall.Listener<UserIdRequest> rpcMetrics() {
+        NoopServerCall call = new NoopServerCall();
+        ServerCall.Listener<UserIdRequest> listener = rpcMetricsInterceptor.interceptCall(call, validKey,
+                (c, headers) -> {
+                    c.close(Status.OK, new Metadata());
+                    return new ServerCall.Listener<>() {};
+                });
+        return listener;
+    }
+
+    static final class NoopServerCall extends ServerCall<UserIdRequest, UserList> {
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public void sendMessage(UserList message) {
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return Attributes.EMPTY;
+        }
+
+        @Override
+        public MethodDescriptor<UserIdRequest, UserList> getMethodDescriptor() {
+            return GlobalUserServiceGrpc.getGetGlobalUserMethod();
+        }
+    }
+}
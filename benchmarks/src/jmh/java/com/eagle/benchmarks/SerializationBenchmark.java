@@ -0,0 +1,74 @@
+package com.eagle.benchmarks;
+
+import com.eagle.user.GlobalUser;
+import com.eagle.user.GlobalUserRole;
+import com.eagle.user.UserList;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Encoding and decoding of {@link UserList} responses of various shapes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000"})
+    int users;
+
+    @Param({"1", "4"})
+    int rolesPerUser;
+
+    @Param({"0", "3"})
+    int addressesPerUser;
+
+    @Param({"0", "16384"})
+    int pictureBytes;
+
+    private UserList userList;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        byte[] picture = new byte[pictureBytes];
+        ThreadLocalRandom.current().nextBytes(picture);
+
+        UserList.Builder list = UserList.newBuilder();
+        for (int i = 0; i < users; i++) {
+            GlobalUser.Builder user = GlobalUser.newBuilder()
+                    .setId("EGL" + String.format("%05d", i))
+                    .setUsername("user" + i)
+                    .setFullname("Full Name " + i)
+                    .setDob("1990-01-01")
+                    .setEmail("user" + i + "@eagle.com")
+                    .setMobile(9_000_000_000L + i)
+                    .setActive(true)
+                    .setAccountNonExpired(true)
+                    .setAccountNonLocked(true)
+                    .setCredentialsNonExpired(true)
+                    .setProfilePicture(ByteString.copyFrom(picture));
+            for (int r = 0; r < rolesPerUser; r++) {
+                user.addGlobaluserrole(GlobalUserRole.newBuilder().setId(i * 10L + r).setRolename("ROLE_" + r));
+            }
+            for (int a = 0; a < addressesPerUser; a++) {
+                user.putAddressMap("addr" + a, a + " Eagle Street");
+            }
+            list.addGlobaluser(user);
+        }
+        userList = list.build();
+        encoded = userList.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return userList.toByteArray();
+    }
+
+    @Benchmark
+    public UserList parse() throws InvalidProtocolBufferException {
+        return UserList.parseFrom(encoded);
+    }
+}
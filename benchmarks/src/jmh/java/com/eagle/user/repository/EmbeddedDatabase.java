@@ -0,0 +1,61 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.datasource.SchemaMigrations;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * An embedded Postgres migrated with the service's scripts, with an R2DBC pool over it set up
+ * like the service's, for benchmarks of statements that need a real database.
+ */
+final class EmbeddedDatabase implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final ConnectionPool pool;
+    final DatabaseClient databaseClient;
+    final TransactionalOperator transactionalOperator;
+
+    EmbeddedDatabase(int poolSize) throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        SchemaMigrations.migrate(postgres.getJdbcUrl("postgres", "postgres"), "postgres", "");
+
+        ConnectionFactoryOptions options = ConnectionFactoryOptions
+                .parse("r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres").mutate()
+                .option(ConnectionFactoryOptions.USER, "postgres")
+                .option(ConnectionFactoryOptions.PASSWORD, "")
+                .build();
+        pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(poolSize)
+                .maxSize(poolSize)
+                .build());
+        databaseClient = DatabaseClient.create(pool);
+        transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(pool));
+    }
+
+    /** Runs {@code sql} outside the pool, for setup between iterations. */
+    void execute(String sql) {
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.dispose();
+        postgres.close();
+    }
+}
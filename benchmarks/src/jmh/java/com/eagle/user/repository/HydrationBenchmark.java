@@ -0,0 +1,87 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.GlobalUser;
+import com.eagle.user.GlobalUserRole;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row mapping and in-memory assembly done by {@link UserHydrator} once the parent rows,
+ * roles and addresses have been fetched.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HydrationBenchmark {
+
+    @Param({"100", "1000"})
+    int users;
+
+    @Param({"1", "4"})
+    int rolesPerUser;
+
+    @Param({"0", "3"})
+    int addressesPerUser;
+
+    @Param({"0", "16384"})
+    int pictureBytes;
+
+    private List<SyntheticRow> rows;
+    private Map<String, List<GlobalUserRole>> roles;
+    private Map<String, Map<String, String>> addresses;
+
+    @Setup
+    public void setUp() {
+        byte[] picture = new byte[pictureBytes];
+        ThreadLocalRandom.current().nextBytes(picture);
+
+        rows = new ArrayList<>(users);
+        roles = new HashMap<>();
+        addresses = new HashMap<>();
+        for (int i = 0; i < users; i++) {
+            String id = "EGL" + String.format("%05d", i);
+            Map<String, Object> columns = new HashMap<>();
+            columns.put("id", id);
+            columns.put("username", "user" + i);
+            columns.put("fullname", "Full Name " + i);
+            columns.put("dob", "1990-01-01");
+            columns.put("email", "user" + i + "@eagle.com");
+            columns.put("mobile", 9_000_000_000L + i);
+            columns.put("is_active", true);
+            columns.put("account_non_expired", true);
+            columns.put("account_non_locked", true);
+            columns.put("credential_non_expired", true);
+            columns.put("profile_pic", pictureBytes == 0 ? null : picture);
+            columns.put("profile_pic_hash", null);
+            rows.add(new SyntheticRow(columns));
+
+            List<GlobalUserRole> userRoles = new ArrayList<>();
+            for (int r = 0; r < rolesPerUser; r++) {
+                userRoles.add(GlobalUserRole.newBuilder().setId(i * 10L + r).setRolename("ROLE_" + r).build());
+            }
+            roles.put(id, userRoles);
+
+            Map<String, String> userAddresses = new LinkedHashMap<>();
+            for (int a = 0; a < addressesPerUser; a++) {
+                userAddresses.put("addr" + a, a + " Eagle Street");
+            }
+            addresses.put(id, userAddresses);
+        }
+    }
+
+    @Benchmark
+    public List<GlobalUser> mapAndAssemble() {
+        List<UserRow> parents = new ArrayList<>(rows.size());
+        for (SyntheticRow row : rows) {
+            parents.add(UserRow.of(UserJdbcRepository.RowView.of(row)));
+        }
+        return UserHydrator.assemble(parents, roles, addresses);
+    }
+}
@@ -0,0 +1,58 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.datasource.ShardProperties;
+import com.eagle.user.datasource.ShardRouting;
+import com.eagle.user.metrics.QueryMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id allocation under contention on an embedded Postgres: one row-locked UPSERT of
+ * {@code id_sequence} per id against ids handed out from blocks reserved by
+ * {@link IdBlockAllocator}. Sixteen threads share a pool of sixteen connections, so the
+ * UPSERTs queue on the row lock as concurrent creates do in the service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class IdAllocationBenchmark {
+
+    @Param({"100", "1000"})
+    int blockSize;
+
+    private EmbeddedDatabase database;
+    private IdSequenceRepository sequence;
+    private IdBlockAllocator allocator;
+
+    @Setup
+    public void setUp() throws IOException {
+        database = new EmbeddedDatabase(16);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ShardProperties unsharded = new ShardProperties(List.of(), 1024, Duration.ofSeconds(5), 1_000_000_000L, null);
+        ShardRouting shardRouting = new ShardRouting(unsharded, meterRegistry);
+        sequence = new IdSequenceRepository(database.databaseClient,
+                new QueryMetrics(meterRegistry, Duration.ofSeconds(10)), shardRouting);
+        allocator = new IdBlockAllocator(sequence, shardRouting, unsharded, blockSize, blockSize / 5);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Benchmark
+    public Long rowLockedUpsert() {
+        return sequence.next("SEQ").block();
+    }
+
+    @Benchmark
+    public Long blockAllocator() {
+        return allocator.next("BLK").block();
+    }
+}
@@ -0,0 +1,53 @@
+package com.eagle.user.repository;
+
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+
+import java.util.List;
+import java.util.Map;
+
+/** In-memory {@link Row} so the row mapping code can be measured without a database. */
+final class SyntheticRow implements Row, RowMetadata {
+
+    private final Map<String, Object> columns;
+
+    SyntheticRow(Map<String, Object> columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public <T> T get(int index, Class<T> type) {
+        throw new UnsupportedOperationException("by-name access only");
+    }
+
+    @Override
+    public <T> T get(String name, Class<T> type) {
+        return type.cast(columns.get(name));
+    }
+
+    @Override
+    public RowMetadata getMetadata() {
+        return this;
+    }
+
+    @Override
+    public ColumnMetadata getColumnMetadata(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ColumnMetadata getColumnMetadata(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<? extends ColumnMetadata> getColumnMetadatas() {
+        return List.of();
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return columns.containsKey(name);
+    }
+}
@@ -0,0 +1,75 @@
+package com.eagle.loadtest;
+
+import com.eagle.user.UserServiceApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * user-service started in this JVM behind an in-process gRPC server, backed by a throwaway
+ * Postgres started from the embedded binaries, which the service migrates like any other
+ * database. Nothing listens on a network port, so runs
+ * measure the service and the database without the NIC or another host in the way.
+ */
+final class EmbeddedUserService implements AutoCloseable {
+
+    static final String IN_PROCESS_NAME = "user-service-loadtest";
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedUserService(EmbeddedPostgres postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    static EmbeddedUserService start(int replicas) throws IOException {
+
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+        try {
+            Map<String, Object> properties = new HashMap<>();
+            String url = "r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres";
+            properties.put("spring.r2dbc.url", url);
+            properties.put("spring.r2dbc.username", "postgres");
+            properties.put("spring.r2dbc.password", "");
+            // stand-in replicas: separate pools on the same database, always caught up
+            for (int i = 0; i < replicas; i++) {
+                String replica = "eagle.user.datasource.replicas[" + i + "].";
+                properties.put(replica + "name", "replica-" + (i + 1));
+                properties.put(replica + "url", url);
+                properties.put(replica + "username", "postgres");
+                properties.put(replica + "password", "");
+            }
+            properties.put("grpc.server.port", "-1");
+            properties.put("grpc.server.in-process-name", IN_PROCESS_NAME);
+            properties.put("management.server.port", "-1");
+            properties.put("eureka.client.enabled", "false");
+            properties.put("eagle.user.pictures.root", Files.createTempDirectory("loadtest-pictures").toString());
+            properties.put("logging.level.root", "WARN");
+
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(UserServiceApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties(properties)
+                    .run();
+            return new EmbeddedUserService(postgres, context);
+        } catch (RuntimeException | IOException e) {
+            postgres.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            context.close();
+        } finally {
+            postgres.close();
+        }
+    }
+}
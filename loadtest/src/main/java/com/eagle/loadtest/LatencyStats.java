@@ -0,0 +1,72 @@
+package com.eagle.loadtest;
+
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation latency histograms and outcome counts. Latencies are recorded in microseconds,
+ * from the time a call was scheduled to start, so a server that falls behind the target rate
+ * shows up in the percentiles instead of silently lowering the offered load.
+ */
+final class LatencyStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    LatencyStats() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    void success(Operation operation, long scheduledNanos, long endNanos) {
+        OperationStats s = stats.get(operation);
+        s.latency.recordValue(micros(scheduledNanos, endNanos));
+        s.succeeded.increment();
+    }
+
+    void failure(Operation operation, Throwable error, long scheduledNanos, long endNanos) {
+        OperationStats s = stats.get(operation);
+        s.latency.recordValue(micros(scheduledNanos, endNanos));
+        s.errors.computeIfAbsent(Status.fromThrowable(error).getCode(), code -> new LongAdder()).increment();
+    }
+
+    Map<Operation, Snapshot> snapshot() {
+        Map<Operation, Snapshot> snapshots = new EnumMap<>(Operation.class);
+        stats.forEach((operation, s) -> {
+            Map<Status.Code, Long> errors = new EnumMap<>(Status.Code.class);
+            s.errors.forEach((code, count) -> errors.put(code, count.sum()));
+            snapshots.put(operation, new Snapshot(s.latency.getIntervalHistogram(), s.succeeded.sum(), errors));
+        });
+        return snapshots;
+    }
+
+    private static long micros(long startNanos, long endNanos) {
+        return Math.min(Math.max(0, TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos)), MAX_LATENCY_MICROS);
+    }
+
+    record Snapshot(Histogram latency, long succeeded, Map<Status.Code, Long> errors) {
+
+        long failed() {
+            return errors.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        long total() {
+            return succeeded + failed();
+        }
+    }
+
+    private static final class OperationStats {
+        final Recorder latency = new Recorder(MAX_LATENCY_MICROS, 3);
+        final LongAdder succeeded = new LongAdder();
+        final Map<Status.Code, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,106 @@
+package com.eagle.loadtest;
+
+import com.eagle.user.GlobalUserServiceGrpc;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Issues calls from a single thread, either paced at a fixed rate (open loop) or as fast as
+ * completions free a slot (closed loop). At most {@code concurrency} calls are in flight; in
+ * open loop a call that has to wait for a slot is still timed from its scheduled start.
+ * Calls scheduled during the warmup are issued but not recorded.
+ */
+final class LoadGenerator {
+
+    record Result(Map<Operation, LatencyStats.Snapshot> operations, Duration measured) {}
+
+    private final GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub;
+    private final Workload workload;
+    private final LoadTestConfig config;
+    private final Operation[] picks;
+
+    LoadGenerator(GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub, Workload workload, LoadTestConfig config) {
+        this.stub = stub;
+        this.workload = workload;
+        this.config = config;
+        this.picks = weightedPicks(config.mix());
+    }
+
+    Result run() throws InterruptedException {
+
+        LatencyStats stats = new LatencyStats();
+        Semaphore inFlight = new Semaphore(config.concurrency());
+
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup().toNanos();
+        long end = measureFrom + config.duration().toNanos();
+        long interval = config.openLoop() ? 1_000_000_000L / config.rate() : 0;
+
+        for (long i = 0; ; i++) {
+            long scheduled;
+            if (config.openLoop()) {
+                scheduled = start + i * interval;
+                if (scheduled >= end) break;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                inFlight.acquire();
+            } else {
+                inFlight.acquire();
+                scheduled = System.nanoTime();
+                if (scheduled >= end) {
+                    inFlight.release();
+                    break;
+                }
+            }
+            issue(picks[ThreadLocalRandom.current().nextInt(picks.length)], scheduled, scheduled >= measureFrom,
+                    stats, inFlight);
+        }
+
+        // wait for the calls still in flight
+        inFlight.acquire(config.concurrency());
+        return new Result(stats.snapshot(), config.duration());
+    }
+
+    private void issue(Operation operation, long scheduled, boolean record, LatencyStats stats, Semaphore inFlight) {
+
+        ListenableFuture<?> call;
+        try {
+            call = operation.call(stub, workload);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+
+        Futures.addCallback(call, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object response) {
+                if (record) stats.success(operation, scheduled, System.nanoTime());
+                inFlight.release();
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                if (record) stats.failure(operation, error, scheduled, System.nanoTime());
+                inFlight.release();
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static Operation[] weightedPicks(Map<Operation, Integer> mix) {
+        List<Operation> picks = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) picks.add(operation);
+        });
+        return picks.toArray(Operation[]::new);
+    }
+}
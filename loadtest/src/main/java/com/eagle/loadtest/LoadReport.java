@@ -0,0 +1,134 @@
+package com.eagle.loadtest;
+
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes a run as JSON: the options it ran with, then per operation and in total the call count,
+ * throughput, error rate, errors by status code and latency percentiles in microseconds. Each
+ * histogram is also included in HdrHistogram's compressed encoding, so runs of different builds
+ * can be compared or merged without rerunning them.
+ */
+final class LoadReport {
+
+    private LoadReport() {
+    }
+
+    static String toJson(LoadTestConfig config, int seededUsers, LoadGenerator.Result result) {
+
+        double seconds = result.measured().toNanos() / 1e9;
+        StringBuilder json = new StringBuilder(4096);
+
+        json.append("{\n");
+        json.append("  \"config\": {\n");
+        field(json, 4, "target", config.target()).append(",\n");
+        number(json, 4, "hedgeMillis", config.hedge().toMillis()).append(",\n");
+        field(json, 4, "mode", config.openLoop() ? "open-loop" : "closed-loop").append(",\n");
+        number(json, 4, "replicas", config.replicas()).append(",\n");
+        number(json, 4, "rate", config.rate()).append(",\n");
+        number(json, 4, "concurrency", config.concurrency()).append(",\n");
+        number(json, 4, "warmupSeconds", config.warmup().toMillis() / 1e3).append(",\n");
+        number(json, 4, "durationSeconds", seconds).append(",\n");
+        number(json, 4, "seededUsers", seededUsers).append(",\n");
+        indent(json, 4).append("\"mix\": {");
+        String separator = "";
+        for (Map.Entry<Operation, Integer> weight : config.mix().entrySet()) {
+            json.append(separator).append('"').append(weight.getKey().label()).append("\": ").append(weight.getValue());
+            separator = ", ";
+        }
+        json.append("}\n  },\n");
+
+        Histogram total = new Histogram(3);
+        long totalSucceeded = 0;
+        Map<Status.Code, Long> totalErrors = new EnumMap<>(Status.Code.class);
+
+        json.append("  \"operations\": {\n");
+        separator = "";
+        for (Map.Entry<Operation, LatencyStats.Snapshot> entry : result.operations().entrySet()) {
+            LatencyStats.Snapshot snapshot = entry.getValue();
+            if (snapshot.total() == 0) continue;
+
+            total.add(snapshot.latency());
+            totalSucceeded += snapshot.succeeded();
+            snapshot.errors().forEach((code, count) -> totalErrors.merge(code, count, Long::sum));
+
+            json.append(separator);
+            indent(json, 4).append('"').append(entry.getKey().label()).append("\": ");
+            stats(json, 4, snapshot, seconds);
+            separator = ",\n";
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"total\": ");
+        stats(json, 2, new LatencyStats.Snapshot(total, totalSucceeded, totalErrors), seconds);
+        json.append("\n}\n");
+        return json.toString();
+    }
+
+    private static void stats(StringBuilder json, int depth, LatencyStats.Snapshot snapshot, double seconds) {
+        Histogram latency = snapshot.latency();
+        int inner = depth + 2;
+
+        json.append("{\n");
+        number(json, inner, "calls", snapshot.total()).append(",\n");
+        number(json, inner, "succeeded", snapshot.succeeded()).append(",\n");
+        number(json, inner, "failed", snapshot.failed()).append(",\n");
+        number(json, inner, "throughput", snapshot.total() / seconds).append(",\n");
+        number(json, inner, "errorRate", snapshot.total() == 0 ? 0 : (double) snapshot.failed() / snapshot.total())
+                .append(",\n");
+
+        indent(json, inner).append("\"errors\": {");
+        String separator = "";
+        for (Map.Entry<Status.Code, Long> error : snapshot.errors().entrySet()) {
+            json.append(separator).append('"').append(error.getKey()).append("\": ").append(error.getValue());
+            separator = ", ";
+        }
+        json.append("},\n");
+
+        indent(json, inner).append("\"latencyMicros\": {");
+        json.append("\"min\": ").append(latency.getMinValue());
+        json.append(", \"mean\": ").append(format(latency.getMean()));
+        json.append(", \"p50\": ").append(latency.getValueAtPercentile(50));
+        json.append(", \"p90\": ").append(latency.getValueAtPercentile(90));
+        json.append(", \"p99\": ").append(latency.getValueAtPercentile(99));
+        json.append(", \"p999\": ").append(latency.getValueAtPercentile(99.9));
+        json.append(", \"max\": ").append(latency.getMaxValue());
+        json.append("},\n");
+
+        field(json, inner, "histogram", encode(latency)).append('\n');
+        indent(json, depth).append('}');
+    }
+
+    private static String encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    private static StringBuilder field(StringBuilder json, int depth, String name, String value) {
+        return indent(json, depth).append('"').append(name).append("\": \"").append(value.replace("\"", "\\\"")).append('"');
+    }
+
+    private static StringBuilder number(StringBuilder json, int depth, String name, double value) {
+        return indent(json, depth).append('"').append(name).append("\": ").append(format(value));
+    }
+
+    private static StringBuilder number(StringBuilder json, int depth, String name, long value) {
+        return indent(json, depth).append('"').append(name).append("\": ").append(value);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static StringBuilder indent(StringBuilder json, int depth) {
+        return json.append(" ".repeat(depth));
+    }
+}
@@ -0,0 +1,67 @@
+package com.eagle.loadtest;
+
+import com.eagle.user.GlobalUserServiceGrpc;
+import com.eagle.user.client.EurekaNameResolverProvider;
+import com.eagle.user.client.UserServiceChannels;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.MetadataUtils;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a mix of {@code GlobalUserService} RPCs and prints or writes a JSON latency report.
+ * Without {@code --target} the service is started in-process on an embedded Postgres.
+ */
+public class LoadTestApplication {
+
+    private static final Metadata.Key<String> API_KEY =
+            Metadata.Key.of("eagle-api-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    public static void main(String[] args) throws Exception {
+
+        LoadTestConfig config = LoadTestConfig.parse(args);
+
+        try (EmbeddedUserService server = config.inProcess() ? EmbeddedUserService.start(config.replicas()) : null) {
+
+            ManagedChannel channel = channel(config);
+            try {
+                Metadata headers = new Metadata();
+                headers.put(API_KEY, config.apiKey());
+
+                Workload workload = Workload.seed(GlobalUserServiceGrpc.newStub(channel)
+                        .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers)), config.seedUsers());
+
+                LoadGenerator generator = new LoadGenerator(GlobalUserServiceGrpc.newFutureStub(channel)
+                        .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers)), workload, config);
+
+                String report = LoadReport.toJson(config, workload.size(), generator.run());
+                if (config.out() == null) {
+                    System.out.print(report);
+                } else {
+                    Files.writeString(config.out(), report);
+                }
+            } finally {
+                channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static ManagedChannel channel(LoadTestConfig config) {
+        if (config.inProcess()) {
+            return InProcessChannelBuilder.forName(EmbeddedUserService.IN_PROCESS_NAME).build();
+        }
+        if (config.target().startsWith(EurekaNameResolverProvider.SCHEME + "://")) {
+            URI target = URI.create(config.target());
+            UserServiceChannels.Builder channel = UserServiceChannels.builder(target.getAuthority())
+                    .application(target.getPath().substring(1));
+            if (!config.hedge().isZero()) channel.hedgeReads(config.hedge());
+            return channel.build();
+        }
+        return ManagedChannelBuilder.forTarget(config.target()).usePlaintext().build();
+    }
+}
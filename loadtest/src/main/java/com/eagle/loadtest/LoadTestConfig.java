@@ -0,0 +1,111 @@
+package com.eagle.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Command line options, given as {@code --name=value}.
+ * <pre>
+ *   --target=in-process      or host:port of a running user-service, or
+ *                            eureka://host:port/user-service to spread calls over every
+ *                            registered instance (see the user-client module)
+ *   --hedge=0ms              eureka targets only: hedge idempotent reads after this delay, 0 off
+ *   --api-key=eagle          sent as eagle-api-key on every call
+ *   --replicas=0             in-process only: read replicas to configure, all backed by the
+ *                            embedded database, to exercise read routing and replica pools
+ *   --rate=0                 calls per second (open loop); 0 runs closed loop at --concurrency
+ *   --concurrency=64         calls in flight, the upper bound in open loop
+ *   --warmup=10s --duration=60s
+ *   --seed-users=1000        users imported before the run, the pool reads and updates pick from
+ *   --mix=auth:60,get:20,update:10,create:5,list:5
+ *   --out=path.json          report file, stdout when absent
+ * </pre>
+ */
+public record LoadTestConfig(String target,
+                             Duration hedge,
+                             String apiKey,
+                             int replicas,
+                             int rate,
+                             int concurrency,
+                             Duration warmup,
+                             Duration duration,
+                             int seedUsers,
+                             Map<Operation, Integer> mix,
+                             Path out) {
+
+    public static final String IN_PROCESS = "in-process";
+
+    public boolean inProcess() {
+        return IN_PROCESS.equals(target);
+    }
+
+    public boolean openLoop() {
+        return rate > 0;
+    }
+
+    public static LoadTestConfig parse(String[] args) {
+        String target = IN_PROCESS;
+        Duration hedge = Duration.ZERO;
+        String apiKey = "eagle";
+        int replicas = 0;
+        int rate = 0;
+        int concurrency = 64;
+        Duration warmup = Duration.ofSeconds(10);
+        Duration duration = Duration.ofSeconds(60);
+        int seedUsers = 1000;
+        Map<Operation, Integer> mix = parseMix("auth:60,get:20,update:10,create:5,list:5");
+        Path out = null;
+
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "target" -> target = value;
+                case "hedge" -> hedge = parseDuration(value);
+                case "api-key" -> apiKey = value;
+                case "replicas" -> replicas = Integer.parseInt(value);
+                case "rate" -> rate = Integer.parseInt(value);
+                case "concurrency" -> concurrency = Integer.parseInt(value);
+                case "warmup" -> warmup = parseDuration(value);
+                case "duration" -> duration = parseDuration(value);
+                case "seed-users" -> seedUsers = Integer.parseInt(value);
+                case "mix" -> mix = parseMix(value);
+                case "out" -> out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        if (concurrency < 1) throw new IllegalArgumentException("--concurrency must be at least 1");
+        if (seedUsers < 1) throw new IllegalArgumentException("--seed-users must be at least 1");
+
+        return new LoadTestConfig(target, hedge, apiKey, replicas, rate, concurrency, warmup, duration, seedUsers, mix, out);
+    }
+
+    static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) throw new IllegalArgumentException("Expected op:weight in --mix, got: " + entry);
+            int weight = Integer.parseInt(parts[1]);
+            if (weight > 0) mix.put(Operation.byName(parts[0]), weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("--mix has no operation with a positive weight");
+        return mix;
+    }
+
+    static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Expected a duration like 500ms, 30s or 5m, got: " + value);
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.eagle.loadtest;
+
+import com.eagle.user.*;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.FieldMask;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/** The RPCs the generator drives, each building its request from the seeded {@link Workload}. */
+public enum Operation {
+
+    /** Username lookup done by the auth server on every login. */
+    AUTH("auth") {
+        @Override
+        ListenableFuture<?> call(GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub, Workload workload) {
+            return stub.getUserNameForToken(TokenUsernameRequest.newBuilder()
+                    .setUsername(workload.randomUser().username())
+                    .build());
+        }
+    },
+
+    /** Password check; bcrypt bound, so it exercises the hashing pool and its queue limit. */
+    VERIFY("verify") {
+        @Override
+        ListenableFuture<?> call(GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub, Workload workload) {
+            return stub.verifyCredentials(VerifyCredentialsRequest.newBuilder()
+                    .setUsername(workload.randomUser().username())
+                    .setPassword(Workload.PASSWORD)
+                    .build());
+        }
+    },
+
+    GET("get") {
+        @Override
+        ListenableFuture<?> call(GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub, Workload workload) {
+            return stub.getGlobalUser(UserIdRequest.newBuilder()
+                    .setId(workload.randomUser().id())
+                    .build());
+        }
+    },
+
+    /** Whole-table read, limited to a few columns so the seeded pool size sets the response size. */
+    LIST("list") {
+        @Override
+        ListenableFuture<?> call(GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub, Workload workload) {
+            return stub.getAllGlobalUsers(ListUsersRequest.newBuilder()
+                    .setReadMask(FieldMask.newBuilder().addPaths("id").addPaths("username").addPaths("fullname"))
+                    .build());
+        }
+    },
+
+    /** Typeahead over the in-memory index, with the first characters of a seeded username. */
+    SEARCH("search") {
+        @Override
+        ListenableFuture<?> call(GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub, Workload workload) {
+            String username = workload.randomUser().username();
+            return stub.searchGlobalUsers(SearchUsersRequest.newBuilder()
+                    .setQuery(username.substring(0, Math.min(username.length(), 12)))
+                    .setLimit(10)
+                    .build());
+        }
+    },
+
+    CREATE("create") {
+        @Override
+        ListenableFuture<?> call(GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub, Workload workload) {
+            return stub.addGlobalUser(workload.newUser());
+        }
+    },
+
+    UPDATE("update") {
+        @Override
+        ListenableFuture<?> call(GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub, Workload workload) {
+            return stub.updateGlobalUser(UpdateUserRequest.newBuilder()
+                    .setId(workload.randomUser().id())
+                    .setFullname("Load User " + ThreadLocalRandom.current().nextInt(1_000_000))
+                    .setUpdateMask(FieldMask.newBuilder().addPaths("fullname"))
+                    .build());
+        }
+    };
+
+    private final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    abstract ListenableFuture<?> call(GlobalUserServiceGrpc.GlobalUserServiceFutureStub stub, Workload workload);
+
+    static Operation byName(String label) {
+        for (Operation operation : values()) {
+            if (operation.label.equals(label)) return operation;
+        }
+        throw new IllegalArgumentException("Unknown operation: " + label);
+    }
+}
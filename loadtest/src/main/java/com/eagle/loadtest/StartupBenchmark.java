@@ -0,0 +1,319 @@
+package com.eagle.loadtest;
+
+import com.eagle.user.GlobalUserServiceGrpc;
+import com.eagle.user.SearchUsersRequest;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.stub.MetadataUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Cold-starts a service repeatedly in each startup mode and measures the time from process
+ * launch to the first successful call: {@code searchGlobalUsers} for user-service (served from
+ * memory, so no database is needed), {@code GET /eureka/apps} for discovery-server.
+ * <pre>
+ *   --service=user-service   or discovery-server
+ *   --modes=jar,cds,cds-aot,native
+ *                            modes whose build output is missing are skipped
+ *   --runs=10 --timeout=120s
+ *   --api-key=eagle
+ *   --out=path.json          report file, stdout when absent
+ * </pre>
+ * Build first, from the repository root, e.g.
+ * {@code ./gradlew :user-service:cdsArchive -Paot :user-service:nativeCompile -Pnative}.
+ */
+public class StartupBenchmark {
+
+    private static final Metadata.Key<String> API_KEY =
+            Metadata.Key.of("eagle-api-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    enum Mode {
+        JAR("jar"), CDS("cds"), CDS_AOT("cds-aot"), NATIVE("native");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        static Mode byLabel(String label) {
+            return Arrays.stream(values()).filter(mode -> mode.label.equals(label)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown mode: " + label));
+        }
+    }
+
+    record Service(String name, String mainClass, boolean grpc) {
+
+        static Service byName(String name) {
+            return switch (name) {
+                case "user-service" -> new Service(name, "com.eagle.user.UserServiceApplication", true);
+                case "discovery-server" -> new Service(name, "com.eagle.discovery.DiscoveryApplication", false);
+                default -> throw new IllegalArgumentException("Unknown service: " + name);
+            };
+        }
+
+        Path buildDir() {
+            return Path.of(name, "build");
+        }
+    }
+
+    /** How to launch one mode: the command and the directory it must run in. */
+    record Launch(List<String> command, Path workingDir) {}
+
+    public static void main(String[] args) throws Exception {
+        Service service = Service.byName("user-service");
+        List<Mode> modes = List.of(Mode.values());
+        int runs = 10;
+        Duration timeout = Duration.ofSeconds(120);
+        String apiKey = "eagle";
+        Path out = null;
+
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "service" -> service = Service.byName(value);
+                case "modes" -> modes = Arrays.stream(value.split(",")).map(String::trim).map(Mode::byLabel).toList();
+                case "runs" -> runs = Integer.parseInt(value);
+                case "timeout" -> timeout = LoadTestConfig.parseDuration(value);
+                case "api-key" -> apiKey = value;
+                case "out" -> out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        Map<Mode, List<Double>> results = new LinkedHashMap<>();
+        for (Mode mode : modes) {
+            Launch launch = launch(service, mode);
+            if (launch == null) {
+                System.err.println("Skipping " + mode.label + ": no build output for it under " + service.buildDir());
+                continue;
+            }
+            List<Double> millis = new ArrayList<>(runs);
+            for (int run = 1; run <= runs; run++) {
+                double elapsed = startOnce(service, launch, apiKey, timeout);
+                System.err.printf(Locale.ROOT, "%s %s run %d: %.1f ms%n", service.name, mode.label, run, elapsed);
+                millis.add(elapsed);
+            }
+            results.put(mode, millis);
+        }
+
+        String report = toJson(service, results);
+        if (out == null) {
+            System.out.print(report);
+        } else {
+            Files.writeString(out, report);
+        }
+    }
+
+    // ------------------- Launch commands -------------------
+
+    private static Launch launch(Service service, Mode mode) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Path cds = service.buildDir().resolve("cds");
+
+        return switch (mode) {
+            case JAR -> {
+                Path jar = bootJar(service.buildDir().resolve("libs"));
+                yield jar == null ? null : new Launch(List.of(java, "-jar", jar.toAbsolutePath().toString()), null);
+            }
+            case CDS, CDS_AOT -> {
+                Path jar = bootJar(cds);
+                if (jar == null || !Files.exists(cds.resolve("application.jsa"))) yield null;
+                if (mode == Mode.CDS_AOT && !hasAotInitializer(jar, service)) yield null;
+                List<String> command = new ArrayList<>(List.of(java, "-XX:SharedArchiveFile=application.jsa"));
+                if (mode == Mode.CDS_AOT) command.add("-Dspring.aot.enabled=true");
+                command.addAll(List.of("-jar", jar.getFileName().toString()));
+                yield new Launch(command, cds);
+            }
+            case NATIVE -> {
+                Path binary = service.buildDir().resolve("native/nativeCompile").resolve(service.name);
+                yield Files.isExecutable(binary) ? new Launch(List.of(binary.toAbsolutePath().toString()), null) : null;
+            }
+        };
+    }
+
+    private static Path bootJar(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return null;
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".jar") && !file.toString().endsWith("-plain.jar"))
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    // processAot generates <Main>__ApplicationContextInitializer; without it spring.aot.enabled fails
+    private static boolean hasAotInitializer(Path jar, Service service) throws IOException {
+        String initializer = service.mainClass.replace('.', '/') + "__ApplicationContextInitializer.class";
+        try (JarFile file = new JarFile(jar.toFile())) {
+            return file.getEntry(initializer) != null;
+        }
+    }
+
+    // ------------------- One cold start -------------------
+
+    private static double startOnce(Service service, Launch launch, String apiKey, Duration timeout) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(launch.command());
+        if (service.grpc) {
+            command.addAll(List.of("--grpc.server.port=" + port, "--server.port=0", "--management.server.port=0",
+                    "--eureka.client.register-with-eureka=false", "--eureka.client.fetch-registry=false",
+                    "--eagle.user.migrations.enabled=false"));
+        } else {
+            command.add("--server.port=" + port);
+        }
+        command.add("--logging.level.root=WARN");
+
+        Path log = Files.createTempFile("startup-" + service.name, ".log");
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile());
+        if (launch.workingDir() != null) builder.directory(launch.workingDir().toFile());
+
+        long started = System.nanoTime();
+        Process process = builder.start();
+        try {
+            long deadline = started + timeout.toNanos();
+            if (service.grpc) {
+                awaitGrpc(port, apiKey, process, deadline);
+            } else {
+                awaitHttp(port, process, deadline);
+            }
+            double elapsed = (System.nanoTime() - started) / 1e6;
+            Files.deleteIfExists(log);
+            return elapsed;
+        } catch (Exception e) {
+            throw new IllegalStateException(service.name + " did not answer, output in " + log, e);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static void awaitGrpc(int port, String apiKey, Process process, long deadline) throws Exception {
+        // wait for the listening socket first; a refused gRPC connect would back off for a second
+        awaitPort(port, process, deadline);
+
+        Metadata headers = new Metadata();
+        headers.put(API_KEY, apiKey);
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", port).usePlaintext().build();
+        try {
+            GlobalUserServiceGrpc.GlobalUserServiceBlockingStub stub = GlobalUserServiceGrpc.newBlockingStub(channel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+            SearchUsersRequest request = SearchUsersRequest.newBuilder().setQuery("startup").setLimit(1).build();
+            while (true) {
+                try {
+                    stub.withDeadlineAfter(Math.max(1, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                            .searchGlobalUsers(request);
+                    return;
+                } catch (RuntimeException e) {
+                    checkAlive(process, deadline, e);
+                    channel.resetConnectBackoff();
+                    Thread.sleep(5);
+                }
+            }
+        } finally {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void awaitHttp(int port, Process process, long deadline) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/eureka/apps"))
+                .header("Accept", "application/json")
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        while (true) {
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+                checkAlive(process, deadline, null);
+            } catch (IOException e) {
+                checkAlive(process, deadline, e);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static void awaitPort(int port, Process process, long deadline) throws Exception {
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 100);
+                return;
+            } catch (IOException e) {
+                checkAlive(process, deadline, e);
+                Thread.sleep(2);
+            }
+        }
+    }
+
+    private static void checkAlive(Process process, long deadline, Exception last) {
+        if (!process.isAlive()) throw new IllegalStateException("exited with " + process.exitValue(), last);
+        if (System.nanoTime() > deadline) throw new IllegalStateException("timed out", last);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    // ------------------- Report -------------------
+
+    private static String toJson(Service service, Map<Mode, List<Double>> results) {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n  \"service\": \"").append(service.name).append("\",\n");
+        json.append("  \"java\": \"").append(Runtime.version()).append("\",\n");
+        json.append("  \"timeToFirstCallMillis\": {");
+        String separator = "\n";
+        for (Map.Entry<Mode, List<Double>> entry : results.entrySet()) {
+            List<Double> sorted = entry.getValue().stream().sorted().toList();
+            json.append(separator).append("    \"").append(entry.getKey().label).append("\": {");
+            json.append("\"runs\": ").append(sorted.size());
+            json.append(", \"min\": ").append(format(sorted.get(0)));
+            json.append(", \"p50\": ").append(format(percentile(sorted, 50)));
+            json.append(", \"p90\": ").append(format(percentile(sorted, 90)));
+            json.append(", \"max\": ").append(format(sorted.get(sorted.size() - 1)));
+            json.append(", \"samples\": [");
+            json.append(String.join(", ", entry.getValue().stream().map(StartupBenchmark::format).toList()));
+            json.append("]}");
+            separator = ",\n";
+        }
+        json.append(results.isEmpty() ? "}\n" : "\n  }\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    // nearest rank
+    private static double percentile(List<Double> sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
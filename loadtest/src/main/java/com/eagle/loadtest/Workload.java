@@ -0,0 +1,104 @@
+package com.eagle.loadtest;
+
+import com.eagle.user.*;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Users imported before the run, which reads and updates pick from at random, and the source of
+ * unique usernames and contacts for creates. Every run uses its own run id, so it can be pointed
+ * at a database that already holds users from earlier runs.
+ */
+public final class Workload {
+
+    static final String PASSWORD = "load-password";
+
+    public record SeededUser(String id, String username) {}
+
+    private final String runId;
+    private final List<SeededUser> users;
+    private final AtomicLong created = new AtomicLong();
+
+    private Workload(String runId, List<SeededUser> users) {
+        this.runId = runId;
+        this.users = users;
+    }
+
+    /** Imports {@code count} users through {@code importGlobalUsers} and keeps the ones that were stored. */
+    public static Workload seed(GlobalUserServiceGrpc.GlobalUserServiceStub stub, int count) {
+
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<String> usernames = new ArrayList<>(count);
+        CompletableFuture<ImportSummary> summary = new CompletableFuture<>();
+
+        StreamObserver<CreateUserRequest> requests = stub.importGlobalUsers(new StreamObserver<>() {
+            @Override
+            public void onNext(ImportSummary value) {
+                summary.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                summary.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+
+        for (int i = 0; i < count; i++) {
+            CreateUserRequest user = user(runId, "seed", i, 7_000_000_000L);
+            usernames.add(user.getUsername());
+            requests.onNext(user);
+        }
+        requests.onCompleted();
+
+        List<SeededUser> users = new ArrayList<>(count);
+        for (ImportResult result : summary.join().getResultsList()) {
+            if (result.getImported()) {
+                users.add(new SeededUser(result.getId(), usernames.get((int) result.getIndex())));
+            }
+        }
+        if (users.isEmpty()) {
+            throw new IllegalStateException("No seed user was imported: " + summary.join().getResults(0).getError());
+        }
+        return new Workload(runId, List.copyOf(users));
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    public SeededUser randomUser() {
+        return users.get(ThreadLocalRandom.current().nextInt(users.size()));
+    }
+
+    public CreateUserRequest newUser() {
+        return user(runId, "new", created.getAndIncrement(), 8_000_000_000L);
+    }
+
+    private static CreateUserRequest user(String runId, String kind, long n, long mobileBase) {
+        String username = "load-" + runId + "-" + kind + "-" + n;
+        return CreateUserRequest.newBuilder()
+                .setUsername(username)
+                .setFullname("Load User " + n)
+                .setDob("1990-01-01")
+                .setEmail(username + "@loadtest.eagle")
+                .setPassword(PASSWORD)
+                // distinct per run so reruns against the same database do not collide
+                .setMobile(mobileBase + (runId.hashCode() & 0xffffL) * 10_000_000L + n)
+                .addGlobaluserrole(GlobalUserRole.newBuilder().setRolename("ROLE_USER"))
+                .putAddressMap("home", n + " Load Street")
+                .setActive(true)
+                .setAccountNonExpired(true)
+                .setAccountNonLocked(true)
+                .setCredentialsNonExpired(true)
+                .build();
+    }
+}
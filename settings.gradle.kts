@@ -15,4 +15,7 @@ rootProject.name = "eaglemicroservices"
 
 include("discovery-server")
 include("user-service")
-include("common-proto")
\ No newline at end of file
+include("common-proto")
+include("benchmarks")
+include("loadtest")
+include("user-client")
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.eagle.user.client;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls Eureka for the instances of one application and hands their gRPC addresses to the
+ * channel. Results are only pushed when the instance set changes. A failed poll keeps the
+ * last known instances; it is only reported to the channel before the first success.
+ */
+final class EurekaNameResolver extends NameResolver {
+
+    private static final Logger log = Logger.getLogger(EurekaNameResolver.class.getName());
+
+    private final String application;
+    private final EurekaRegistry registry;
+    private final Duration refreshInterval;
+    private final SynchronizationContext syncContext;
+    private final ScheduledExecutorService scheduler;
+
+    // all guarded by syncContext
+    private Listener2 listener;
+    private SynchronizationContext.ScheduledHandle refreshTask;
+    private boolean resolving;
+    private boolean shutdown;
+    private List<EurekaRegistry.Instance> published;
+
+    EurekaNameResolver(String application, EurekaRegistry registry, Duration refreshInterval, Args args) {
+        this.application = application;
+        this.registry = registry;
+        this.refreshInterval = refreshInterval;
+        this.syncContext = args.getSynchronizationContext();
+        this.scheduler = args.getScheduledExecutorService();
+    }
+
+    @Override
+    public String getServiceAuthority() {
+        return application;
+    }
+
+    @Override
+    public void start(Listener2 listener) {
+        this.listener = listener;
+        resolve();
+        refreshTask = syncContext.scheduleWithFixedDelay(this::resolve,
+                refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS, scheduler);
+    }
+
+    /** Called by the channel when connections fail, so a moved instance is picked up before the next poll. */
+    @Override
+    public void refresh() {
+        resolve();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (refreshTask != null) {
+            refreshTask.cancel();
+        }
+    }
+
+    private void resolve() {
+        if (resolving || shutdown) return;
+        resolving = true;
+        registry.fetch(application).whenComplete((instances, error) -> syncContext.execute(() -> {
+            resolving = false;
+            if (shutdown) return;
+            if (error != null) {
+                failed(Status.UNAVAILABLE.withDescription("Eureka lookup of " + application + " failed").withCause(error));
+            } else if (instances.isEmpty()) {
+                published = instances;
+                listener.onError(Status.UNAVAILABLE.withDescription("No UP instances of " + application + " in Eureka"));
+            } else if (!instances.equals(published)) {
+                published = instances;
+                listener.onResult(ResolutionResult.newBuilder()
+                        .setAddresses(instances.stream().map(EurekaNameResolver::addressOf).toList())
+                        .build());
+            }
+        }));
+    }
+
+    private void failed(Status status) {
+        if (published == null || published.isEmpty()) {
+            listener.onError(status);
+        } else {
+            log.log(Level.WARNING, status.getDescription() + ", keeping " + published.size() + " known instances",
+                    status.getCause());
+        }
+    }
+
+    private static EquivalentAddressGroup addressOf(EurekaRegistry.Instance instance) {
+        return new EquivalentAddressGroup(
+                new InetSocketAddress(instance.host(), instance.port()),
+                Attributes.newBuilder().set(EurekaNameResolverProvider.INSTANCE_ID, instance.instanceId()).build());
+    }
+}
@@ -0,0 +1,63 @@
+package com.eagle.user.client;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Resolves targets of the form {@code eureka://host:port/application}: the authority is the
+ * Eureka server, the path the registered application name. Registered with the default
+ * {@code NameResolverRegistry} by {@link UserServiceChannels}.
+ */
+public final class EurekaNameResolverProvider extends NameResolverProvider {
+
+    public static final String SCHEME = "eureka";
+
+    /** Eureka instance id of the backend, set on each resolved {@link EquivalentAddressGroup}. */
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<String> INSTANCE_ID = Attributes.Key.create("eagle.eureka.instance-id");
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Duration refreshInterval;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+
+    public EurekaNameResolverProvider(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    @Override
+    public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+        if (!SCHEME.equals(targetUri.getScheme())) return null;
+
+        String path = targetUri.getPath();
+        if (targetUri.getAuthority() == null || path == null || path.length() < 2) {
+            throw new IllegalArgumentException("Expected eureka://host:port/application, got " + targetUri);
+        }
+        URI eurekaUrl = URI.create("http://" + targetUri.getAuthority() + "/eureka/");
+        return new EurekaNameResolver(path.substring(1),
+                new EurekaRegistry(eurekaUrl, httpClient, REQUEST_TIMEOUT), refreshInterval, args);
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    protected int priority() {
+        return 5;
+    }
+}
@@ -0,0 +1,106 @@
+package com.eagle.user.client;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads the UP instances of one application from the Eureka REST API
+ * ({@code GET {eureka}/apps/{APP}}). Only instances that publish a {@code gRPC_port}
+ * in their metadata are returned, with that port rather than the registered HTTP port.
+ */
+class EurekaRegistry {
+
+    static final String GRPC_PORT_METADATA = "gRPC_port";
+
+    record Instance(String instanceId, String host, int port, Map<String, String> metadata) {}
+
+    private final URI eurekaUrl;
+    private final HttpClient httpClient;
+    private final Duration timeout;
+
+    EurekaRegistry(URI eurekaUrl, HttpClient httpClient, Duration timeout) {
+        this.eurekaUrl = eurekaUrl;
+        this.httpClient = httpClient;
+        this.timeout = timeout;
+    }
+
+    CompletableFuture<List<Instance>> fetch(String application) {
+        HttpRequest request = HttpRequest.newBuilder(eurekaUrl.resolve("apps/" + application.toUpperCase()))
+                .header("Accept", "application/json")
+                .timeout(timeout)
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> switch (response.statusCode()) {
+                    case 200 -> parse(response.body());
+                    // nothing registered under that name yet
+                    case 404 -> List.of();
+                    default -> throw new IllegalStateException(
+                            "Eureka returned " + response.statusCode() + " for " + request.uri());
+                });
+    }
+
+    static List<Instance> parse(String body) {
+        JsonObject application = JsonParser.parseString(body).getAsJsonObject().getAsJsonObject("application");
+        JsonElement listed = application == null ? null : application.get("instance");
+        if (listed == null) return List.of();
+
+        // older servers send a lone instance as an object instead of a one-element array
+        List<JsonElement> entries = new ArrayList<>();
+        if (listed.isJsonArray()) {
+            listed.getAsJsonArray().forEach(entries::add);
+        } else {
+            entries.add(listed);
+        }
+
+        List<Instance> instances = new ArrayList<>(entries.size());
+        for (JsonElement entry : entries) {
+            JsonObject instance = entry.getAsJsonObject();
+            if (!"UP".equals(string(instance, "status"))) continue;
+
+            Map<String, String> metadata = new HashMap<>();
+            JsonObject meta = instance.getAsJsonObject("metadata");
+            if (meta != null) {
+                meta.entrySet().forEach(e -> metadata.put(e.getKey(), e.getValue().getAsString()));
+            }
+            int port = port(metadata.get(GRPC_PORT_METADATA));
+            if (port <= 0) continue;
+
+            String host = string(instance, "ipAddr");
+            if (host == null) host = string(instance, "hostName");
+            if (host == null) continue;
+
+            instances.add(new Instance(string(instance, "instanceId"), host, port, Map.copyOf(metadata)));
+        }
+        // stable order, so an unchanged registry compares equal between refreshes
+        instances.sort((a, b) -> String.valueOf(a.instanceId()).compareTo(String.valueOf(b.instanceId())));
+        return instances;
+    }
+
+    private static String string(JsonObject object, String field) {
+        JsonElement value = object.get(field);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private static int port(String value) {
+        if (value == null) return -1;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.eagle.user.client;
+
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+
+/**
+ * One subchannel per resolved address; each call goes to the cheaper of two READY
+ * subchannels sampled at random. Cost is the peak-EWMA latency of unary calls times the
+ * calls in flight plus one, so a slow or busy instance loses most comparisons but is still
+ * probed now and then. A latency above the average replaces it outright and then decays,
+ * which makes the balancer back off a degrading instance within one call.
+ */
+final class PeakEwmaLoadBalancer extends LoadBalancer {
+
+    private final Helper helper;
+    private final long decayNanos;
+    private final Map<EquivalentAddressGroup, Backend> backends = new HashMap<>();
+
+    PeakEwmaLoadBalancer(Helper helper, long decayNanos) {
+        this.helper = helper;
+        this.decayNanos = decayNanos;
+    }
+
+    @Override
+    public Status acceptResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+        List<EquivalentAddressGroup> groups = resolvedAddresses.getAddresses();
+        if (groups.isEmpty()) {
+            Status unavailable = Status.UNAVAILABLE.withDescription("Name resolver returned no addresses");
+            handleNameResolutionError(unavailable);
+            return unavailable;
+        }
+
+        // keyed without attributes, so an instance whose metadata changed keeps its subchannel
+        Map<EquivalentAddressGroup, EquivalentAddressGroup> latest = new HashMap<>();
+        groups.forEach(group -> latest.put(new EquivalentAddressGroup(group.getAddresses()), group));
+
+        Iterator<Map.Entry<EquivalentAddressGroup, Backend>> existing = backends.entrySet().iterator();
+        while (existing.hasNext()) {
+            Map.Entry<EquivalentAddressGroup, Backend> entry = existing.next();
+            if (!latest.containsKey(entry.getKey())) {
+                entry.getValue().subchannel.shutdown();
+                existing.remove();
+            }
+        }
+
+        latest.forEach((key, group) -> {
+            if (backends.containsKey(key)) return;
+            Subchannel subchannel = helper.createSubchannel(CreateSubchannelArgs.newBuilder()
+                    .setAddresses(group)
+                    .build());
+            Backend backend = new Backend(subchannel, decayNanos);
+            backends.put(key, backend);
+            subchannel.start(state -> stateChanged(key, backend, state));
+            subchannel.requestConnection();
+        });
+
+        updateBalancingState();
+        return Status.OK;
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+        if (backends.values().stream().noneMatch(backend -> backend.state.getState() == READY)) {
+            helper.updateBalancingState(TRANSIENT_FAILURE, new FixedPicker(PickResult.withError(error)));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        backends.values().forEach(backend -> backend.subchannel.shutdown());
+        backends.clear();
+    }
+
+    private void stateChanged(EquivalentAddressGroup key, Backend backend, ConnectivityStateInfo state) {
+        if (backends.get(key) != backend) return;
+        if (state.getState() == IDLE) {
+            backend.subchannel.requestConnection();
+        }
+        backend.state = state;
+        updateBalancingState();
+    }
+
+    private void updateBalancingState() {
+        List<Backend> ready = new ArrayList<>();
+        boolean connecting = false;
+        Status failure = null;
+        for (Backend backend : backends.values()) {
+            ConnectivityState state = backend.state.getState();
+            if (state == READY) ready.add(backend);
+            else if (state == CONNECTING || state == IDLE) connecting = true;
+            else if (state == TRANSIENT_FAILURE) failure = backend.state.getStatus();
+        }
+
+        if (!ready.isEmpty()) {
+            helper.updateBalancingState(READY, new Picker(ready));
+        } else if (connecting) {
+            helper.updateBalancingState(CONNECTING, new FixedPicker(PickResult.withNoResult()));
+        } else {
+            Status error = failure != null ? failure : Status.UNAVAILABLE.withDescription("No backends");
+            helper.updateBalancingState(TRANSIENT_FAILURE, new FixedPicker(PickResult.withError(error)));
+        }
+    }
+
+    // ------------------- Backend -------------------
+
+    static final class Backend {
+
+        // above any real latency; an instance with calls in flight but no sample yet is tried last
+        private static final double UNKNOWN_PENALTY = 1e12;
+
+        final Subchannel subchannel;
+        final AtomicInteger inFlight = new AtomicInteger();
+        // touched only from the synchronization context
+        ConnectivityStateInfo state = ConnectivityStateInfo.forNonError(IDLE);
+
+        private final long decayNanos;
+        // guarded by this
+        private double latencyNanos;
+        private long updatedAt = System.nanoTime();
+
+        /** Counts the call in flight and, for unary calls, feeds its latency into the average. */
+        final ClientStreamTracer.Factory unaryTracer = tracer(true);
+        final ClientStreamTracer.Factory streamTracer = tracer(false);
+
+        Backend(Subchannel subchannel, long decayNanos) {
+            this.subchannel = subchannel;
+            this.decayNanos = decayNanos;
+        }
+
+        double cost() {
+            double latency;
+            synchronized (this) {
+                latency = latencyNanos * Math.exp(-(System.nanoTime() - updatedAt) / (double) decayNanos);
+            }
+            int calls = inFlight.get();
+            if (latency == 0 && calls > 0) return UNKNOWN_PENALTY + calls;
+            return latency * (calls + 1);
+        }
+
+        synchronized void observe(long latency, long now) {
+            if (latency > latencyNanos) {
+                latencyNanos = latency;
+            } else {
+                double weight = Math.exp(-(now - updatedAt) / (double) decayNanos);
+                latencyNanos = latencyNanos * weight + latency * (1 - weight);
+            }
+            updatedAt = now;
+        }
+
+        private ClientStreamTracer.Factory tracer(boolean recordLatency) {
+            return new ClientStreamTracer.Factory() {
+                @Override
+                public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                    inFlight.incrementAndGet();
+                    long started = System.nanoTime();
+                    return new ClientStreamTracer() {
+                        @Override
+                        public void streamClosed(Status status) {
+                            inFlight.decrementAndGet();
+                            // a failed connect says nothing about the instance's response time
+                            if (recordLatency && status.getCode() != Status.Code.UNAVAILABLE) {
+                                long now = System.nanoTime();
+                                observe(now - started, now);
+                            }
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    // ------------------- Pickers -------------------
+
+    private static final class Picker extends SubchannelPicker {
+
+        private final List<Backend> ready;
+
+        Picker(List<Backend> ready) {
+            this.ready = ready;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            Backend chosen = ready.get(0);
+            if (ready.size() > 1) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int first = random.nextInt(ready.size());
+                int second = random.nextInt(ready.size() - 1);
+                if (second >= first) second++;
+                Backend a = ready.get(first);
+                Backend b = ready.get(second);
+                chosen = a.cost() <= b.cost() ? a : b;
+            }
+            boolean unary = args.getMethodDescriptor().getType() == MethodDescriptor.MethodType.UNARY;
+            return PickResult.withSubchannel(chosen.subchannel, unary ? chosen.unaryTracer : chosen.streamTracer);
+        }
+    }
+
+    private static final class FixedPicker extends SubchannelPicker {
+
+        private final PickResult result;
+
+        FixedPicker(PickResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.eagle.user.client;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+
+import java.time.Duration;
+
+/** {@link PeakEwmaLoadBalancer} under the policy name {@value #POLICY_NAME}. */
+public final class PeakEwmaLoadBalancerProvider extends LoadBalancerProvider {
+
+    public static final String POLICY_NAME = "eagle_peak_ewma";
+
+    // how quickly a latency spike is forgotten once faster responses come back
+    private static final Duration DECAY = Duration.ofSeconds(10);
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 5;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return POLICY_NAME;
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        return new PeakEwmaLoadBalancer(helper, DECAY.toNanos());
+    }
+}
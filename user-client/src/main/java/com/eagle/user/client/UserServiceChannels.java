@@ -0,0 +1,102 @@
+package com.eagle.user.client;
+
+import com.eagle.user.GlobalUserServiceGrpc;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.NameResolverRegistry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Channels to every registered user-service instance, resolved through Eureka and balanced
+ * with {@link PeakEwmaLoadBalancer}:
+ * <pre>
+ * ManagedChannel channel = UserServiceChannels.builder("localhost:8761")
+ *         .hedgeReads(Duration.ofMillis(20))
+ *         .build();
+ * </pre>
+ * With hedging on, the idempotent lookups are sent again to another instance when the first
+ * attempt has not answered within the delay; the first response wins and the rest are cancelled.
+ */
+public final class UserServiceChannels {
+
+    public static final String APPLICATION = "user-service";
+
+    // cheap, idempotent reads; writes, imports and password checks are never hedged
+    private static final List<String> HEDGED_METHODS = List.of(
+            "getGlobalUser", "getUserNameForToken", "searchGlobalUsers");
+
+    private static final Duration REFRESH_INTERVAL = Duration.ofSeconds(30);
+
+    static {
+        NameResolverRegistry.getDefaultRegistry().register(new EurekaNameResolverProvider(REFRESH_INTERVAL));
+        LoadBalancerRegistry.getDefaultRegistry().register(new PeakEwmaLoadBalancerProvider());
+    }
+
+    private UserServiceChannels() {
+    }
+
+    /** @param eureka {@code host:port} of the Eureka server */
+    public static Builder builder(String eureka) {
+        return new Builder(eureka);
+    }
+
+    public static final class Builder {
+
+        private final String eureka;
+        private String application = APPLICATION;
+        private Duration hedgingDelay;
+        private int hedgingAttempts = 2;
+
+        private Builder(String eureka) {
+            this.eureka = eureka;
+        }
+
+        public Builder application(String application) {
+            this.application = application;
+            return this;
+        }
+
+        public Builder hedgeReads(Duration delay) {
+            return hedgeReads(delay, 2);
+        }
+
+        public Builder hedgeReads(Duration delay, int maxAttempts) {
+            if (maxAttempts < 2) throw new IllegalArgumentException("Hedging needs at least 2 attempts");
+            this.hedgingDelay = delay;
+            this.hedgingAttempts = maxAttempts;
+            return this;
+        }
+
+        public ManagedChannel build() {
+            ManagedChannelBuilder<?> channel = ManagedChannelBuilder
+                    .forTarget(EurekaNameResolverProvider.SCHEME + "://" + eureka + "/" + application)
+                    .defaultLoadBalancingPolicy(PeakEwmaLoadBalancerProvider.POLICY_NAME)
+                    .usePlaintext();
+            if (hedgingDelay != null) {
+                channel.defaultServiceConfig(hedgingConfig()).enableRetry();
+            }
+            return channel.build();
+        }
+
+        // service config in the map form of its JSON; numbers must be doubles
+        private Map<String, Object> hedgingConfig() {
+            List<Map<String, Object>> names = HEDGED_METHODS.stream()
+                    .<Map<String, Object>>map(method -> Map.of(
+                            "service", GlobalUserServiceGrpc.SERVICE_NAME,
+                            "method", method))
+                    .toList();
+            Map<String, Object> hedgingPolicy = Map.of(
+                    "maxAttempts", (double) hedgingAttempts,
+                    "hedgingDelay", BigDecimal.valueOf(hedgingDelay.toNanos(), 9).toPlainString() + "s",
+                    "nonFatalStatusCodes", List.of("UNAVAILABLE", "RESOURCE_EXHAUSTED"));
+            return Map.of("methodConfig", List.of(Map.of(
+                    "name", names,
+                    "hedgingPolicy", hedgingPolicy)));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.eagle.user.client;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EurekaNameResolverTest {
+
+    private final StubRegistry registry = new StubRegistry();
+    private final RecordingListener listener = new RecordingListener();
+    private ScheduledExecutorService scheduler;
+    private EurekaNameResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        NameResolver.Args args = NameResolver.Args.newBuilder()
+                .setDefaultPort(443)
+                .setProxyDetector(address -> null)
+                .setSynchronizationContext(new SynchronizationContext((thread, error) -> {
+                    throw new AssertionError(error);
+                }))
+                .setServiceConfigParser(new NameResolver.ServiceConfigParser() {
+                    @Override
+                    public NameResolver.ConfigOrError parseServiceConfig(Map<String, ?> rawServiceConfig) {
+                        return null;
+                    }
+                })
+                .setScheduledExecutorService(scheduler)
+                .build();
+        // polls only when the test asks for one
+        resolver = new EurekaNameResolver("user-service", registry, Duration.ofHours(1), args);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resolver.shutdown();
+        scheduler.shutdownNow();
+    }
+
+    private static EurekaRegistry.Instance instance(String id, String host) {
+        return new EurekaRegistry.Instance(id, host, 9090, Map.of(EurekaRegistry.GRPC_PORT_METADATA, "9090"));
+    }
+
+    @Test
+    void theFirstPollPublishesEveryInstance() {
+        registry.next(List.of(instance("a", "10.0.0.1"), instance("b", "10.0.0.2")));
+
+        resolver.start(listener);
+
+        assertEquals(1, listener.results.size());
+        List<EquivalentAddressGroup> addresses = listener.results.get(0).getAddresses();
+        assertEquals(List.of(new InetSocketAddress("10.0.0.1", 9090), new InetSocketAddress("10.0.0.2", 9090)),
+                addresses.stream().map(group -> group.getAddresses().get(0)).toList());
+        assertEquals("a", addresses.get(0).getAttributes().get(EurekaNameResolverProvider.INSTANCE_ID));
+    }
+
+    @Test
+    void anUnchangedInstanceSetIsNotPublishedAgain() {
+        registry.next(List.of(instance("a", "10.0.0.1")));
+        registry.next(List.of(instance("a", "10.0.0.1")));
+        registry.next(List.of(instance("a", "10.0.0.1"), instance("b", "10.0.0.2")));
+
+        resolver.start(listener);
+        resolver.refresh();
+        assertEquals(1, listener.results.size());
+
+        resolver.refresh();
+        assertEquals(2, listener.results.size());
+        assertEquals(2, listener.results.get(1).getAddresses().size());
+    }
+
+    @Test
+    void aFailedPollKeepsTheLastInstances() {
+        registry.next(List.of(instance("a", "10.0.0.1")));
+        registry.fail();
+
+        resolver.start(listener);
+        resolver.refresh();
+
+        assertEquals(1, listener.results.size());
+        assertTrue(listener.errors.isEmpty());
+    }
+
+    @Test
+    void aFailedFirstPollIsReported() {
+        registry.fail();
+
+        resolver.start(listener);
+
+        assertTrue(listener.results.isEmpty());
+        assertEquals(Status.Code.UNAVAILABLE, listener.errors.get(0).getCode());
+    }
+
+    @Test
+    void noUpInstancesIsReported() {
+        registry.next(List.of());
+
+        resolver.start(listener);
+
+        assertEquals(Status.Code.UNAVAILABLE, listener.errors.get(0).getCode());
+    }
+
+    @Test
+    void aRefreshDuringAPollDoesNotStartAnother() {
+        CompletableFuture<List<EurekaRegistry.Instance>> pending = new CompletableFuture<>();
+        registry.responses.add(pending);
+
+        resolver.start(listener);
+        resolver.refresh();
+        assertEquals(1, registry.fetches);
+
+        pending.complete(List.of(instance("a", "10.0.0.1")));
+        assertEquals(1, listener.results.size());
+    }
+
+    /** Answers each fetch with the next queued response. */
+    private static final class StubRegistry extends EurekaRegistry {
+
+        final Queue<CompletableFuture<List<Instance>>> responses = new ArrayDeque<>();
+        int fetches;
+
+        StubRegistry() {
+            super(null, null, null);
+        }
+
+        void next(List<Instance> instances) {
+            responses.add(CompletableFuture.completedFuture(instances));
+        }
+
+        void fail() {
+            responses.add(CompletableFuture.failedFuture(new IllegalStateException("Eureka returned 503")));
+        }
+
+        @Override
+        CompletableFuture<List<Instance>> fetch(String application) {
+            fetches++;
+            CompletableFuture<List<Instance>> response = responses.poll();
+            return response != null ? response : new CompletableFuture<>();
+        }
+    }
+
+    private static final class RecordingListener extends NameResolver.Listener2 {
+
+        final List<NameResolver.ResolutionResult> results = new ArrayList<>();
+        final List<Status> errors = new ArrayList<>();
+
+        @Override
+        public void onResult(NameResolver.ResolutionResult resolutionResult) {
+            results.add(resolutionResult);
+        }
+
+        @Override
+        public void onError(Status error) {
+            errors.add(error);
+        }
+    }
+}
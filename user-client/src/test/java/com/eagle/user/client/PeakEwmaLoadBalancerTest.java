@@ -0,0 +1,303 @@
+package com.eagle.user.client;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PeakEwmaLoadBalancerTest {
+
+    private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final MethodDescriptor<Void, Void> UNARY = method(MethodDescriptor.MethodType.UNARY);
+    private static final MethodDescriptor<Void, Void> STREAMING = method(MethodDescriptor.MethodType.SERVER_STREAMING);
+
+    private final FakeHelper helper = new FakeHelper();
+    private final PeakEwmaLoadBalancer balancer = new PeakEwmaLoadBalancer(helper, DECAY_NANOS);
+
+    private static MethodDescriptor<Void, Void> method(MethodDescriptor.MethodType type) {
+        MethodDescriptor.Marshaller<Void> marshaller = new MethodDescriptor.Marshaller<>() {
+            @Override
+            public InputStream stream(Void value) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+
+            @Override
+            public Void parse(InputStream stream) {
+                return null;
+            }
+        };
+        return MethodDescriptor.<Void, Void>newBuilder()
+                .setType(type)
+                .setFullMethodName("test/" + type)
+                .setRequestMarshaller(marshaller)
+                .setResponseMarshaller(marshaller)
+                .build();
+    }
+
+    private static EquivalentAddressGroup address(String host) {
+        return new EquivalentAddressGroup(InetSocketAddress.createUnresolved(host, 9090));
+    }
+
+    private void resolve(String... hosts) {
+        List<EquivalentAddressGroup> groups = new ArrayList<>();
+        for (String host : hosts) groups.add(address(host));
+        balancer.acceptResolvedAddresses(LoadBalancer.ResolvedAddresses.newBuilder().setAddresses(groups).build());
+    }
+
+    private LoadBalancer.PickResult pick(MethodDescriptor<Void, Void> method) {
+        return helper.picker.pickSubchannel(new LoadBalancer.PickSubchannelArgs() {
+            @Override
+            public CallOptions getCallOptions() {
+                return CallOptions.DEFAULT;
+            }
+
+            @Override
+            public Metadata getHeaders() {
+                return new Metadata();
+            }
+
+            @Override
+            public MethodDescriptor<?, ?> getMethodDescriptor() {
+                return method;
+            }
+        });
+    }
+
+    private static ClientStreamTracer startCall(LoadBalancer.PickResult result) {
+        return result.getStreamTracerFactory()
+                .newClientStreamTracer(ClientStreamTracer.StreamInfo.newBuilder().build(), new Metadata());
+    }
+
+    @Test
+    void eachAddressGetsAConnectingSubchannel() {
+        resolve("a", "b");
+
+        assertEquals(2, helper.subchannels.size());
+        helper.subchannels.forEach(subchannel -> assertEquals(1, subchannel.connectionRequests));
+        assertEquals(CONNECTING, helper.state);
+    }
+
+    @Test
+    void callsGoToReadySubchannelsOnly() {
+        resolve("a", "b");
+        helper.subchannels.get(0).become(READY);
+
+        assertEquals(READY, helper.state);
+        for (int i = 0; i < 20; i++) {
+            assertSame(helper.subchannels.get(0), pick(UNARY).getSubchannel());
+        }
+    }
+
+    @Test
+    void aBusyBackendLosesThePowerOfTwoComparison() {
+        resolve("a", "b");
+        helper.subchannels.forEach(subchannel -> subchannel.become(READY));
+
+        // a call in flight without a latency sample yet puts its backend last
+        LoadBalancer.PickResult first = pick(UNARY);
+        startCall(first);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(first.getSubchannel() != pick(UNARY).getSubchannel());
+        }
+    }
+
+    @Test
+    void callsInFlightAreCountedUntilTheyClose() {
+        PeakEwmaLoadBalancer.Backend backend = new PeakEwmaLoadBalancer.Backend(null, DECAY_NANOS);
+
+        ClientStreamTracer unary = backend.unaryTracer
+                .newClientStreamTracer(ClientStreamTracer.StreamInfo.newBuilder().build(), new Metadata());
+        ClientStreamTracer streaming = backend.streamTracer
+                .newClientStreamTracer(ClientStreamTracer.StreamInfo.newBuilder().build(), new Metadata());
+        assertEquals(2, backend.inFlight.get());
+
+        streaming.streamClosed(Status.OK);
+        unary.streamClosed(Status.UNAVAILABLE);
+        assertEquals(0, backend.inFlight.get());
+        // neither a stream nor a failed connect is a latency sample
+        assertEquals(0.0, backend.cost());
+    }
+
+    @Test
+    void unaryAndStreamingCallsGetTheirOwnTracers() {
+        resolve("a");
+        helper.subchannels.get(0).become(READY);
+
+        assertFalse(pick(UNARY).getStreamTracerFactory() == pick(STREAMING).getStreamTracerFactory());
+    }
+
+    @Test
+    void aSlowerSampleReplacesTheAverageOutright() {
+        PeakEwmaLoadBalancer.Backend backend = new PeakEwmaLoadBalancer.Backend(null, DECAY_NANOS);
+        long now = System.nanoTime();
+
+        backend.observe(1_000_000, now);
+        backend.observe(50_000_000, now);
+
+        assertEquals(50_000_000, backend.cost(), 50_000_000 * 0.01);
+    }
+
+    @Test
+    void aFasterSampleIsAveragedInByElapsedTime() {
+        PeakEwmaLoadBalancer.Backend backend = new PeakEwmaLoadBalancer.Backend(null, DECAY_NANOS);
+        long now = System.nanoTime();
+        long halfLife = (long) (DECAY_NANOS * Math.log(2));
+
+        backend.observe(1_000_000, now - halfLife);
+        backend.observe(500_000, now);
+
+        // half the old average, half the new sample
+        assertEquals(750_000, backend.cost(), 750_000 * 0.01);
+    }
+
+    @Test
+    void anIdleSubchannelReconnects() {
+        resolve("a");
+        FakeSubchannel subchannel = helper.subchannels.get(0);
+        subchannel.become(READY);
+
+        subchannel.become(IDLE);
+
+        assertEquals(2, subchannel.connectionRequests);
+        assertEquals(CONNECTING, helper.state);
+    }
+
+    @Test
+    void failingBackendsFailPicksWithTheirStatus() {
+        resolve("a");
+        helper.subchannels.get(0).become(ConnectivityStateInfo.forTransientFailure(Status.UNAVAILABLE.withDescription("refused")));
+
+        assertEquals(TRANSIENT_FAILURE, helper.state);
+        assertEquals("refused", pick(UNARY).getStatus().getDescription());
+    }
+
+    @Test
+    void aRemovedAddressIsShutDownAndAKeptOneReused() {
+        resolve("a", "b");
+        FakeSubchannel a = helper.subchannel("a");
+        FakeSubchannel b = helper.subchannel("b");
+
+        resolve("b", "c");
+
+        assertTrue(a.shutdown);
+        assertFalse(b.shutdown);
+        assertEquals(3, helper.subchannels.size());
+    }
+
+    @Test
+    void noAddressesIsAnError() {
+        Status status = balancer.acceptResolvedAddresses(
+                LoadBalancer.ResolvedAddresses.newBuilder().setAddresses(List.of()).build());
+
+        assertEquals(Status.Code.UNAVAILABLE, status.getCode());
+        assertEquals(TRANSIENT_FAILURE, helper.state);
+    }
+
+    /** Hands out fake subchannels and keeps the latest balancing state. */
+    private static final class FakeHelper extends LoadBalancer.Helper {
+
+        final List<FakeSubchannel> subchannels = new ArrayList<>();
+        ConnectivityState state;
+        LoadBalancer.SubchannelPicker picker;
+
+        FakeSubchannel subchannel(String host) {
+            return subchannels.stream()
+                    .filter(subchannel -> subchannel.getAllAddresses().get(0).equals(address(host)))
+                    .findFirst()
+                    .orElseThrow();
+        }
+
+        @Override
+        public LoadBalancer.Subchannel createSubchannel(LoadBalancer.CreateSubchannelArgs args) {
+            FakeSubchannel subchannel = new FakeSubchannel(args.getAddresses());
+            subchannels.add(subchannel);
+            return subchannel;
+        }
+
+        @Override
+        public void updateBalancingState(ConnectivityState newState, LoadBalancer.SubchannelPicker newPicker) {
+            state = newState;
+            picker = newPicker;
+        }
+
+        @Override
+        public ManagedChannel createOobChannel(EquivalentAddressGroup eag, String authority) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getAuthority() {
+            return "user-service";
+        }
+    }
+
+    private static final class FakeSubchannel extends LoadBalancer.Subchannel {
+
+        private final List<EquivalentAddressGroup> addresses;
+        private LoadBalancer.SubchannelStateListener listener;
+        int connectionRequests;
+        boolean shutdown;
+
+        FakeSubchannel(List<EquivalentAddressGroup> addresses) {
+            this.addresses = addresses;
+        }
+
+        void become(ConnectivityState state) {
+            become(ConnectivityStateInfo.forNonError(state));
+        }
+
+        void become(ConnectivityStateInfo state) {
+            listener.onSubchannelState(state);
+        }
+
+        @Override
+        public void start(LoadBalancer.SubchannelStateListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void requestConnection() {
+            connectionRequests++;
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<EquivalentAddressGroup> getAllAddresses() {
+            return addresses;
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return Attributes.EMPTY;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.eagle.user.cache;
+
+import com.eagle.user.repository.UserJdbcRepository;
+import com.eagle.user.utils.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Bloom filter over every registered email and mobile. A signup whose contacts are
+ * definitely absent skips the duplicate query; possible hits are confirmed in the database.
+ * Deletes cannot clear bits, so the filter is rebuilt from the table on a fixed interval.
+ * Until the first load finishes every lookup reports a possible hit.
+ */
+@Component
+public class ContactPreFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ContactPreFilter.class);
+
+    private final UserJdbcRepository userJdbcRepository;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final Duration rebuildInterval;
+    private final Counter skipped;
+    private final Counter confirmed;
+
+    private volatile BloomFilter active;
+    // adds and the swap to a rebuilt filter take this lock, so no add lands only in a discarded filter
+    private final Object lock = new Object();
+    // receives adds while a rebuild is scanning the table, so none are lost on swap
+    private BloomFilter building; // guarded by lock
+    private Disposable rebuilds;
+
+    public ContactPreFilter(UserJdbcRepository userJdbcRepository, MeterRegistry meterRegistry,
+                            @Value("${eagle.user.contact-filter.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${eagle.user.contact-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                            @Value("${eagle.user.contact-filter.rebuild-interval:6h}") Duration rebuildInterval) {
+        this.userJdbcRepository = userJdbcRepository;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildInterval = rebuildInterval;
+        this.skipped = meterRegistry.counter("user.contact-filter.checks", "result", "absent");
+        this.confirmed = meterRegistry.counter("user.contact-filter.checks", "result", "maybe");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuilds = Flux.interval(Duration.ZERO, rebuildInterval)
+                .concatMap(tick -> rebuild()
+                        .onErrorResume(e -> {
+                            log.warn("Contact filter rebuild failed", e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rebuilds != null) rebuilds.dispose();
+    }
+
+    /** {@code false} only when neither contact can be registered yet. */
+    public boolean mightBeRegistered(String email, long mobile) {
+        BloomFilter filter = active;
+        boolean maybe = filter == null
+                || filter.mightContain(emailKey(email))
+                || filter.mightContain(mobileKey(mobile));
+        (maybe ? confirmed : skipped).increment();
+        return maybe;
+    }
+
+    public void add(String email, long mobile) {
+        synchronized (lock) {
+            if (active != null) put(active, email, mobile);
+            if (building != null) put(building, email, mobile);
+        }
+    }
+
+    Mono<Void> rebuild() {
+        return Mono.defer(() -> {
+            BloomFilter next = new BloomFilter(expectedInsertions, falsePositiveRate);
+            synchronized (lock) {
+                building = next;
+            }
+            return userJdbcRepository.streamContacts()
+                    .doOnNext(c -> put(next, c.email(), c.mobile()))
+                    .then(Mono.fromRunnable(() -> {
+                        synchronized (lock) {
+                            active = next;
+                            building = null;
+                        }
+                    }))
+                    .doFinally(signal -> {
+                        synchronized (lock) {
+                            if (building == next) building = null;
+                        }
+                    })
+                    .then();
+        });
+    }
+
+    private static void put(BloomFilter filter, String email, long mobile) {
+        filter.put(emailKey(email));
+        filter.put(mobileKey(mobile));
+    }
+
+    private static String emailKey(String email) {
+        return "e:" + email;
+    }
+
+    private static String mobileKey(long mobile) {
+        return "m:" + mobile;
+    }
+}
@@ -0,0 +1,61 @@
+package com.eagle.user.cache;
+
+import com.eagle.user.GlobalUser;
+import com.eagle.user.repository.UserVersion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.ByteString;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Encoded {@link GlobalUser} bytes, so list responses are assembled by copying bytes
+ * instead of encoding every user again. Entries are held per id together with the row
+ * version they were encoded from; a lookup at any other version misses. Users served from
+ * {@link UserCache} are the same instances until a write replaces them, so their bytes are
+ * also kept per instance, weakly, and go away with the instance.
+ */
+@Component
+public class EncodedUserCache {
+
+    private record Encoded(long version, ByteString bytes) {}
+
+    private final Cache<String, Encoded> byVersion;
+    private final Cache<GlobalUser, ByteString> byInstance;
+
+    public EncodedUserCache(MeterRegistry meterRegistry,
+                            @Value("${eagle.user.encoded-cache.max-size:256MB}") DataSize maxSize) {
+        this.byVersion = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String id, Encoded encoded) -> encoded.bytes().size())
+                .recordStats()
+                .build();
+        // weak keys compare by identity
+        this.byInstance = Caffeine.newBuilder()
+                .weakKeys()
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byVersion, "user.encoded");
+        CaffeineCacheMetrics.monitor(meterRegistry, byInstance, "user.encoded-instances");
+    }
+
+    /** The bytes encoded at exactly this version, or {@code null}. */
+    public ByteString get(UserVersion key) {
+        Encoded encoded = byVersion.getIfPresent(key.id());
+        return encoded != null && encoded.version() == key.version() ? encoded.bytes() : null;
+    }
+
+    public ByteString put(UserVersion key, GlobalUser user) {
+        ByteString bytes = user.toByteString();
+        byVersion.put(key.id(), new Encoded(key.version(), bytes));
+        return bytes;
+    }
+
+    public ByteString encode(GlobalUser user) {
+        return byInstance.get(user, GlobalUser::toByteString);
+    }
+}
@@ -0,0 +1,108 @@
+package com.eagle.user.cache;
+
+import com.eagle.user.TokenUsernameResponse;
+import com.eagle.user.UserList;
+import com.eagle.user.repository.UserJdbcRepository;
+import com.eagle.user.utils.BatchLoader;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache in front of the user lookups by id and by username.
+ * Concurrent misses for the same key share one load, and misses for distinct users arriving
+ * within the loader window share one {@code ANY(:keys)} query. Empty results are not cached,
+ * and the write paths in {@code GlobalUserService} invalidate the entries they touch; the
+ * {@code UserEventChannel} does the same on every instance for changes made anywhere.
+ * Invalidation also drops loads still in flight, so a read that began before a write is
+ * returned to its callers but never cached. A load runs in the Reactor context of the caller
+ * that started it.
+ */
+@Component
+public class UserCache {
+
+    private final AsyncCache<String, UserList> byId;
+    private final AsyncCache<String, TokenUsernameResponse> byUsername;
+    private final BatchLoader<String, UserList> usersById;
+    private final BatchLoader<String, TokenUsernameResponse> usersByUsername;
+
+    public UserCache(UserJdbcRepository userJdbcRepository, MeterRegistry meterRegistry,
+                     @Value("${eagle.user.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${eagle.user.cache.expire-after-write:5m}") Duration expireAfterWrite,
+                     @Value("${eagle.user.loader.window:2ms}") Duration loaderWindow,
+                     @Value("${eagle.user.loader.max-batch-size:100}") int loaderMaxBatchSize) {
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+        this.byUsername = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "user.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, byUsername, "user.by-username");
+
+        this.usersById = new BatchLoader<>("user.by-id", userJdbcRepository::getGlobalUsersByIds,
+                loaderWindow, loaderMaxBatchSize, meterRegistry);
+        this.usersByUsername = new BatchLoader<>("user.by-username", userJdbcRepository::getUsersByUsernames,
+                loaderWindow, loaderMaxBatchSize, meterRegistry);
+    }
+
+    public Mono<UserList> getById(String id) {
+        return read(byId, id, key -> usersById.load(key).filter(list -> list.getGlobaluserCount() > 0))
+                .defaultIfEmpty(UserList.getDefaultInstance());
+    }
+
+    public Mono<TokenUsernameResponse> getByUsername(String username) {
+        return read(byUsername, username, usersByUsername::load);
+    }
+
+    public void putById(String id, UserList users) {
+        if (users.getGlobaluserCount() > 0) {
+            byId.put(id, CompletableFuture.completedFuture(users));
+        }
+    }
+
+    public void invalidateUsername(String username) {
+        usersByUsername.forget(username);
+        byUsername.synchronous().invalidate(username);
+    }
+
+    /** Drops the entries of a user whose username is known; usernames never change. */
+    public void invalidateUser(String id, String username) {
+        usersById.forget(id);
+        byId.synchronous().invalidate(id);
+        invalidateUsername(username);
+    }
+
+    /**
+     * Drops the id entry and any username entry that resolved to the same user. Username loads
+     * still in flight may be for this user too, so they are all dropped.
+     */
+    public void invalidateUser(String id) {
+        usersById.forget(id);
+        byId.synchronous().invalidate(id);
+        usersByUsername.forgetAll();
+        byUsername.asMap().values().removeIf(future -> {
+            TokenUsernameResponse cached = future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+            return cached == null || cached.getId().equals(id);
+        });
+    }
+
+    private static <V> Mono<V> read(AsyncCache<String, V> cache, String key, Function<String, Mono<V>> loader) {
+        // the future is shared between callers, so one caller cancelling must not cancel the load
+        return Mono.deferContextual(context -> Mono.fromFuture(
+                cache.get(key, (k, executor) -> loader.apply(k).contextWrite(context).toFuture()), true));
+    }
+}
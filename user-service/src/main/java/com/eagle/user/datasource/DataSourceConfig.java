@@ -0,0 +1,91 @@
+package com.eagle.user.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The primary pool, built from {@code spring.r2dbc.*}, one pool per configured replica and per
+ * additional shard, and the {@link RoutingConnectionFactory} over them that {@code DatabaseClient}
+ * and the transaction manager use. Without replicas or shards every connection comes from the
+ * primary pool. The schema of the primary and of each shard is brought up to date at startup
+ * by {@link SchemaMigrations}.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool primaryConnectionFactory(@Value("${spring.r2dbc.url}") String url,
+                                                   @Value("${spring.r2dbc.username}") String username,
+                                                   @Value("${spring.r2dbc.password:}") String password,
+                                                   @Value("${spring.r2dbc.pool.max-size:20}") int maxSize) {
+        return pool("primary", url, username, password, maxSize);
+    }
+
+    @Bean(destroyMethod = "stop")
+    public ReplicaSet replicaSet(ReplicaProperties properties, MeterRegistry meterRegistry) {
+        Map<String, ConnectionPool> pools = new LinkedHashMap<>();
+        properties.replicas().forEach(r -> pools.put(r.name(),
+                pool("replica-" + r.name(), r.url(), r.username(), r.password(), r.maxSize())));
+        return new ReplicaSet(pools, properties.maxLag(), properties.healthCheckInterval(), meterRegistry);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ShardSet shardSet(ShardProperties properties) {
+        Map<String, ConnectionPool> pools = new LinkedHashMap<>();
+        properties.shards().forEach(s -> pools.put(s.name(),
+                pool("shard-" + s.name(), s.url(), s.username(), s.password(), s.maxSize())));
+        return new ShardSet(pools);
+    }
+
+    @Bean
+    public SchemaMigrations schemaMigrations(@Value("${spring.r2dbc.url}") String url,
+                                             @Value("${spring.r2dbc.username}") String username,
+                                             @Value("${spring.r2dbc.password:}") String password,
+                                             @Value("${eagle.user.migrations.enabled:true}") boolean enabled,
+                                             ShardProperties shardProperties) {
+        List<SchemaMigrations.Target> targets = new ArrayList<>();
+        if (enabled) {
+            targets.add(new SchemaMigrations.Target(ShardRouting.PRIMARY, url, username, password));
+            shardProperties.shards().forEach(s ->
+                    targets.add(new SchemaMigrations.Target(s.name(), s.url(), s.username(), s.password())));
+        }
+        return new SchemaMigrations(targets);
+    }
+
+    @Bean
+    @Primary
+    public RoutingConnectionFactory connectionFactory(ConnectionPool primaryConnectionFactory, ReplicaSet replicaSet,
+                                                      ShardSet shardSet, MeterRegistry meterRegistry) {
+        return new RoutingConnectionFactory(primaryConnectionFactory, replicaSet, shardSet, meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startHealthChecks(ApplicationReadyEvent event) {
+        event.getApplicationContext().getBean(ReplicaSet.class).start();
+    }
+
+    private ConnectionPool pool(String name, String url, String username, String password, int maxSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name(name)
+                .maxSize(maxSize)
+                .build());
+    }
+}
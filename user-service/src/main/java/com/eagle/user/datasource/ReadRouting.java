@@ -0,0 +1,52 @@
+package com.eagle.user.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.util.context.Context;
+
+import java.util.function.Function;
+
+/**
+ * Marks repository reads that a replica may serve. Reads are routed to the primary unless
+ * marked, so writes, {@code @Transactional} flows (which hold a primary connection for their
+ * whole scope) and anything not opted in stay on the primary.
+ * Keys written through {@link #written} are remembered for the sticky window, and reads of
+ * those keys stay on the primary meanwhile, so a caller sees its own update even on a lagging
+ * replica.
+ */
+@Component
+public class ReadRouting {
+
+    static final String REPLICA_READ = "eagle.db.replicaRead";
+
+    private final Cache<String, Boolean> recentlyWritten;
+    private final Counter sticky;
+
+    public ReadRouting(ReplicaProperties properties, MeterRegistry meterRegistry) {
+        this.recentlyWritten = Caffeine.newBuilder()
+                .expireAfterWrite(properties.stickyWindow())
+                .maximumSize(100_000)
+                .build();
+        this.sticky = meterRegistry.counter("user.db.reads", "route", "sticky");
+    }
+
+    /** For {@code contextWrite}: lets a replica serve the read unless one of {@code keys} was just written. */
+    public Function<Context, Context> replica(String... keys) {
+        for (String key : keys) {
+            if (recentlyWritten.getIfPresent(key) != null) {
+                sticky.increment();
+                return Function.identity();
+            }
+        }
+        return context -> context.put(REPLICA_READ, Boolean.TRUE);
+    }
+
+    public void written(String... keys) {
+        for (String key : keys) {
+            recentlyWritten.put(key, Boolean.TRUE);
+        }
+    }
+}
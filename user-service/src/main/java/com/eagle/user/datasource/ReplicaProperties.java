@@ -0,0 +1,26 @@
+package com.eagle.user.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Read replicas under {@code eagle.user.datasource}. A replica serves reads only while its last
+ * health check succeeded and reported at most {@code max-lag} of replication lag; reads of a
+ * key written less than {@code sticky-window} ago go to the primary regardless.
+ */
+@ConfigurationProperties("eagle.user.datasource")
+public record ReplicaProperties(List<Replica> replicas,
+                                @DefaultValue("2s") Duration maxLag,
+                                @DefaultValue("5s") Duration healthCheckInterval,
+                                @DefaultValue("10s") Duration stickyWindow) {
+
+    public ReplicaProperties {
+        replicas = replicas == null ? List.of() : List.copyOf(replicas);
+    }
+
+    public record Replica(String name, String url, String username, String password,
+                          @DefaultValue("10") int maxSize) {}
+}
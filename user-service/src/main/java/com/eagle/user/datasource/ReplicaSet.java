@@ -0,0 +1,119 @@
+package com.eagle.user.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The replica pools and their last known health. Every {@code health-check-interval} each
+ * replica is asked for its replay lag; replicas that fail the check or lag too far behind are
+ * skipped by {@link #choose()} until a later check passes. Until the first check completes no
+ * replica is chosen and reads go to the primary.
+ */
+public class ReplicaSet {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSet.class);
+
+    // 0 on a primary or a caught-up standby, otherwise time since the last replayed transaction
+    private static final String LAG_QUERY = """
+            SELECT (CASE
+                      WHEN NOT pg_is_in_recovery() THEN 0
+                      WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                      ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+                    END)::float8 AS lag_ms
+            """;
+
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final Duration healthCheckInterval;
+    private final AtomicInteger next = new AtomicInteger();
+    private Disposable healthChecks;
+
+    ReplicaSet(Map<String, ConnectionPool> pools, Duration maxLag, Duration healthCheckInterval, MeterRegistry meterRegistry) {
+        this.replicas = pools.entrySet().stream().map(e -> new Replica(e.getKey(), e.getValue())).toList();
+        this.maxLag = maxLag;
+        this.healthCheckInterval = healthCheckInterval;
+        replicas.forEach(r -> {
+            Gauge.builder("user.db.replica.lag", r, replica -> replica.lagMillis)
+                    .tag("replica", r.name).baseUnit("milliseconds").register(meterRegistry);
+            Gauge.builder("user.db.replica.usable", r, replica -> replica.usable ? 1 : 0)
+                    .tag("replica", r.name).register(meterRegistry);
+        });
+    }
+
+    public Map<String, ConnectionPool> pools() {
+        Map<String, ConnectionPool> pools = new LinkedHashMap<>();
+        replicas.forEach(r -> pools.put(r.name, r.pool));
+        return pools;
+    }
+
+    /** Name of the next usable replica in round-robin order, or {@code null} when none is. */
+    String choose() {
+        int size = replicas.size();
+        if (size == 0) return null;
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.usable) return replica.name;
+        }
+        return null;
+    }
+
+    void start() {
+        if (replicas.isEmpty()) return;
+        healthChecks = Flux.interval(Duration.ZERO, healthCheckInterval)
+                .concatMap(tick -> Flux.fromIterable(replicas).flatMap(this::check))
+                .subscribe();
+    }
+
+    void stop() {
+        if (healthChecks != null) healthChecks.dispose();
+        replicas.forEach(r -> r.pool.dispose());
+    }
+
+    private Mono<Void> check(Replica replica) {
+        return Mono.usingWhen(replica.pool.create(),
+                        connection -> Mono.from(connection.createStatement(LAG_QUERY).execute())
+                                .flatMap(result -> Mono.from(result.map((row, meta) -> row.get("lag_ms", Double.class)))),
+                        Connection::close)
+                .timeout(healthCheckInterval)
+                .doOnNext(lag -> {
+                    replica.lagMillis = lag;
+                    boolean usable = lag <= maxLag.toMillis();
+                    if (usable != replica.usable) {
+                        log.info("Replica {} is {} (lag {} ms)", replica.name, usable ? "usable" : "lagging", lag.longValue());
+                    }
+                    replica.usable = usable;
+                })
+                .onErrorResume(e -> {
+                    if (replica.usable) log.warn("Replica {} failed its health check", replica.name, e);
+                    replica.usable = false;
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static final class Replica {
+        final String name;
+        final ConnectionPool pool;
+        volatile boolean usable;
+        volatile double lagMillis;
+
+        Replica(String name, ConnectionPool pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+    }
+}
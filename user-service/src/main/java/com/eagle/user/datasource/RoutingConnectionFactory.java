@@ -0,0 +1,61 @@
+package com.eagle.user.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+
+/**
+ * Hands out primary connections, or a replica connection when the subscriber context carries
+ * {@link ReadRouting#REPLICA_READ} and a replica is usable. Reads fall back to the primary when
+ * every replica is down or lagging; {@code user.db.reads{route}} counts where marked reads went.
+ * A context naming another shard ({@link ShardRouting#SHARD}) gets a connection of that shard;
+ * replicas serve the primary shard only.
+ */
+public class RoutingConnectionFactory extends AbstractRoutingConnectionFactory {
+
+    private static final String SHARD_KEY_PREFIX = "shard:";
+
+    private final ReplicaSet replicaSet;
+    private final ShardSet shardSet;
+    private final Counter replicaReads;
+    private final Counter fallbackReads;
+
+    RoutingConnectionFactory(ConnectionFactory primary, ReplicaSet replicaSet, ShardSet shardSet,
+                             MeterRegistry meterRegistry) {
+        this.replicaSet = replicaSet;
+        this.shardSet = shardSet;
+        this.replicaReads = meterRegistry.counter("user.db.reads", "route", "replica");
+        this.fallbackReads = meterRegistry.counter("user.db.reads", "route", "fallback");
+
+        HashMap<Object, Object> targets = new HashMap<>(replicaSet.pools());
+        shardSet.pools().forEach((shard, pool) -> targets.put(SHARD_KEY_PREFIX + shard, pool));
+        setTargetConnectionFactories(targets);
+        setDefaultTargetConnectionFactory(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public ReplicaSet replicaSet() {
+        return replicaSet;
+    }
+
+    public ShardSet shardSet() {
+        return shardSet;
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(context -> {
+            String shard = context.getOrDefault(ShardRouting.SHARD, ShardRouting.PRIMARY);
+            if (!ShardRouting.PRIMARY.equals(shard)) return Mono.just(SHARD_KEY_PREFIX + shard);
+            if (!context.getOrDefault(ReadRouting.REPLICA_READ, false)) return Mono.empty();
+            String replica = replicaSet.choose();
+            (replica == null ? fallbackReads : replicaReads).increment();
+            return Mono.justOrEmpty(replica);
+        });
+    }
+}
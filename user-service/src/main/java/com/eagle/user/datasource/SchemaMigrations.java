@@ -0,0 +1,143 @@
+package com.eagle.user.datasource;
+
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.SmartLifecycle;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Applies the versioned scripts in {@code db/migration} to the primary and to every shard. It
+ * runs as the first lifecycle bean, so before the gRPC server takes calls and before anything
+ * listening for {@code ApplicationReadyEvent} reads a table, but not in a CDS training run,
+ * which stops once the context is refreshed. Flyway needs JDBC; the R2DBC urls are rewritten,
+ * connection options included.
+ * <p>
+ * A database whose tables predate the scripts is baselined at version 0 and brought forward;
+ * the scripts only create what is missing.
+ */
+public class SchemaMigrations implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    public record Target(String name, String r2dbcUrl, String username, String password) {}
+
+    private final List<Target> targets;
+    private volatile boolean running;
+
+    SchemaMigrations(List<Target> targets) {
+        this.targets = List.copyOf(targets);
+    }
+
+    @Override
+    public void start() {
+        for (Target target : targets) {
+            MigrateResult result = migrate(jdbcUrl(target.r2dbcUrl()), target.username(), target.password());
+            log.info("Schema of {} at version {}, {} migration(s) applied",
+                    target.name(), result.targetSchemaVersion, result.migrationsExecuted);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+
+    public static MigrateResult migrate(String jdbcUrl, String username, String password) {
+        return Flyway.configure()
+                .dataSource(jdbcUrl, username, password)
+                .schemas("feedbackapp")
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+
+    /**
+     * The JDBC url of the same database. Options in the R2DBC url's query are carried over under
+     * their JDBC names; the timeouts JDBC has no property for become server settings in
+     * {@code options}, and any other option is passed on as it is.
+     */
+    static String jdbcUrl(String r2dbcUrl) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(r2dbcUrl);
+        Object port = options.getValue(ConnectionFactoryOptions.PORT);
+
+        Map<String, String> parameters = new LinkedHashMap<>();
+        List<String> settings = new ArrayList<>();
+        if (Boolean.parseBoolean(String.valueOf(options.getValue(ConnectionFactoryOptions.SSL)))) {
+            parameters.put("ssl", "true");
+        }
+        queryOf(r2dbcUrl).forEach((name, value) -> {
+            switch (name) {
+                case "sslMode" -> parameters.put("sslmode", value.toLowerCase(Locale.ROOT).replace('_', '-'));
+                case "sslRootCert", "sslCert", "sslKey", "sslPassword" -> parameters.put(name.toLowerCase(Locale.ROOT), value);
+                case "schema", "currentSchema" -> parameters.put("currentSchema", value);
+                case "applicationName" -> parameters.put("ApplicationName", value);
+                // whole seconds in JDBC, where 0 means no timeout
+                case "connectTimeout" -> parameters.put("connectTimeout",
+                        Long.toString(Math.max(1, DurationStyle.detectAndParse(value).toSeconds())));
+                case "statementTimeout" -> settings.add("statement_timeout=" + DurationStyle.detectAndParse(value).toMillis());
+                case "lockWaitTimeout" -> settings.add("lock_timeout=" + DurationStyle.detectAndParse(value).toMillis());
+                // key=value pairs separated by ';'
+                case "options" -> Arrays.stream(value.split(";"))
+                        .filter(setting -> !setting.isBlank())
+                        .forEach(setting -> settings.add(setting.trim()));
+                default -> parameters.put(name, value);
+            }
+        });
+        if (!settings.isEmpty()) {
+            parameters.put("options", settings.stream().map(setting -> "-c " + setting).collect(Collectors.joining(" ")));
+        }
+
+        StringBuilder url = new StringBuilder("jdbc:postgresql://")
+                .append(options.getRequiredValue(ConnectionFactoryOptions.HOST))
+                .append(port == null ? "" : ":" + port)
+                .append('/').append(options.getRequiredValue(ConnectionFactoryOptions.DATABASE));
+        char separator = '?';
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            url.append(separator).append(parameter.getKey()).append('=')
+                    .append(URLEncoder.encode(parameter.getValue(), StandardCharsets.UTF_8));
+            separator = '&';
+        }
+        return url.toString();
+    }
+
+    private static Map<String, String> queryOf(String url) {
+        Map<String, String> query = new LinkedHashMap<>();
+        int start = url.indexOf('?');
+        if (start < 0) return query;
+        for (String pair : url.substring(start + 1).split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+}
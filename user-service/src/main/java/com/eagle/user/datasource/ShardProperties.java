@@ -0,0 +1,39 @@
+package com.eagle.user.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Shards under {@code eagle.user.sharding}, in addition to the primary ({@code spring.r2dbc}),
+ * which is always shard 0. Users are hashed into a fixed number of {@code buckets}; which shard
+ * owns a bucket is kept in the catalog on the primary. The position of a shard in the list
+ * selects its id range ({@code index * id-range}), so shards are only ever appended.
+ */
+@ConfigurationProperties("eagle.user.sharding")
+public record ShardProperties(List<Shard> shards,
+                              @DefaultValue("1024") int buckets,
+                              @DefaultValue("5s") Duration refreshInterval,
+                              @DefaultValue("1000000000") long idRange,
+                              @DefaultValue Rebalance rebalance) {
+
+    public ShardProperties {
+        shards = shards == null ? List.of() : List.copyOf(shards);
+    }
+
+    public record Shard(String name, String url, String username, String password,
+                        @DefaultValue("10") int maxSize) {}
+
+    /**
+     * Moves buckets onto shards that own fewer than their share, {@code buckets-per-move} at a
+     * time, copying {@code batch-size} users per statement. Enable on one instance only;
+     * {@code grace} is how long a write already in flight may take to finish.
+     */
+    public record Rebalance(@DefaultValue("false") boolean enabled,
+                            @DefaultValue("30s") Duration interval,
+                            @DefaultValue("5s") Duration grace,
+                            @DefaultValue("8") int bucketsPerMove,
+                            @DefaultValue("500") int batchSize) {}
+}
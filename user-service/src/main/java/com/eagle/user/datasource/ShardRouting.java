@@ -0,0 +1,180 @@
+package com.eagle.user.datasource;
+
+import com.eagle.user.exception.ShardUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.util.context.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Which shard holds a user. Ids hash into a fixed number of buckets and each bucket is owned
+ * by one shard; a user's roles and addresses live with the user. The hash is the first 32 bits
+ * of the id's MD5, which Postgres computes too ({@code feedbackapp.user_id_hash}), and a bucket
+ * is a contiguous range of it, so the users of a bucket can be read through an index. Like
+ * {@link ReadRouting}, the choice travels in the subscriber context and
+ * {@link RoutingConnectionFactory} hands out a connection of that shard.
+ * <p>
+ * With a single shard every bucket is on the primary and no catalog is read. Otherwise the
+ * assignment comes from the catalog (see {@code ShardCatalog}) and is refused once it is more
+ * than three refresh intervals old, so an instance that cannot see a bucket move stops routing
+ * instead of writing to the old owner. Writes to a bucket frozen for a move fail with
+ * {@link ShardUnavailableException}, which clients retry.
+ */
+@Component
+public class ShardRouting {
+
+    static final String SHARD = "eagle.db.shard";
+
+    public static final String PRIMARY = "primary";
+
+    private final List<String> shards;
+    private final int buckets;
+    private final long maxAgeNanos;
+    private volatile Assignment assignment;
+
+    public ShardRouting(ShardProperties properties, MeterRegistry meterRegistry) {
+        List<String> names = new ArrayList<>();
+        names.add(PRIMARY);
+        properties.shards().forEach(shard -> names.add(shard.name()));
+        this.shards = List.copyOf(names);
+        this.buckets = properties.buckets();
+        this.maxAgeNanos = properties.refreshInterval().multipliedBy(3).toNanos();
+
+        if (!isSharded()) {
+            String[] owners = new String[buckets];
+            Arrays.fill(owners, PRIMARY);
+            assignment = new Assignment(owners, new BitSet(), System.nanoTime());
+        }
+        shards.forEach(shard -> Gauge.builder("user.shard.buckets", this, routing -> routing.bucketsOwnedBy(shard))
+                .tag("shard", shard).register(meterRegistry));
+    }
+
+    /** Every shard, the primary first, in id-range order. */
+    public List<String> shards() {
+        return shards;
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+
+    public int bucketOf(String userId) {
+        return (int) ((idHash(userId) * buckets) >>> 32);
+    }
+
+    /** The lowest hash in the bucket; bucket {@code b} holds hashes from here up to {@code hashFloor(b + 1)}. */
+    public long hashFloor(int bucket) {
+        return (((long) bucket << 32) + buckets - 1) / buckets;
+    }
+
+    /** Same value as {@code feedbackapp.user_id_hash(id)}: the first four bytes of the MD5, unsigned. */
+    static long idHash(String userId) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(userId.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return (digest[0] & 0xffL) << 24 | (digest[1] & 0xffL) << 16 | (digest[2] & 0xffL) << 8 | (digest[3] & 0xffL);
+    }
+
+    public String ownerOf(String userId) {
+        return current().owners[bucketOf(userId)];
+    }
+
+    /** Whether {@code shard} is where {@code userId} lives now; a bucket being copied also has rows on its target. */
+    public boolean owns(String shard, String userId) {
+        return shard.equals(ownerOf(userId));
+    }
+
+    /** For {@code contextWrite}: runs the read on the shard that owns the user. */
+    public Function<Context, Context> read(String userId) {
+        return on(ownerOf(userId));
+    }
+
+    /** For {@code contextWrite}: runs the write on the user's shard, unless its bucket is frozen for a move. */
+    public Function<Context, Context> write(String userId) {
+        Assignment current = current();
+        int bucket = bucketOf(userId);
+        if (current.frozen.get(bucket)) {
+            throw new ShardUnavailableException("User " + userId + " is being moved between shards, retry shortly");
+        }
+        return on(current.owners[bucket]);
+    }
+
+    public Function<Context, Context> on(String shard) {
+        return context -> context.put(SHARD, shard);
+    }
+
+    /** Items grouped by the shard that owns their user, for one query per shard. */
+    public <T> Map<String, List<T>> groupByOwner(Collection<T> items, Function<T, String> userId) {
+        Assignment current = current();
+        Map<String, List<T>> byShard = new LinkedHashMap<>();
+        for (T item : items) {
+            byShard.computeIfAbsent(current.owners[bucketOf(userId.apply(item))], shard -> new ArrayList<>()).add(item);
+        }
+        return byShard;
+    }
+
+    /** {@link #groupByOwner} for writes: fails like {@link #write} if any of the buckets is frozen. */
+    public <T> Map<String, List<T>> groupForWrite(Collection<T> items, Function<T, String> userId) {
+        Assignment current = current();
+        Map<String, List<T>> byShard = new LinkedHashMap<>();
+        for (T item : items) {
+            String id = userId.apply(item);
+            int bucket = bucketOf(id);
+            if (current.frozen.get(bucket)) {
+                throw new ShardUnavailableException("User " + id + " is being moved between shards, retry shortly");
+            }
+            byShard.computeIfAbsent(current.owners[bucket], shard -> new ArrayList<>()).add(item);
+        }
+        return byShard;
+    }
+
+    /** Replaces the assignment with one just read from the catalog. */
+    public void update(String[] owners, BitSet frozen) {
+        if (owners.length != buckets) {
+            throw new IllegalStateException("Shard catalog has " + owners.length + " buckets, configured " + buckets);
+        }
+        for (String owner : owners) {
+            if (!shards.contains(owner)) {
+                throw new IllegalStateException("Shard catalog names unknown shard " + owner);
+            }
+        }
+        assignment = new Assignment(owners.clone(), (BitSet) frozen.clone(), System.nanoTime());
+    }
+
+    private Assignment current() {
+        Assignment current = assignment;
+        if (current == null) {
+            throw new ShardUnavailableException("Shard map not loaded yet");
+        }
+        if (isSharded() && System.nanoTime() - current.loadedAt > maxAgeNanos) {
+            throw new ShardUnavailableException("Shard map is out of date");
+        }
+        return current;
+    }
+
+    private int bucketsOwnedBy(String shard) {
+        Assignment current = assignment;
+        return current == null ? 0 : (int) Arrays.stream(current.owners).filter(shard::equals).count();
+    }
+
+    private record Assignment(String[] owners, BitSet frozen, long loadedAt) {}
+}
@@ -0,0 +1,23 @@
+package com.eagle.user.datasource;
+
+import io.r2dbc.pool.ConnectionPool;
+
+import java.util.Map;
+
+/** Connection pools of the shards other than the primary, by shard name. */
+public class ShardSet {
+
+    private final Map<String, ConnectionPool> pools;
+
+    ShardSet(Map<String, ConnectionPool> pools) {
+        this.pools = Map.copyOf(pools);
+    }
+
+    public Map<String, ConnectionPool> pools() {
+        return pools;
+    }
+
+    void dispose() {
+        pools.values().forEach(ConnectionPool::dispose);
+    }
+}
@@ -0,0 +1,187 @@
+package com.eagle.user.events;
+
+import com.eagle.user.GlobalUser;
+import com.eagle.user.UserEvent;
+import com.eagle.user.cache.UserCache;
+import com.eagle.user.repository.UserJdbcRepository;
+import com.eagle.user.repository.UserProjection;
+import com.eagle.user.search.UserSearchIndex;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.Connection;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Carries user changes between instances with Postgres {@code LISTEN/NOTIFY} on the primary.
+ * Every instance, the publishing one included, appends a change to its {@link UserEventLog}
+ * only when the notification comes back, and Postgres delivers notifications to all listeners
+ * in commit order, so each log sees every change made through any instance, in the same order.
+ * Each instance also drops its cached copies of a changed user on receipt and applies the change
+ * to its search index, so credentials, profiles and search results changed through another
+ * instance are not served stale.
+ * <p>
+ * A notification payload is limited to 8000 bytes; a user too large for it (a legacy inline
+ * picture) is sent as its id and read back from its shard's primary by each listener. While the
+ * listening connection is down changes are missed, so every (re)connect restarts the log.
+ */
+@Component
+public class UserEventChannel {
+
+    private static final Logger log = LoggerFactory.getLogger(UserEventChannel.class);
+
+    static final String CHANNEL = "feedbackapp_user_events";
+
+    // below the 8000-byte limit of pg_notify, base64 included
+    static final int MAX_PAYLOAD = 7900;
+
+    private final DatabaseClient databaseClient;
+    private final ConnectionPool primaryConnectionFactory;
+    private final UserJdbcRepository userJdbcRepository;
+    private final UserEventLog userEventLog;
+    private final UserCache userCache;
+    private final UserSearchIndex userSearchIndex;
+    private final Duration reconnectInterval;
+    private Disposable listening;
+
+    public UserEventChannel(DatabaseClient databaseClient, ConnectionPool primaryConnectionFactory,
+                            UserJdbcRepository userJdbcRepository, UserEventLog userEventLog, UserCache userCache,
+                            UserSearchIndex userSearchIndex,
+                            @Value("${eagle.user.events.reconnect-interval:5s}") Duration reconnectInterval) {
+        this.databaseClient = databaseClient;
+        this.primaryConnectionFactory = primaryConnectionFactory;
+        this.userJdbcRepository = userJdbcRepository;
+        this.userEventLog = userEventLog;
+        this.userCache = userCache;
+        this.userSearchIndex = userSearchIndex;
+        this.reconnectInterval = reconnectInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        listening = Flux.defer(this::listen)
+                .concatMap(this::received)
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, reconnectInterval)
+                        .doBeforeRetry(signal -> log.warn("Lost the user event channel, reconnecting", signal.failure())))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (listening != null) listening.dispose();
+    }
+
+    /**
+     * Notifies every instance once the current transaction commits, or right away outside of
+     * one, so subscribers never see a change that was rolled back.
+     */
+    public Mono<Void> publish(UserEvent.Type type, String userId, GlobalUser user) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .filter(tsm -> tsm.isSynchronizationActive() && tsm.isActualTransactionActive())
+                .map(tsm -> {
+                    tsm.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public Mono<Void> afterCommit() {
+                            return notify(type, userId, user);
+                        }
+                    });
+                    return true;
+                })
+                .onErrorResume(NoTransactionException.class, e -> Mono.empty())
+                .switchIfEmpty(notify(type, userId, user).thenReturn(true))
+                .then();
+    }
+
+    private Mono<Void> notify(UserEvent.Type type, String userId, GlobalUser user) {
+        return Mono.defer(() -> databaseClient.sql("SELECT pg_notify(:channel, :payload)")
+                .bind("channel", CHANNEL)
+                .bind("payload", payload(type, userId, user))
+                .then());
+    }
+
+    static String payload(UserEvent.Type type, String userId, GlobalUser user) {
+        UserEvent.Builder event = UserEvent.newBuilder().setType(type).setUserId(userId);
+        if (user != null) {
+            String full = Base64.getEncoder().encodeToString(event.setUser(user).build().toByteArray());
+            if (full.length() <= MAX_PAYLOAD) return full;
+            event.clearUser();
+        }
+        return Base64.getEncoder().encodeToString(event.build().toByteArray());
+    }
+
+    // its own connection rather than a pooled one, held for as long as the instance listens
+    private Flux<Notification> listen() {
+        return Flux.usingWhen(Mono.from(primaryConnectionFactory.unwrap().create()),
+                connection -> {
+                    PostgresqlConnection postgres = (PostgresqlConnection) connection;
+                    // subscribe to notifications before LISTEN so none is dropped in between
+                    Mono<Void> subscribed = postgres.createStatement("LISTEN " + CHANNEL).execute()
+                            .flatMap(PostgresqlResult::getRowsUpdated)
+                            .then(Mono.fromRunnable(() -> {
+                                userEventLog.restart();
+                                log.info("Listening for user events on {}", CHANNEL);
+                            }));
+                    return Flux.merge(postgres.getNotifications(), subscribed.then(Mono.empty()));
+                },
+                Connection::close)
+                .concatWith(Mono.error(() -> new IllegalStateException("User event channel closed")));
+    }
+
+    private Mono<Void> received(Notification notification) {
+        UserEvent event;
+        try {
+            event = UserEvent.parseFrom(Base64.getDecoder().decode(notification.getParameter()));
+        } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+            log.warn("Ignoring malformed user event from pid {}", notification.getProcessId(), e);
+            return Mono.empty();
+        }
+        if (event.hasUser() || event.getType() == UserEvent.Type.DELETED) {
+            return Mono.fromRunnable(() -> apply(event.getType(), event.getUserId(),
+                    event.hasUser() ? event.getUser() : null));
+        }
+        return userJdbcRepository.getGlobalUserById(event.getUserId(), UserProjection.ALL, false)
+                .doOnNext(users -> {
+                    if (users.getGlobaluserCount() > 0) {
+                        apply(event.getType(), event.getUserId(), users.getGlobaluser(0));
+                    } else {
+                        // deleted again before the notification arrived
+                        userCache.invalidateUser(event.getUserId());
+                        userSearchIndex.remove(event.getUserId());
+                    }
+                })
+                .then();
+    }
+
+    private void apply(UserEvent.Type type, String userId, GlobalUser user) {
+        if (user != null) {
+            userCache.invalidateUser(userId, user.getUsername());
+        } else {
+            userCache.invalidateUser(userId);
+        }
+        if (type == UserEvent.Type.DELETED) {
+            userSearchIndex.remove(userId);
+        } else if (user != null) {
+            userSearchIndex.put(user);
+        }
+        userEventLog.append(type, userId, user);
+    }
+}
@@ -0,0 +1,145 @@
+package com.eagle.user.events;
+
+import com.eagle.user.GlobalUser;
+import com.eagle.user.UserEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The last {@code capacity} user changes of every instance, in the order the database delivered
+ * them to {@link UserEventChannel}. Each subscriber reads the ring from its own position and is
+ * woken up by appends, so a slow subscriber costs no memory beyond the ring; one that falls more
+ * than {@code capacity} events behind gets a {@link FellBehindException} and has to start over
+ * from a snapshot.
+ * <p>
+ * A position carries the epoch of the ring in its top bits. The epoch is drawn at random each
+ * time the channel starts listening, so a position from another instance, from an earlier run,
+ * or from before a lost connection is never taken for a current one: it is refused and the
+ * subscriber starts over.
+ */
+@Component
+public class UserEventLog {
+
+    /** The requested position is older than the oldest event still held, or from another epoch. */
+    public static class FellBehindException extends RuntimeException {
+        FellBehindException(long position) {
+            super("Event log no longer holds events after " + position);
+        }
+    }
+
+    // a position is the epoch above these bits and the count of events in the epoch below them
+    static final int COUNT_BITS = 40;
+
+    private final UserEvent[] ring;
+    private final Sinks.Many<Long> appended = Sinks.many().multicast().directBestEffort();
+    private final Counter published;
+
+    // guarded by this
+    private long epoch;
+    private long firstSequence;
+    private long lastSequence;
+
+    public UserEventLog(MeterRegistry meterRegistry,
+                        @Value("${eagle.user.events.capacity:10000}") int capacity) {
+        this.ring = new UserEvent[capacity];
+        this.published = meterRegistry.counter("user.events.published");
+        Gauge.builder("user.events.subscribers", appended, Sinks.Many::currentSubscriberCount).register(meterRegistry);
+        newEpoch();
+    }
+
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /** Whether every event after {@code position} is still held. */
+    public synchronized boolean canResumeFrom(long position) {
+        return position >>> COUNT_BITS == epoch && position <= lastSequence && position + 1 >= oldestHeld();
+    }
+
+    /** Every event after {@code position}, then new events as they are appended. */
+    public Flux<UserEvent> eventsAfter(long position) {
+        return Flux.defer(() -> {
+            AtomicLong read = new AtomicLong(position);
+            // subscribe to wake-ups before the first read so no append falls in between
+            return Flux.merge(appended.asFlux().onBackpressureLatest(), Mono.just(0L))
+                    .publishOn(Schedulers.parallel(), 1)
+                    .concatMap(wakeUp -> Flux.fromIterable(readAfter(read)), 1);
+        });
+    }
+
+    void append(UserEvent.Type type, String userId, GlobalUser user) {
+        long sequence;
+        synchronized (this) {
+            sequence = ++lastSequence;
+            UserEvent.Builder event = UserEvent.newBuilder().setSequence(sequence).setType(type).setUserId(userId);
+            if (user != null) event.setUser(user);
+            ring[slot(sequence)] = event.build();
+        }
+        published.increment();
+        wakeUp(sequence);
+    }
+
+    /**
+     * Drops every event held and starts a new epoch; called whenever changes may have been
+     * missed. Subscribers are woken up and fail with {@link FellBehindException}.
+     */
+    void restart() {
+        long sequence;
+        synchronized (this) {
+            newEpoch();
+            sequence = lastSequence;
+        }
+        wakeUp(sequence);
+    }
+
+    private synchronized void newEpoch() {
+        long next;
+        do {
+            next = ThreadLocalRandom.current().nextLong(1, 1L << (Long.SIZE - 1 - COUNT_BITS));
+        } while (next == epoch);
+        epoch = next;
+        Arrays.fill(ring, null);
+        lastSequence = epoch << COUNT_BITS;
+        firstSequence = lastSequence + 1;
+    }
+
+    private void wakeUp(long sequence) {
+        appended.emitNext(sequence, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+    }
+
+    private synchronized List<UserEvent> readAfter(AtomicLong read) {
+        long position = read.get();
+        if (position >>> COUNT_BITS != epoch) throw new FellBehindException(position);
+        if (position >= lastSequence) return List.of();
+        if (position + 1 < oldestHeld()) throw new FellBehindException(position);
+
+        List<UserEvent> events = new ArrayList<>((int) (lastSequence - position));
+        for (long sequence = position + 1; sequence <= lastSequence; sequence++) {
+            events.add(ring[slot(sequence)]);
+        }
+        read.set(lastSequence);
+        return events;
+    }
+
+    private long oldestHeld() {
+        return Math.max(firstSequence, lastSequence - ring.length + 1);
+    }
+
+    private int slot(long sequence) {
+        return (int) Math.floorMod(sequence, (long) ring.length);
+    }
+}
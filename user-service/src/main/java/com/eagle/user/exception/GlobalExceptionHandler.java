@@ -1,13 +1,59 @@
 package com.eagle.user.exception;
 
 import io.grpc.Status;
+import io.grpc.StatusException;
 import io.grpc.StatusRuntimeException;
 import net.devh.boot.grpc.server.advice.GrpcAdvice;
+import net.devh.boot.grpc.server.advice.GrpcExceptionHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Exceptions;
 
 @GrpcAdvice
 public class GlobalExceptionHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+
+    @GrpcExceptionHandler(DuplicateUserException.class)
     public StatusRuntimeException handleDuplicate(DuplicateUserException ex) {
         return Status.ALREADY_EXISTS.withDescription(ex.getMessage()).asRuntimeException();
     }
+
+    @GrpcExceptionHandler(InvalidRequestException.class)
+    public StatusRuntimeException handleInvalidRequest(InvalidRequestException ex) {
+        return Status.INVALID_ARGUMENT.withDescription(ex.getMessage()).asRuntimeException();
+    }
+
+    @GrpcExceptionHandler(UserNotFoundException.class)
+    public StatusRuntimeException handleNotFound(UserNotFoundException ex) {
+        return Status.NOT_FOUND.withDescription(ex.getMessage()).asRuntimeException();
+    }
+
+    @GrpcExceptionHandler(ServerBusyException.class)
+    public StatusRuntimeException handleBusy(ServerBusyException ex) {
+        return Status.RESOURCE_EXHAUSTED.withDescription(ex.getMessage()).asRuntimeException();
+    }
+
+    @GrpcExceptionHandler(ShardUnavailableException.class)
+    public StatusRuntimeException handleShardUnavailable(ShardUnavailableException ex) {
+        return Status.UNAVAILABLE.withDescription(ex.getMessage()).asRuntimeException();
+    }
+
+    /**
+     * Same mapping for errors signalled on a reactive pipeline. Those reach the call through
+     * {@code onError} after the handler method has returned, so the advice never sees them.
+     */
+    public StatusRuntimeException toStatus(Throwable error) {
+        Throwable cause = Exceptions.unwrap(error);
+        if (cause instanceof DuplicateUserException ex) return handleDuplicate(ex);
+        if (cause instanceof InvalidRequestException ex) return handleInvalidRequest(ex);
+        if (cause instanceof UserNotFoundException ex) return handleNotFound(ex);
+        if (cause instanceof ServerBusyException ex) return handleBusy(ex);
+        if (cause instanceof ShardUnavailableException ex) return handleShardUnavailable(ex);
+        if (cause instanceof StatusRuntimeException ex) return ex;
+        if (cause instanceof StatusException ex) return ex.getStatus().asRuntimeException(ex.getTrailers());
+
+        log.error("Unhandled error in gRPC call", cause);
+        return Status.INTERNAL.withDescription("Internal error").withCause(cause).asRuntimeException();
+    }
 }
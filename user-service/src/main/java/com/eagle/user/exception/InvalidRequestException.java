@@ -0,0 +1,7 @@
+package com.eagle.user.exception;
+
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String msg) {
+        super(msg);
+    }
+}
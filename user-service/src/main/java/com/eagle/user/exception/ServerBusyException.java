@@ -0,0 +1,7 @@
+package com.eagle.user.exception;
+
+public class ServerBusyException extends RuntimeException {
+    public ServerBusyException(String msg) {
+        super(msg);
+    }
+}
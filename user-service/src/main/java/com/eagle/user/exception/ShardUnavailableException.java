@@ -0,0 +1,7 @@
+package com.eagle.user.exception;
+
+public class ShardUnavailableException extends RuntimeException {
+    public ShardUnavailableException(String msg) {
+        super(msg);
+    }
+}
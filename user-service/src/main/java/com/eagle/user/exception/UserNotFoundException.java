@@ -0,0 +1,7 @@
+package com.eagle.user.exception;
+
+public class UserNotFoundException extends RuntimeException {
+    public UserNotFoundException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,58 @@
+package com.eagle.user.grpc;
+
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Drains a {@code Flux} into a server-streaming call one element at a time,
+ * only requesting the next element while the transport reports it is ready.
+ * A cancelled call disposes the subscription, which cancels the running query.
+ */
+public class FlowControlledSubscriber<T> extends BaseSubscriber<T> {
+
+    private final ServerCallStreamObserver<T> observer;
+    private final Function<Throwable, StatusRuntimeException> errors;
+    private final AtomicBoolean demandPending = new AtomicBoolean();
+
+    public FlowControlledSubscriber(StreamObserver<T> responseObserver,
+                                    Function<Throwable, StatusRuntimeException> errors) {
+        this.observer = (ServerCallStreamObserver<T>) responseObserver;
+        this.errors = errors;
+        this.observer.setOnReadyHandler(this::requestNext);
+        this.observer.setOnCancelHandler(this::dispose);
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        requestNext();
+    }
+
+    @Override
+    protected void hookOnNext(T value) {
+        demandPending.set(false);
+        observer.onNext(value);
+        requestNext();
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        observer.onCompleted();
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        observer.onError(errors.apply(throwable));
+    }
+
+    private void requestNext() {
+        if (!isDisposed() && observer.isReady() && demandPending.compareAndSet(false, true)) {
+            request(1);
+        }
+    }
+}
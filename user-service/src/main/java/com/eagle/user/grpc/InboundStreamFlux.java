@@ -0,0 +1,45 @@
+package com.eagle.user.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Exposes the request side of a client-streaming call as a {@code Flux}. Automatic
+ * inbound requests are disabled and messages are pulled from the client only as fast
+ * as the {@code Flux} subscriber requests them.
+ */
+public class InboundStreamFlux<T> implements StreamObserver<T> {
+
+    private final Sinks.Many<T> sink = Sinks.many().unicast().onBackpressureBuffer();
+    private final Flux<T> flux;
+
+    public InboundStreamFlux(StreamObserver<?> responseObserver) {
+        ServerCallStreamObserver<?> call = (ServerCallStreamObserver<?>) responseObserver;
+        call.disableAutoRequest();
+        this.flux = sink.asFlux()
+                .doOnRequest(n -> call.request((int) Math.min(n, Integer.MAX_VALUE)));
+    }
+
+    public Flux<T> flux() {
+        return flux;
+    }
+
+    // gRPC serializes listener callbacks, so plain emits are safe here
+
+    @Override
+    public void onNext(T value) {
+        sink.tryEmitNext(value);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        sink.tryEmitError(throwable);
+    }
+
+    @Override
+    public void onCompleted() {
+        sink.tryEmitComplete();
+    }
+}
@@ -0,0 +1,40 @@
+package com.eagle.user.grpc;
+
+import io.grpc.Context;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Trace id of the current RPC. The interceptor stores it in the gRPC {@link Context};
+ * {@link #capture()} copies it into the Reactor context of the service pipeline so the
+ * repositories can read it while the query runs on a driver thread.
+ */
+public final class TraceContext {
+
+    public static final Context.Key<String> TRACE_ID = Context.key("eagle-trace-id");
+    public static final String REACTOR_KEY = "eagle.traceId";
+
+    private TraceContext() {
+    }
+
+    /** Trace id from a W3C {@code traceparent} header, or a new random one. */
+    public static String fromTraceparent(String traceparent) {
+        if (traceparent != null) {
+            String[] parts = traceparent.split("-");
+            if (parts.length == 4 && parts[1].length() == 32) {
+                return parts[1];
+            }
+        }
+        byte[] id = new byte[16];
+        ThreadLocalRandom.current().nextBytes(id);
+        return HexFormat.of().formatHex(id);
+    }
+
+    public static reactor.util.context.Context capture() {
+        String traceId = TRACE_ID.get();
+        return traceId == null
+                ? reactor.util.context.Context.empty()
+                : reactor.util.context.Context.of(REACTOR_KEY, traceId);
+    }
+}
@@ -0,0 +1,50 @@
+package com.eagle.user.grpc;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.function.Function;
+
+/**
+ * Completes a unary (or client-streaming) call with the single value of a {@code Mono}.
+ * Nothing blocks: the response is written from whichever thread the value arrives on.
+ * Client cancellation and an expired deadline both cancel the call, which disposes the
+ * subscription and with it the running query and any transaction it holds.
+ */
+public class UnarySubscriber<T> extends BaseSubscriber<T> {
+
+    private final ServerCallStreamObserver<T> observer;
+    private final Function<Throwable, StatusRuntimeException> errors;
+    private boolean answered;
+
+    public UnarySubscriber(StreamObserver<T> responseObserver, Function<Throwable, StatusRuntimeException> errors) {
+        this.observer = (ServerCallStreamObserver<T>) responseObserver;
+        this.errors = errors;
+        this.observer.setOnCancelHandler(this::dispose);
+    }
+
+    @Override
+    protected void hookOnNext(T value) {
+        answered = true;
+        if (observer.isCancelled()) return;
+        observer.onNext(value);
+        observer.onCompleted();
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        if (!answered && !observer.isCancelled()) {
+            observer.onError(Status.INTERNAL.withDescription("No response produced").asRuntimeException());
+        }
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        if (!observer.isCancelled()) {
+            observer.onError(errors.apply(throwable));
+        }
+    }
+}
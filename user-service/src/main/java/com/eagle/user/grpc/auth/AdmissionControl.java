@@ -0,0 +1,164 @@
+package com.eagle.user.grpc.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-client and per-method rate and concurrency quotas from {@link ApiKeyProperties}, checked
+ * before a call reaches a service. Clients without configured limits are admitted unlimited.
+ * Every decision is counted in {@code user.rpc.client.calls{client, method, outcome}} and the
+ * calls each client has in flight are exposed as {@code user.rpc.client.inflight{client}}.
+ */
+@Component
+public class AdmissionControl {
+
+    public enum Outcome { ACCEPTED, RATE_LIMITED, CONCURRENCY_LIMITED, UNAUTHENTICATED }
+
+    /** A decision; when accepted, {@link #release()} must be called once the call has ended. */
+    public static class Admission {
+
+        private static final Admission RATE_LIMITED = new Admission(Outcome.RATE_LIMITED);
+        private static final Admission CONCURRENCY_LIMITED = new Admission(Outcome.CONCURRENCY_LIMITED);
+
+        private final Outcome outcome;
+
+        private Admission(Outcome outcome) {
+            this.outcome = outcome;
+        }
+
+        public Outcome outcome() {
+            return outcome;
+        }
+
+        public boolean accepted() {
+            return outcome == Outcome.ACCEPTED;
+        }
+
+        public void release() {
+        }
+    }
+
+    private static final String UNKNOWN_CLIENT = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ApiKeyProperties.Client> configured = new HashMap<>();
+    private final Map<String, ClientQuota> quotas = new ConcurrentHashMap<>();
+    private final Map<String, Counter> unauthenticated = new ConcurrentHashMap<>();
+
+    public AdmissionControl(ApiKeyProperties properties, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        properties.clients().forEach(c -> configured.put(c.id(), c));
+    }
+
+    public Admission admit(ApiClient client, String method) {
+        return quotas.computeIfAbsent(client.id(), this::newQuota).admit(method);
+    }
+
+    public void rejectedUnauthenticated(String method) {
+        unauthenticated.computeIfAbsent(method, m -> counter(UNKNOWN_CLIENT, m, Outcome.UNAUTHENTICATED)).increment();
+    }
+
+    private ClientQuota newQuota(String clientId) {
+        ApiKeyProperties.Client client = configured.get(clientId);
+        ClientQuota quota = client == null
+                ? new ClientQuota(clientId, null, 0, Map.of())
+                : new ClientQuota(clientId, bucket(client.rate(), client.burst()), client.maxConcurrent(), client.methods());
+        Gauge.builder("user.rpc.client.inflight", quota.concurrency, ConcurrencyLimit::inFlight)
+                .tag("client", clientId)
+                .register(meterRegistry);
+        return quota;
+    }
+
+    private Counter counter(String client, String method, Outcome outcome) {
+        return Counter.builder("user.rpc.client.calls")
+                .tags("client", client, "method", method, "outcome", outcome.name())
+                .register(meterRegistry);
+    }
+
+    private static TokenBucket bucket(double rate, int burst) {
+        return rate > 0 ? new TokenBucket(rate, burst) : null;
+    }
+
+    private final class ClientQuota {
+
+        private final String clientId;
+        private final TokenBucket rate;
+        private final ConcurrencyLimit concurrency;
+        private final Map<String, ApiKeyProperties.Limit> methodLimits;
+        private final Map<String, MethodQuota> methods = new ConcurrentHashMap<>();
+
+        ClientQuota(String clientId, TokenBucket rate, int maxConcurrent, Map<String, ApiKeyProperties.Limit> methodLimits) {
+            this.clientId = clientId;
+            this.rate = rate;
+            this.concurrency = new ConcurrencyLimit(maxConcurrent);
+            this.methodLimits = methodLimits;
+        }
+
+        Admission admit(String method) {
+            MethodQuota m = methods.computeIfAbsent(method, this::newMethodQuota);
+
+            // concurrency first: a slot is handed back on rejection; so is the method's token when
+            // the client-wide bucket then refuses, so a rejected call costs neither quota
+            if (!m.concurrency.tryAcquire()) return m.reject(Admission.CONCURRENCY_LIMITED);
+            if (!concurrency.tryAcquire()) {
+                m.concurrency.release();
+                return m.reject(Admission.CONCURRENCY_LIMITED);
+            }
+            boolean methodToken = m.rate == null || m.rate.tryAcquire();
+            if (!methodToken || (rate != null && !rate.tryAcquire())) {
+                if (methodToken && m.rate != null) m.rate.refund();
+                concurrency.release();
+                m.concurrency.release();
+                return m.reject(Admission.RATE_LIMITED);
+            }
+            m.accepted.increment();
+            return new Permit(m.concurrency);
+        }
+
+        private MethodQuota newMethodQuota(String method) {
+            ApiKeyProperties.Limit limit = methodLimits.get(method);
+            return new MethodQuota(
+                    limit == null ? null : bucket(limit.rate(), limit.burst()),
+                    new ConcurrencyLimit(limit == null ? 0 : limit.maxConcurrent()),
+                    counter(clientId, method, Outcome.ACCEPTED),
+                    counter(clientId, method, Outcome.RATE_LIMITED),
+                    counter(clientId, method, Outcome.CONCURRENCY_LIMITED));
+        }
+
+        private final class Permit extends Admission {
+
+            private final ConcurrencyLimit methodConcurrency;
+            private final AtomicBoolean released = new AtomicBoolean();
+
+            Permit(ConcurrencyLimit methodConcurrency) {
+                super(Outcome.ACCEPTED);
+                this.methodConcurrency = methodConcurrency;
+            }
+
+            // a call can end with both close() and a cancel, free the slots only once
+            @Override
+            public void release() {
+                if (released.compareAndSet(false, true)) {
+                    concurrency.release();
+                    methodConcurrency.release();
+                }
+            }
+        }
+    }
+
+    private record MethodQuota(TokenBucket rate, ConcurrencyLimit concurrency,
+                               Counter accepted, Counter rateLimited, Counter concurrencyLimited) {
+
+        Admission reject(Admission admission) {
+            (admission.outcome() == Outcome.RATE_LIMITED ? rateLimited : concurrencyLimited).increment();
+            return admission;
+        }
+    }
+}
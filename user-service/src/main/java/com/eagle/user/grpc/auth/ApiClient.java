@@ -0,0 +1,9 @@
+package com.eagle.user.grpc.auth;
+
+import io.grpc.Context;
+
+/** The caller identified by an API key. Available to handlers through {@link #CURRENT}. */
+public record ApiClient(String id) {
+
+    public static final Context.Key<ApiClient> CURRENT = Context.key("eagle.apiClient");
+}
@@ -0,0 +1,30 @@
+package com.eagle.user.grpc.auth;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * API clients under {@code eagle.user.api-keys.clients}. Keys are stored as the hex SHA-256 of
+ * the key, never in clear. Rates are calls per second with {@code burst} calls allowed at once;
+ * a rate or {@code max-concurrent} of 0 means unlimited. {@code methods} adds limits for single
+ * methods, by bare method name, on top of the client-wide ones.
+ */
+@ConfigurationProperties("eagle.user.api-keys")
+public record ApiKeyProperties(List<Client> clients) {
+
+    public ApiKeyProperties {
+        clients = clients == null ? List.of() : List.copyOf(clients);
+    }
+
+    public record Client(String id, String keySha256, double rate, int burst, int maxConcurrent,
+                         Map<String, Limit> methods) {
+
+        public Client {
+            methods = methods == null ? Map.of() : Map.copyOf(methods);
+        }
+    }
+
+    public record Limit(double rate, int burst, int maxConcurrent) {}
+}
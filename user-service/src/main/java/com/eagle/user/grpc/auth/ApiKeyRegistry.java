@@ -0,0 +1,13 @@
+package com.eagle.user.grpc.auth;
+
+import java.util.Optional;
+
+/**
+ * Resolves the key presented in the {@code eagle-api-key} header to a client. Declare a bean of
+ * this type to take keys from somewhere other than {@code eagle.user.api-keys}.
+ */
+public interface ApiKeyRegistry {
+
+    /** The client owning {@code apiKey}, empty when the key is missing or unknown. */
+    Optional<ApiClient> authenticate(String apiKey);
+}
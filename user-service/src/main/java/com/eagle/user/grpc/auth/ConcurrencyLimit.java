@@ -0,0 +1,34 @@
+package com.eagle.user.grpc.auth;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Calls in flight, capped at {@code max} unless {@code max} is 0. */
+final class ConcurrencyLimit {
+
+    private final int max;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    ConcurrencyLimit(int max) {
+        this.max = max;
+    }
+
+    boolean tryAcquire() {
+        if (max <= 0) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= max) return false;
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
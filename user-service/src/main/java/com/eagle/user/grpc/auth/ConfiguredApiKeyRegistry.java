@@ -0,0 +1,52 @@
+package com.eagle.user.grpc.auth;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keys from {@link ApiKeyProperties}. The presented key is hashed and compared against every
+ * configured hash with {@link MessageDigest#isEqual}, without stopping at the first match, so
+ * the time taken does not depend on which key, or how much of one, matched.
+ */
+@Component
+public class ConfiguredApiKeyRegistry implements ApiKeyRegistry {
+
+    private record Entry(byte[] keyHash, ApiClient client) {}
+
+    private final List<Entry> entries;
+
+    public ConfiguredApiKeyRegistry(ApiKeyProperties properties) {
+        this.entries = properties.clients().stream()
+                .map(c -> new Entry(HexFormat.of().parseHex(c.keySha256()), new ApiClient(c.id())))
+                .toList();
+    }
+
+    @Override
+    public Optional<ApiClient> authenticate(String apiKey) {
+
+        if (apiKey == null || apiKey.isEmpty()) return Optional.empty();
+
+        byte[] presented = sha256(apiKey);
+        ApiClient match = null;
+        for (Entry entry : entries) {
+            if (MessageDigest.isEqual(entry.keyHash(), presented)) {
+                match = entry.client();
+            }
+        }
+        return Optional.ofNullable(match);
+    }
+
+    private static byte[] sha256(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.eagle.user.grpc.auth;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket in its GCRA form: instead of a token count and a refill timestamp,
+ * the state is a single "theoretical arrival time" that each accepted call pushes forward by
+ * one emission interval, updated with one CAS. A call is accepted while that time is at most
+ * {@code burst} intervals ahead of now. A token taken for a call that is then refused elsewhere
+ * can be handed back with {@link #refund()}.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong theoreticalArrival;
+    private final LongSupplier nanoClock;
+
+    TokenBucket(double ratePerSecond, int burst) {
+        this(ratePerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double ratePerSecond, int burst, LongSupplier nanoClock) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.capacityNanos = intervalNanos * Math.max(1, burst);
+        this.nanoClock = nanoClock;
+        this.theoreticalArrival = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    boolean tryAcquire() {
+        long now = nanoClock.getAsLong();
+        for (;;) {
+            long tat = theoreticalArrival.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            if (next - now > capacityNanos) return false;
+            if (theoreticalArrival.compareAndSet(tat, next)) return true;
+        }
+    }
+
+    /** Undoes one successful {@link #tryAcquire()}. */
+    void refund() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+}
@@ -1,23 +1,80 @@
 package com.eagle.user.grpc.interceptors;
 
+import com.eagle.user.grpc.auth.AdmissionControl;
+import com.eagle.user.grpc.auth.ApiClient;
+import com.eagle.user.grpc.auth.ApiKeyRegistry;
 import io.grpc.*;
+import net.devh.boot.grpc.common.util.InterceptorOrder;
 import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.core.annotation.Order;
 
-import java.util.Objects;
+import java.util.Optional;
 
+/**
+ * Authenticates the {@code eagle-api-key} header against the {@link ApiKeyRegistry}, then asks
+ * {@link AdmissionControl} for a slot; calls over the client's quota are closed with
+ * {@code RESOURCE_EXHAUSTED} before they reach a service. The slot is given back when the call
+ * is closed or cancelled, and the client is put in the call context as {@link ApiClient#CURRENT}.
+ */
 @GrpcGlobalServerInterceptor
+@Order(InterceptorOrder.ORDER_SECURITY_AUTHENTICATION)
 public class ApiKeyAuthInterceptor implements ServerInterceptor {
+
+    private static final Metadata.Key<String> API_KEY =
+            Metadata.Key.of("eagle-api-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final ApiKeyRegistry apiKeyRegistry;
+    private final AdmissionControl admissionControl;
+
+    public ApiKeyAuthInterceptor(ApiKeyRegistry apiKeyRegistry, AdmissionControl admissionControl) {
+        this.apiKeyRegistry = apiKeyRegistry;
+        this.admissionControl = admissionControl;
+    }
+
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> serverCall, Metadata metadata, ServerCallHandler<ReqT, RespT> serverCallHandler) {
 
-        Metadata.Key<String> apiMetadataKey = Metadata.Key.of("eagle-api-key", Metadata.ASCII_STRING_MARSHALLER);
-        String apiKey = metadata.get(apiMetadataKey);
-        if(Objects.nonNull(apiKey) && apiKey.equals("eagle")){
-            return serverCallHandler.startCall(serverCall, metadata);
-        } else {
-            Status status = Status.UNAUTHENTICATED.withDescription("Invalid API Key");
-            serverCall.close(status, metadata);
+        String method = serverCall.getMethodDescriptor().getBareMethodName();
+
+        Optional<ApiClient> client = apiKeyRegistry.authenticate(metadata.get(API_KEY));
+        if (client.isEmpty()) {
+            admissionControl.rejectedUnauthenticated(method);
+            serverCall.close(Status.UNAUTHENTICATED.withDescription("Invalid API Key"), new Metadata());
+            return new ServerCall.Listener<>(){};
         }
-        return new ServerCall.Listener<>(){};
+
+        AdmissionControl.Admission admission = admissionControl.admit(client.get(), method);
+        if (!admission.accepted()) {
+            String reason = admission.outcome() == AdmissionControl.Outcome.RATE_LIMITED
+                    ? "Rate limit exceeded" : "Too many concurrent calls";
+            serverCall.close(Status.RESOURCE_EXHAUSTED
+                    .withDescription(reason + " for client " + client.get().id() + " on " + method), new Metadata());
+            return new ServerCall.Listener<>(){};
+        }
+
+        ServerCall<ReqT, RespT> releasingCall = new ForwardingServerCall.SimpleForwardingServerCall<>(serverCall) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                admission.release();
+                super.close(status, trailers);
+            }
+        };
+
+        ServerCall.Listener<ReqT> listener;
+        try {
+            Context context = Context.current().withValue(ApiClient.CURRENT, client.get());
+            listener = Contexts.interceptCall(context, releasingCall, metadata, serverCallHandler);
+        } catch (RuntimeException e) {
+            admission.release();
+            throw e;
+        }
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onCancel() {
+                admission.release();
+                super.onCancel();
+            }
+        };
     }
 }
@@ -0,0 +1,88 @@
+package com.eagle.user.grpc.interceptors;
+
+import com.eagle.user.grpc.TraceContext;
+import io.grpc.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import net.devh.boot.grpc.common.util.InterceptorOrder;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.core.annotation.Order;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records latency (with percentile histogram) and status code of every call, keeps an
+ * in-flight gauge per method, and attaches the caller's trace id to the call context.
+ * Runs before authentication so rejected calls are counted as well.
+ */
+@GrpcGlobalServerInterceptor
+@Order(InterceptorOrder.ORDER_TRACING_METRICS)
+public class RpcMetricsInterceptor implements ServerInterceptor {
+
+    private static final Metadata.Key<String> TRACEPARENT =
+            Metadata.Key.of("traceparent", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public RpcMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> serverCall, Metadata metadata, ServerCallHandler<ReqT, RespT> serverCallHandler) {
+
+        CallMetrics callMetrics = new CallMetrics(serverCall.getMethodDescriptor().getBareMethodName());
+
+        ServerCall<ReqT, RespT> timedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(serverCall) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                callMetrics.finish(status.getCode());
+                super.close(status, trailers);
+            }
+        };
+
+        Context context = Context.current()
+                .withValue(TraceContext.TRACE_ID, TraceContext.fromTraceparent(metadata.get(TRACEPARENT)));
+        ServerCall.Listener<ReqT> listener = Contexts.interceptCall(context, timedCall, metadata, serverCallHandler);
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onCancel() {
+                callMetrics.finish(Status.Code.CANCELLED);
+                super.onCancel();
+            }
+        };
+    }
+
+    private final class CallMetrics {
+
+        private final String method;
+        private final AtomicInteger active;
+        private final Timer.Sample sample;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        CallMetrics(String method) {
+            this.method = method;
+            this.active = inFlight.computeIfAbsent(method, m ->
+                    meterRegistry.gauge("user.rpc.inflight", Tags.of("method", m), new AtomicInteger()));
+            this.active.incrementAndGet();
+            this.sample = Timer.start(meterRegistry);
+        }
+
+        // a call ends either with close() or with a client cancel, record whichever comes first
+        void finish(Status.Code code) {
+            if (finished.compareAndSet(false, true)) {
+                active.decrementAndGet();
+                sample.stop(Timer.builder("user.rpc.latency")
+                        .tags("method", method, "status", code.name())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.eagle.user.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.eagle.user.datasource.RoutingConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes {@code user.db.pool.*} gauges for every R2DBC connection pool, tagged by pool name,
+ * including the replica and shard pools behind the {@link RoutingConnectionFactory}.
+ */
+@Component
+public class ConnectionPoolGauges {
+
+    private final MeterRegistry meterRegistry;
+
+    public ConnectionPoolGauges(MeterRegistry meterRegistry, Map<String, ConnectionFactory> connectionFactories) {
+        this.meterRegistry = meterRegistry;
+        connectionFactories.forEach((name, factory) -> {
+            if (factory instanceof ConnectionPool pool) register(name, pool);
+            if (factory instanceof RoutingConnectionFactory routing) {
+                routing.replicaSet().pools().forEach((replica, pool) -> register("replica-" + replica, pool));
+                routing.shardSet().pools().forEach((shard, pool) -> register("shard-" + shard, pool));
+            }
+        });
+    }
+
+    public void register(String name, ConnectionPool pool) {
+        pool.getMetrics().ifPresent(metrics -> {
+            gauge("user.db.pool.acquired", name, metrics, PoolMetrics::acquiredSize);
+            gauge("user.db.pool.allocated", name, metrics, PoolMetrics::allocatedSize);
+            gauge("user.db.pool.idle", name, metrics, PoolMetrics::idleSize);
+            gauge("user.db.pool.pending", name, metrics, PoolMetrics::pendingAcquireSize);
+            gauge("user.db.pool.max", name, metrics, PoolMetrics::getMaxAllocatedSize);
+        });
+    }
+
+    private void gauge(String meter, String pool, PoolMetrics metrics, ToDoubleFunction<PoolMetrics> value) {
+        Gauge.builder(meter, metrics, value).tag("pool", pool).register(meterRegistry);
+    }
+}
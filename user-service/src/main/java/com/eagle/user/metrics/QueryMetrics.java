@@ -0,0 +1,68 @@
+package com.eagle.user.metrics;
+
+import com.eagle.user.grpc.TraceContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Times repository statements under a logical query name ({@code user.db.query} tagged by
+ * query and outcome). Statements slower than {@code eagle.user.metrics.slow-query} are logged
+ * with the trace id of the RPC that issued them.
+ */
+@Component
+public class QueryMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryMetrics.class);
+
+    private final MeterRegistry meterRegistry;
+    private final long slowQueryNanos;
+
+    public QueryMetrics(MeterRegistry meterRegistry,
+                        @Value("${eagle.user.metrics.slow-query:200ms}") Duration slowQuery) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryNanos = slowQuery.toNanos();
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> timed(String query) {
+        return mono -> Mono.deferContextual(ctx -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return mono.doFinally(signal -> stop(sample, query, signal, ctx));
+        });
+    }
+
+    public <T> Function<Flux<T>, Flux<T>> timedMany(String query) {
+        return flux -> Flux.deferContextual(ctx -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return flux.doFinally(signal -> stop(sample, query, signal, ctx));
+        });
+    }
+
+    private void stop(Timer.Sample sample, String query, SignalType signal, ContextView ctx) {
+        String outcome = switch (signal) {
+            case ON_COMPLETE -> "success";
+            case ON_ERROR -> "error";
+            default -> "cancelled";
+        };
+        long nanos = sample.stop(Timer.builder("user.db.query")
+                .tags("query", query, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+
+        if (nanos >= slowQueryNanos) {
+            log.warn("Slow query {} took {} ms ({}) trace={}", query, TimeUnit.NANOSECONDS.toMillis(nanos),
+                    outcome, ctx.getOrDefault(TraceContext.REACTOR_KEY, "-"));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.datasource.ShardProperties;
+import com.eagle.user.datasource.ShardRouting;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hi/lo sequence allocator. Each prefix reserves a block of values from
+ * {@code feedbackapp.id_sequence} in one round-trip and hands them out from memory;
+ * the next block is reserved in the background once the current one runs low.
+ * Blocks are disjoint across instances because the reservation is a single atomic UPSERT.
+ * Values of a block that is never fully used are skipped, so ids can have gaps.
+ * <p>
+ * Every shard keeps its own sequence within its own id range (see {@link ShardProperties}) and
+ * reservations rotate over the shards, so id allocation is spread with the data and keeps
+ * working while one shard is unreachable. Where an id is allocated has no bearing on where the
+ * user is stored.
+ */
+@Component
+public class IdBlockAllocator {
+
+    private final IdSequenceRepository idSequenceRepository;
+    private final int blockSize;
+    private final int refillThreshold;
+    private final List<String> shards;
+    private final long idRange;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final Map<String, PrefixPool> pools = new ConcurrentHashMap<>();
+
+    public IdBlockAllocator(IdSequenceRepository idSequenceRepository, ShardRouting shardRouting,
+                            ShardProperties shardProperties,
+                            @Value("${eagle.user.id-block.size:100}") int blockSize,
+                            @Value("${eagle.user.id-block.refill-threshold:20}") int refillThreshold) {
+        if (blockSize < 1) throw new IllegalArgumentException("eagle.user.id-block.size must be positive");
+        this.idSequenceRepository = idSequenceRepository;
+        this.shards = shardRouting.shards();
+        this.idRange = shardProperties.idRange();
+        this.blockSize = blockSize;
+        this.refillThreshold = Math.min(refillThreshold, blockSize - 1);
+    }
+
+    public Mono<Long> next(String prefix) {
+        String shard = nextShard();
+        return pools.computeIfAbsent(shard + "/" + prefix, key -> new PrefixPool(shard, prefix)).next();
+    }
+
+    /** Reserves {@code count} values in one dedicated block and returns the first of them. */
+    public Mono<Long> nextRange(String prefix, int count) {
+        return reserve(nextShard(), prefix, count)
+                .map(last -> last - count + 1);
+    }
+
+    private String nextShard() {
+        return shards.get(Math.floorMod(nextShard.getAndIncrement(), shards.size()));
+    }
+
+    // highest value of a fresh block, within the shard's id range
+    private Mono<Long> reserve(String shard, String prefix, int size) {
+        long floor = shards.indexOf(shard) * idRange;
+        return idSequenceRepository.reserveBlock(shard, floor, prefix, size)
+                .flatMap(last -> last > floor + idRange
+                        ? Mono.error(new IllegalStateException("Id range of shard " + shard + " is used up"))
+                        : Mono.just(last));
+    }
+
+    private record Block(AtomicLong next, long last) {
+        static final Block EXHAUSTED = new Block(new AtomicLong(1), 0);
+    }
+
+    private final class PrefixPool {
+
+        private final String shard;
+        private final String prefix;
+        private final AtomicReference<Block> current = new AtomicReference<>(Block.EXHAUSTED);
+        private final AtomicReference<Mono<Block>> upcoming = new AtomicReference<>();
+
+        PrefixPool(String shard, String prefix) {
+            this.shard = shard;
+            this.prefix = prefix;
+        }
+
+        Mono<Long> next() {
+            return Mono.defer(() -> {
+                Block block = current.get();
+                long value = block.next().getAndIncrement();
+                if (value <= block.last()) {
+                    if (block.last() - value == refillThreshold) {
+                        prefetch();
+                    }
+                    return Mono.just(value);
+                }
+
+                Mono<Block> pending = upcoming();
+                return pending
+                        .doOnError(e -> upcoming.compareAndSet(pending, null))
+                        .flatMap(nextBlock -> {
+                            if (current.compareAndSet(block, nextBlock)) {
+                                upcoming.compareAndSet(pending, null);
+                            }
+                            return next();
+                        });
+            });
+        }
+
+        private void prefetch() {
+            Mono<Block> pending = upcoming();
+            pending.subscribe(b -> {}, e -> upcoming.compareAndSet(pending, null));
+        }
+
+        private Mono<Block> upcoming() {
+            Mono<Block> pending = upcoming.get();
+            if (pending != null) return pending;
+
+            Mono<Block> reservation = reserve(shard, prefix, blockSize)
+                    .map(last -> new Block(new AtomicLong(last - blockSize + 1), last))
+                    .cache();
+            Mono<Block> witness = upcoming.compareAndExchange(null, reservation);
+            return witness != null ? witness : reservation;
+        }
+    }
+}
@@ -1,17 +1,22 @@
 package com.eagle.user.repository;
 
+import com.eagle.user.datasource.ShardRouting;
+import com.eagle.user.metrics.QueryMetrics;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Mono;
 
 @Repository
 public class IdSequenceRepository {
 
     private final DatabaseClient dbClient;
+    private final QueryMetrics queryMetrics;
+    private final ShardRouting shardRouting;
 
-    public IdSequenceRepository(DatabaseClient dbClient){
+    public IdSequenceRepository(DatabaseClient dbClient, QueryMetrics queryMetrics, ShardRouting shardRouting){
         this.dbClient = dbClient;
+        this.queryMetrics = queryMetrics;
+        this.shardRouting = shardRouting;
     }
 
     public Mono<Long> next(String prefix){
@@ -25,6 +30,31 @@ public class IdSequenceRepository {
                 """)
                 .bind("prefix", prefix)
                 .map((row, meta) -> row.get("last_value", Long.class))
-                .one();
+                .one()
+                .transform(queryMetrics.timed("id-sequence.next"));
+    }
+
+    /**
+     * Reserves {@code size} consecutive values for the prefix in one statement and returns the
+     * highest value of the block. The block is {@code (last_value - size, last_value]}.
+     * Each shard keeps its own sequence; one created there starts at {@code floor}, the bottom of
+     * the shard's id range, so shards never hand out the same value.
+     */
+    public Mono<Long> reserveBlock(String shard, long floor, String prefix, int size){
+
+        return dbClient.sql("""
+                INSERT INTO feedbackapp.id_sequence(prefix, last_value)
+                VALUES (:prefix, :floor + :size)
+                ON CONFLICT (prefix)
+                DO UPDATE SET last_value = feedbackapp.id_sequence.last_value + :size
+                RETURNING last_value
+                """)
+                .bind("prefix", prefix)
+                .bind("floor", floor)
+                .bind("size", (long) size)
+                .map((row, meta) -> row.get("last_value", Long.class))
+                .one()
+                .transform(queryMetrics.timed("id-sequence.reserve-block"))
+                .contextWrite(shardRouting.on(shard));
     }
 }
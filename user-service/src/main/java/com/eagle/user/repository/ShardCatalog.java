@@ -0,0 +1,170 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.datasource.ShardProperties;
+import com.eagle.user.datasource.ShardRouting;
+import com.eagle.user.metrics.QueryMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bucket ownership in {@code feedbackapp.user_shard_bucket} on the primary, loaded into
+ * {@link ShardRouting} once the application is ready and again every refresh interval. The
+ * table is seeded with every bucket on the primary, where the data is before any shard is
+ * added; {@link ShardRebalancer} then moves buckets out. Not used with a single shard.
+ */
+@Repository
+public class ShardCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardCatalog.class);
+
+    public record Bucket(int bucket, String shard, String movingTo, boolean frozen, String drainFrom) {}
+
+    private final DatabaseClient databaseClient;
+    private final ShardRouting shardRouting;
+    private final QueryMetrics queryMetrics;
+    private final Duration refreshInterval;
+    private Disposable refreshes;
+    private volatile boolean seeded;
+
+    public ShardCatalog(DatabaseClient databaseClient, ShardRouting shardRouting, QueryMetrics queryMetrics,
+                        ShardProperties properties) {
+        this.databaseClient = databaseClient;
+        this.shardRouting = shardRouting;
+        this.queryMetrics = queryMetrics;
+        this.refreshInterval = properties.refreshInterval();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!shardRouting.isSharded()) return;
+        refreshes = Flux.interval(Duration.ZERO, refreshInterval)
+                .concatMap(tick -> (seeded ? Mono.<Void>empty() : seed().doOnSuccess(done -> seeded = true))
+                        .then(refresh())
+                        .onErrorResume(e -> {
+                            log.warn("Shard catalog refresh failed", e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refreshes != null) refreshes.dispose();
+    }
+
+    /** Reloads the catalog into {@link ShardRouting} now. */
+    public Mono<Void> refresh() {
+        return load()
+                .doOnNext(buckets -> {
+                    String[] owners = new String[buckets.size()];
+                    BitSet frozen = new BitSet(buckets.size());
+                    for (Bucket bucket : buckets) {
+                        owners[bucket.bucket()] = bucket.shard();
+                        frozen.set(bucket.bucket(), bucket.frozen());
+                    }
+                    shardRouting.update(owners, frozen);
+                })
+                .then();
+    }
+
+    public Mono<List<Bucket>> load() {
+        return databaseClient.sql("""
+                SELECT bucket, shard, moving_to, frozen, drain_from
+                FROM feedbackapp.user_shard_bucket
+                ORDER BY bucket
+            """)
+                .map((row, meta) -> new Bucket(
+                        row.get("bucket", Integer.class),
+                        row.get("shard", String.class),
+                        row.get("moving_to", String.class),
+                        row.get("frozen", Boolean.class),
+                        row.get("drain_from", String.class)))
+                .all()
+                .collectList()
+                .transform(queryMetrics.timed("shard.catalog.load"))
+                .contextWrite(shardRouting.on(ShardRouting.PRIMARY));
+    }
+
+    private Mono<Void> seed() {
+        return databaseClient.sql("""
+                INSERT INTO feedbackapp.user_shard_bucket(bucket, shard)
+                SELECT b, :shard FROM generate_series(0, :last) AS b
+                ON CONFLICT (bucket) DO NOTHING
+            """)
+                .bind("shard", ShardRouting.PRIMARY)
+                .bind("last", shardRouting.buckets() - 1)
+                .then()
+                .transform(queryMetrics.timed("shard.catalog.seed"))
+                .contextWrite(shardRouting.on(ShardRouting.PRIMARY));
+    }
+
+    // ------------------- Moves -------------------
+
+    /** Marks the buckets as moving to {@code target}; returns those claimed, skipping any owned elsewhere. */
+    public Mono<List<Integer>> startMove(Collection<Integer> buckets, String source, String target) {
+        return databaseClient.sql("""
+                UPDATE feedbackapp.user_shard_bucket SET moving_to = :target
+                WHERE bucket = ANY(:buckets) AND shard = :source AND drain_from IS NULL
+                  AND (moving_to IS NULL OR moving_to = :target)
+                RETURNING bucket
+            """)
+                .bind("target", target)
+                .bind("source", source)
+                .bind("buckets", buckets.toArray(Integer[]::new))
+                .map((row, meta) -> row.get("bucket", Integer.class))
+                .all()
+                .collectList()
+                .transform(queryMetrics.timed("shard.catalog.start-move"))
+                .contextWrite(shardRouting.on(ShardRouting.PRIMARY));
+    }
+
+    /** From here until {@link #finishMove} writes to the buckets are refused. */
+    public Mono<Void> freeze(Collection<Integer> buckets) {
+        return databaseClient.sql("""
+                UPDATE feedbackapp.user_shard_bucket SET frozen = TRUE WHERE bucket = ANY(:buckets)
+            """)
+                .bind("buckets", buckets.toArray(Integer[]::new))
+                .then()
+                .transform(queryMetrics.timed("shard.catalog.freeze"))
+                .contextWrite(shardRouting.on(ShardRouting.PRIMARY));
+    }
+
+    /**
+     * Hands the buckets to the shard they were moving to and lets writes through again, in one
+     * statement. The old owner is kept in {@code drain_from} until its copies are deleted.
+     */
+    public Mono<Void> finishMove(Collection<Integer> buckets) {
+        return databaseClient.sql("""
+                UPDATE feedbackapp.user_shard_bucket
+                SET shard = moving_to, drain_from = shard, moving_to = NULL, frozen = FALSE
+                WHERE bucket = ANY(:buckets) AND moving_to IS NOT NULL
+            """)
+                .bind("buckets", buckets.toArray(Integer[]::new))
+                .then()
+                .transform(queryMetrics.timed("shard.catalog.finish-move"))
+                .contextWrite(shardRouting.on(ShardRouting.PRIMARY));
+    }
+
+    public Mono<Void> finishDrain(Collection<Integer> buckets) {
+        return databaseClient.sql("""
+                UPDATE feedbackapp.user_shard_bucket SET drain_from = NULL WHERE bucket = ANY(:buckets)
+            """)
+                .bind("buckets", buckets.toArray(Integer[]::new))
+                .then()
+                .transform(queryMetrics.timed("shard.catalog.finish-drain"))
+                .contextWrite(shardRouting.on(ShardRouting.PRIMARY));
+    }
+}
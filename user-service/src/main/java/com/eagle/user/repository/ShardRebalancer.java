@@ -0,0 +1,380 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.GlobalUserRole;
+import com.eagle.user.datasource.ShardProperties;
+import com.eagle.user.datasource.ShardRouting;
+import com.eagle.user.metrics.QueryMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Moves buckets between shards while the service keeps serving them. Every interval the
+ * catalog is compared with an even split over the configured shards, and up to
+ * {@code buckets-per-move} buckets go from shards above their share to shards below it:
+ * <ol>
+ *   <li>mark them moving and copy their users to the target while writes continue;</li>
+ *   <li>freeze them and wait until every instance has seen the freeze or stopped routing
+ *       (three refresh intervals) and writes already in flight are done ({@code grace});</li>
+ *   <li>copy again, now exact, and hand them to the target in one catalog update;</li>
+ *   <li>wait as long again for reads still on the old owner, then delete the rows there.</li>
+ * </ol>
+ * Every step can be repeated, so buckets left half moved are taken through the remaining
+ * steps on the next run. Role ids are reassigned on the target.
+ */
+@Component
+public class ShardRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    static final String SELECT_USERS = """
+            SELECT %s, u.password, u.created_date
+            FROM feedbackapp.global_user u
+            WHERE u.id = ANY(:ids)
+            """.formatted(UserProjection.ALL.selectList());
+
+    private static final String COPY_USERS = """
+            INSERT INTO feedbackapp.global_user(
+                id, username, fullname, dob, email, password, mobile, is_active,
+                account_non_expired, account_non_locked, credential_non_expired,
+                profile_pic_hash, created_date
+            )
+            SELECT * FROM unnest(
+                :ids::text[], :usernames::text[], :fullnames::text[], :dobs::text[], :emails::text[],
+                :passwords::text[], :mobiles::bigint[], :active::boolean[], :nonExpired::boolean[],
+                :nonLocked::boolean[], :credentialsNonExpired::boolean[], :picHashes::text[],
+                :createdDates::timestamp[]
+            )
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final ShardRouting shardRouting;
+    private final ShardCatalog shardCatalog;
+    private final UserHydrator userHydrator;
+    private final BatchWriter batchWriter;
+    private final QueryMetrics queryMetrics;
+    private final TransactionalOperator transactionalOperator;
+    private final ShardProperties.Rebalance settings;
+    private final Duration settle;
+    private final Counter bucketsMoved;
+    private final Counter usersCopied;
+    private Disposable runs;
+
+    public ShardRebalancer(DatabaseClient databaseClient, ShardRouting shardRouting, ShardCatalog shardCatalog,
+                           UserHydrator userHydrator, BatchWriter batchWriter, QueryMetrics queryMetrics,
+                           TransactionalOperator transactionalOperator, ShardProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.databaseClient = databaseClient;
+        this.shardRouting = shardRouting;
+        this.shardCatalog = shardCatalog;
+        this.userHydrator = userHydrator;
+        this.batchWriter = batchWriter;
+        this.queryMetrics = queryMetrics;
+        this.transactionalOperator = transactionalOperator;
+        this.settings = properties.rebalance();
+        // an instance keeps using its map for up to three refresh intervals (see ShardRouting)
+        this.settle = properties.refreshInterval().multipliedBy(3).plus(settings.grace());
+        this.bucketsMoved = meterRegistry.counter("user.shard.rebalance.buckets");
+        this.usersCopied = meterRegistry.counter("user.shard.rebalance.users");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!settings.enabled() || !shardRouting.isSharded()) return;
+        runs = Flux.interval(settings.interval(), settings.interval())
+                .concatMap(tick -> rebalance()
+                        .onErrorResume(e -> {
+                            log.warn("Shard rebalance failed", e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (runs != null) runs.dispose();
+    }
+
+    record Move(int bucket, String source, String target) {}
+
+    private Mono<Void> rebalance() {
+        return shardCatalog.load().flatMap(buckets -> {
+            List<ShardCatalog.Bucket> draining = buckets.stream().filter(b -> b.drainFrom() != null).toList();
+            if (!draining.isEmpty()) {
+                return Mono.delay(settle).then(drain(draining.stream()
+                        .map(b -> new Move(b.bucket(), b.drainFrom(), b.shard()))
+                        .toList()));
+            }
+            List<Move> unfinished = buckets.stream()
+                    .filter(b -> b.movingTo() != null)
+                    .limit(settings.bucketsPerMove())
+                    .map(b -> new Move(b.bucket(), b.shard(), b.movingTo()))
+                    .toList();
+            List<Move> moves = unfinished.isEmpty() ? plan(buckets) : unfinished;
+            return moves.isEmpty() ? Mono.empty() : move(moves);
+        });
+    }
+
+    /** Buckets to take from shards above an even share and give to shards below it, highest buckets first. */
+    private List<Move> plan(List<ShardCatalog.Bucket> buckets) {
+        List<String> shards = shardRouting.shards();
+        Map<String, Deque<Integer>> owned = new LinkedHashMap<>();
+        shards.forEach(shard -> owned.put(shard, new ArrayDeque<>()));
+        for (ShardCatalog.Bucket b : buckets) {
+            if (!owned.containsKey(b.shard())) {
+                throw new IllegalStateException("Shard catalog names unknown shard " + b.shard());
+            }
+            owned.get(b.shard()).addLast(b.bucket());
+        }
+
+        Map<String, Integer> share = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            share.put(shards.get(i), buckets.size() / shards.size() + (i < buckets.size() % shards.size() ? 1 : 0));
+        }
+        Deque<String> under = shards.stream()
+                .filter(shard -> owned.get(shard).size() < share.get(shard))
+                .collect(Collectors.toCollection(ArrayDeque::new));
+
+        List<Move> moves = new ArrayList<>();
+        for (String source : shards) {
+            Deque<Integer> sourceBuckets = owned.get(source);
+            while (sourceBuckets.size() > share.get(source) && !under.isEmpty()
+                    && moves.size() < settings.bucketsPerMove()) {
+                String target = under.peekFirst();
+                int bucket = sourceBuckets.pollLast();
+                owned.get(target).addLast(bucket);
+                moves.add(new Move(bucket, source, target));
+                if (owned.get(target).size() >= share.get(target)) under.pollFirst();
+            }
+        }
+        return moves;
+    }
+
+    private Mono<Void> move(List<Move> planned) {
+        return Flux.fromIterable(byRoute(planned).entrySet())
+                .concatMap(route -> shardCatalog.startMove(route.getValue(), route.getKey().get(0), route.getKey().get(1))
+                        .flatMapIterable(claimed -> claimed.stream()
+                                .map(bucket -> new Move(bucket, route.getKey().get(0), route.getKey().get(1)))
+                                .toList()))
+                .collectList()
+                .filter(moves -> !moves.isEmpty())
+                .flatMap(moves -> {
+                    List<Integer> buckets = moves.stream().map(Move::bucket).toList();
+                    log.info("Moving buckets {}", moves);
+                    return copy(moves)
+                            .then(shardCatalog.freeze(buckets))
+                            .then(shardCatalog.refresh())
+                            .then(Mono.delay(settle))
+                            .then(copy(moves))
+                            .then(shardCatalog.finishMove(buckets))
+                            .then(shardCatalog.refresh())
+                            .then(Mono.delay(settle))
+                            .then(drain(moves))
+                            .doOnSuccess(done -> bucketsMoved.increment(moves.size()));
+                });
+    }
+
+    // ------------------- Copy -------------------
+
+    /** Replaces whatever the targets hold of the buckets with the users currently on the sources. */
+    private Mono<Void> copy(List<Move> moves) {
+        return Flux.fromIterable(byRoute(moves).entrySet())
+                .concatMap(route -> {
+                    String source = route.getKey().get(0);
+                    String target = route.getKey().get(1);
+                    Set<Integer> buckets = route.getValue();
+                    return deleteUsers(target, idsIn(target, buckets))
+                            .thenMany(idsIn(source, buckets).buffer(settings.batchSize()))
+                            .concatMap(ids -> copyBatch(source, target, ids))
+                            .then();
+                })
+                .then();
+    }
+
+    private Mono<Void> copyBatch(String source, String target, List<String> ids) {
+        Mono<List<CopiedUser>> users = databaseClient.sql(SELECT_USERS)
+                .bind("ids", ids.toArray(String[]::new))
+                .map((row, meta) -> new CopiedUser(
+                        UserRow.of(UserJdbcRepository.RowView.of(row)),
+                        row.get("password", String.class),
+                        row.get("created_date", LocalDateTime.class)))
+                .all()
+                .collectList()
+                .transform(queryMetrics.timed("shard.move.read"));
+
+        return Mono.zip(users, userHydrator.loadRoles(ids), userHydrator.loadAddresses(ids))
+                .contextWrite(shardRouting.on(source))
+                .flatMap(batch -> insert(batch.getT1(), batch.getT2(), batch.getT3())
+                        .contextWrite(shardRouting.on(target))
+                        .doOnSuccess(done -> usersCopied.increment(batch.getT1().size())));
+    }
+
+    private record CopiedUser(UserRow row, String password, LocalDateTime createdDate) {}
+
+    private Mono<Void> insert(List<CopiedUser> users, Map<String, List<GlobalUserRole>> roles,
+                              Map<String, Map<String, String>> addresses) {
+
+        if (users.isEmpty()) return Mono.empty();
+
+        int n = users.size();
+        String[] ids = new String[n], usernames = new String[n], fullnames = new String[n], dobs = new String[n];
+        String[] emails = new String[n], passwords = new String[n], picHashes = new String[n];
+        String[] createdDates = new String[n];
+        Long[] mobiles = new Long[n];
+        Boolean[] active = new Boolean[n], nonExpired = new Boolean[n], nonLocked = new Boolean[n];
+        Boolean[] credentialsNonExpired = new Boolean[n];
+
+        List<String> roleUsers = new ArrayList<>();
+        List<String> rolenames = new ArrayList<>();
+        List<String> addressUsers = new ArrayList<>();
+        List<String> addressKeys = new ArrayList<>();
+        List<String> addressValues = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            CopiedUser user = users.get(i);
+            UserRow row = user.row();
+            ids[i] = row.id();
+            usernames[i] = row.username();
+            fullnames[i] = row.fullname();
+            dobs[i] = row.dob();
+            emails[i] = row.email();
+            passwords[i] = user.password();
+            mobiles[i] = row.mobile();
+            active[i] = row.active();
+            nonExpired[i] = row.accountNonExpired();
+            nonLocked[i] = row.accountNonLocked();
+            credentialsNonExpired[i] = row.credentialsNonExpired();
+            picHashes[i] = row.picHash();
+            createdDates[i] = user.createdDate() == null ? null : user.createdDate().toString();
+
+            for (GlobalUserRole role : roles.getOrDefault(row.id(), List.of())) {
+                roleUsers.add(row.id());
+                rolenames.add(role.getRolename());
+            }
+            addresses.getOrDefault(row.id(), Map.of()).forEach((key, value) -> {
+                addressUsers.add(row.id());
+                addressKeys.add(key);
+                addressValues.add(value);
+            });
+        }
+
+        Mono<Void> parents = databaseClient.sql(COPY_USERS)
+                .bind("ids", ids)
+                .bind("usernames", usernames)
+                .bind("fullnames", fullnames)
+                .bind("dobs", dobs)
+                .bind("emails", emails)
+                .bind("passwords", passwords)
+                .bind("mobiles", mobiles)
+                .bind("active", active)
+                .bind("nonExpired", nonExpired)
+                .bind("nonLocked", nonLocked)
+                .bind("credentialsNonExpired", credentialsNonExpired)
+                .bind("picHashes", picHashes)
+                .bind("createdDates", createdDates)
+                .then()
+                .transform(queryMetrics.timed("shard.move.write"));
+
+        // legacy inline pictures are rare; one statement each rather than a bytea[] parameter
+        Mono<Void> pictures = Flux.fromIterable(users)
+                .filter(user -> user.row().pic() != null)
+                .concatMap(user -> databaseClient.sql("""
+                        UPDATE feedbackapp.global_user SET profile_pic = :pic WHERE id = :id
+                    """)
+                        .bind("pic", user.row().pic())
+                        .bind("id", user.row().id())
+                        .then())
+                .then();
+
+        return parents
+                .then(batchWriter.insertRoles(roleUsers, rolenames))
+                .then(batchWriter.insertAddresses(addressUsers, addressKeys, addressValues))
+                .then(pictures);
+    }
+
+    // ------------------- Drain -------------------
+
+    /** Deletes what the old owners still hold of buckets that have been handed over. */
+    private Mono<Void> drain(List<Move> moves) {
+        return Flux.fromIterable(byRoute(moves).entrySet())
+                .concatMap(route -> deleteUsers(route.getKey().get(0), idsIn(route.getKey().get(0), route.getValue())))
+                .then(shardCatalog.finishDrain(moves.stream().map(Move::bucket).toList()))
+                .doOnSuccess(done -> log.info("Moved buckets {}", moves));
+    }
+
+    // ------------------- Statements -------------------
+
+    static final String IDS_IN_HASH_RANGE = """
+            SELECT id FROM feedbackapp.global_user
+            WHERE feedbackapp.user_id_hash(id) >= :from AND feedbackapp.user_id_hash(id) < :to
+            """;
+
+    static final String DELETE_ADDRESSES = "DELETE FROM feedbackapp.global_user_address WHERE user_id = ANY(:ids)";
+    static final String DELETE_ROLES = "DELETE FROM feedbackapp.global_user_role WHERE user_id = ANY(:ids)";
+    static final String DELETE_USERS = "DELETE FROM feedbackapp.global_user WHERE id = ANY(:ids)";
+
+    /** Ids on {@code shard} whose bucket is one of {@code buckets}, a hash range of the index per bucket. */
+    private Flux<String> idsIn(String shard, Set<Integer> buckets) {
+        return Flux.fromIterable(new TreeSet<>(buckets))
+                .concatMap(bucket -> databaseClient.sql(IDS_IN_HASH_RANGE)
+                        .bind("from", shardRouting.hashFloor(bucket))
+                        .bind("to", shardRouting.hashFloor(bucket + 1))
+                        .map((row, meta) -> row.get("id", String.class))
+                        .all()
+                        .transform(queryMetrics.timedMany("shard.move.scan")))
+                .contextWrite(shardRouting.on(shard));
+    }
+
+    private Mono<Void> deleteUsers(String shard, Flux<String> ids) {
+        return ids
+                .buffer(settings.batchSize())
+                .concatMap(batch -> deleteBatch(batch.toArray(String[]::new))
+                        .as(transactionalOperator::transactional))
+                .then()
+                .contextWrite(shardRouting.on(shard));
+    }
+
+    // children first, like UserJdbcRepository.deleteUser: tables created before the migrations
+    // may not have ON DELETE CASCADE
+    private Mono<Void> deleteBatch(String[] ids) {
+        return databaseClient.sql(DELETE_ADDRESSES)
+                .bind("ids", ids)
+                .then()
+                .then(databaseClient.sql(DELETE_ROLES)
+                        .bind("ids", ids)
+                        .then())
+                .then(databaseClient.sql(DELETE_USERS)
+                        .bind("ids", ids)
+                        .then())
+                .transform(queryMetrics.timed("shard.move.delete"));
+    }
+
+    private static Map<List<String>, Set<Integer>> byRoute(List<Move> moves) {
+        return moves.stream().collect(Collectors.groupingBy(
+                m -> List.of(m.source(), m.target()), LinkedHashMap::new,
+                Collectors.mapping(Move::bucket, Collectors.toSet())));
+    }
+}
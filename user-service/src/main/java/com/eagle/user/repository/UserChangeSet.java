@@ -0,0 +1,119 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.GlobalUserRole;
+import com.eagle.user.UpdateUserRequest;
+import com.eagle.user.exception.InvalidRequestException;
+import com.google.protobuf.FieldMask;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Difference between the stored state of a user and an {@link UpdateUserRequest}. Only the
+ * fields named in the request's update mask are compared, or every updatable field when the
+ * mask is empty. Without a mask an empty picture hash means "keep the current picture".
+ */
+public record UserChangeSet(Map<String, Object> columns,
+                            List<Long> removedRoleIds,
+                            List<String> addedRoles,
+                            List<String> removedAddressKeys,
+                            Map<String, String> changedAddresses,
+                            Map<String, String> addedAddresses) {
+
+    private static final Set<String> UPDATABLE = Set.of(
+            "fullname", "dob", "active", "accountNonExpired", "accountNonLocked", "credentialsNonExpired",
+            "globaluserrole", "addressMap", "profilePicture", "profilePictureHash");
+
+    /** Row state as read under {@code FOR UPDATE} before applying a change. */
+    public record StoredUser(UserRow row, List<GlobalUserRole> roles, Map<String, String> addresses) {}
+
+    public boolean isEmpty() {
+        return columns.isEmpty() && removedRoleIds.isEmpty() && addedRoles.isEmpty()
+                && removedAddressKeys.isEmpty() && changedAddresses.isEmpty() && addedAddresses.isEmpty();
+    }
+
+    public static UserChangeSet diff(StoredUser stored, UpdateUserRequest request) {
+        Set<String> paths = paths(request.getUpdateMask());
+        UserRow row = stored.row();
+
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if (paths.contains("fullname") && !Objects.equals(row.fullname(), request.getFullname())) {
+            columns.put("fullname", request.getFullname());
+        }
+        if (paths.contains("dob") && !Objects.equals(row.dob(), request.getDob())) {
+            columns.put("dob", request.getDob());
+        }
+        if (paths.contains("active") && !Objects.equals(row.active(), request.getActive())) {
+            columns.put("is_active", request.getActive());
+        }
+        if (paths.contains("accountNonExpired") && !Objects.equals(row.accountNonExpired(), request.getAccountNonExpired())) {
+            columns.put("account_non_expired", request.getAccountNonExpired());
+        }
+        if (paths.contains("accountNonLocked") && !Objects.equals(row.accountNonLocked(), request.getAccountNonLocked())) {
+            columns.put("account_non_locked", request.getAccountNonLocked());
+        }
+        if (paths.contains("credentialsNonExpired")
+                && !Objects.equals(row.credentialsNonExpired(), request.getCredentialsNonExpired())) {
+            columns.put("credential_non_expired", request.getCredentialsNonExpired());
+        }
+
+        String hash = request.getProfilePictureHash();
+        boolean pictureMasked = request.getUpdateMask().getPathsCount() > 0
+                && (paths.contains("profilePicture") || paths.contains("profilePictureHash"));
+        if ((pictureMasked || !hash.isEmpty()) && !Objects.equals(row.picHash(), hash.isEmpty() ? null : hash)) {
+            columns.put("profile_pic_hash", hash.isEmpty() ? null : hash);
+        }
+
+        List<Long> removedRoleIds = new ArrayList<>();
+        List<String> addedRoles = new ArrayList<>();
+        if (paths.contains("globaluserrole")) {
+            Set<String> requested = new LinkedHashSet<>();
+            request.getGlobaluserroleList().forEach(r -> requested.add(r.getRolename()));
+            Set<String> kept = new HashSet<>();
+            for (GlobalUserRole role : stored.roles()) {
+                // also drops duplicate rows of a role that is kept
+                if (!requested.contains(role.getRolename()) || !kept.add(role.getRolename())) {
+                    removedRoleIds.add(role.getId());
+                }
+            }
+            requested.stream().filter(name -> !kept.contains(name)).forEach(addedRoles::add);
+        }
+
+        List<String> removedAddressKeys = new ArrayList<>();
+        Map<String, String> changedAddresses = new LinkedHashMap<>();
+        Map<String, String> addedAddresses = new LinkedHashMap<>();
+        if (paths.contains("addressMap")) {
+            Map<String, String> requested = request.getAddressMapMap();
+            stored.addresses().forEach((key, value) -> {
+                if (!requested.containsKey(key)) {
+                    removedAddressKeys.add(key);
+                } else if (!Objects.equals(value, requested.get(key))) {
+                    changedAddresses.put(key, requested.get(key));
+                }
+            });
+            requested.forEach((key, value) -> {
+                if (!stored.addresses().containsKey(key)) addedAddresses.put(key, value);
+            });
+        }
+
+        return new UserChangeSet(columns, removedRoleIds, addedRoles, removedAddressKeys,
+                changedAddresses, addedAddresses);
+    }
+
+    private static Set<String> paths(FieldMask mask) {
+        if (mask.getPathsCount() == 0) return UPDATABLE;
+
+        for (String path : mask.getPathsList()) {
+            if (!UPDATABLE.contains(path)) {
+                throw new InvalidRequestException("Field cannot be updated: " + path);
+            }
+        }
+        return Set.copyOf(mask.getPathsList());
+    }
+}
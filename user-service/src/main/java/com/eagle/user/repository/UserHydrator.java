@@ -0,0 +1,137 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.GlobalUser;
+import com.eagle.user.GlobalUserRole;
+import com.eagle.user.metrics.QueryMetrics;
+import com.google.protobuf.ByteString;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles {@link GlobalUser} messages from parent rows plus one roles query and one
+ * addresses query per batch of ids, instead of a role x address join per user.
+ */
+@Component
+public class UserHydrator {
+
+    private final DatabaseClient databaseClient;
+    private final QueryMetrics queryMetrics;
+
+    public UserHydrator(DatabaseClient databaseClient, QueryMetrics queryMetrics) {
+        this.databaseClient = databaseClient;
+        this.queryMetrics = queryMetrics;
+    }
+
+    // ------------------- HYDRATE USERS -------------------
+    public Mono<List<GlobalUser>> hydrate(List<UserRow> users) {
+        return hydrate(users, UserProjection.ALL);
+    }
+
+    public Mono<List<GlobalUser>> hydrate(List<UserRow> users, UserProjection projection) {
+
+        if (users.isEmpty()) return Mono.just(List.of());
+
+        List<String> ids = users.stream().map(UserRow::id).toList();
+
+        Mono<Map<String, List<GlobalUserRole>>> roles = projection.includes(UserProjection.ROLES)
+                ? loadRoles(ids) : Mono.just(Map.of());
+        Mono<Map<String, Map<String, String>>> addresses = projection.includes(UserProjection.ADDRESSES)
+                ? loadAddresses(ids) : Mono.just(Map.of());
+
+        return Mono.zip(roles, addresses)
+                .map(children -> assemble(users, children.getT1(), children.getT2()));
+    }
+
+    static List<GlobalUser> assemble(List<UserRow> users, Map<String, List<GlobalUserRole>> roles,
+                                     Map<String, Map<String, String>> addresses) {
+        List<GlobalUser> result = new ArrayList<>(users.size());
+        for (UserRow row : users) {
+            GlobalUser.Builder user = toBuilder(row)
+                    .addAllGlobaluserrole(roles.getOrDefault(row.id(), List.of()))
+                    .putAllAddressMap(addresses.getOrDefault(row.id(), Map.of()));
+            result.add(user.build());
+        }
+        return result;
+    }
+
+    // ------------------- LOAD ROLES -------------------
+    static final String ROLES_BY_USERS = """
+            SELECT r.user_id, r.id, r.rolename
+            FROM feedbackapp.global_user_role r
+            WHERE r.user_id = ANY(:ids)
+            ORDER BY r.user_id, r.id
+            """;
+
+    public Mono<Map<String, List<GlobalUserRole>>> loadRoles(Collection<String> userIds) {
+
+        if (userIds.isEmpty()) return Mono.just(Map.of());
+
+        return databaseClient.sql(ROLES_BY_USERS)
+                .bind("ids", userIds.toArray(String[]::new))
+                .map((row, meta) -> Map.entry(
+                        row.get("user_id", String.class),
+                        GlobalUserRole.newBuilder()
+                                .setId(row.get("id", Long.class))
+                                .setRolename(row.get("rolename", String.class))
+                                .build()))
+                .all()
+                .collect(
+                        () -> new HashMap<String, List<GlobalUserRole>>(),
+                        (map, e) -> map.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(e.getValue())
+                )
+                .transform(queryMetrics.timed("role.by-users"));
+    }
+
+    // ------------------- LOAD ADDRESSES -------------------
+    static final String ADDRESSES_BY_USERS = """
+            SELECT a.user_id, a.addr_key, a.addr_value
+            FROM feedbackapp.global_user_address a
+            WHERE a.user_id = ANY(:ids)
+            """;
+
+    public Mono<Map<String, Map<String, String>>> loadAddresses(Collection<String> userIds) {
+
+        if (userIds.isEmpty()) return Mono.just(Map.of());
+
+        return databaseClient.sql(ADDRESSES_BY_USERS)
+                .bind("ids", userIds.toArray(String[]::new))
+                .map((row, meta) -> new AddressRow(
+                        row.get("user_id", String.class),
+                        row.get("addr_key", String.class),
+                        row.get("addr_value", String.class)))
+                .all()
+                .collect(
+                        () -> new HashMap<String, Map<String, String>>(),
+                        (map, a) -> map.computeIfAbsent(a.userId(), k -> new LinkedHashMap<>())
+                                .put(a.key(), a.value())
+                )
+                .transform(queryMetrics.timed("address.by-users"));
+    }
+
+    private record AddressRow(String userId, String key, String value) {}
+
+    private static GlobalUser.Builder toBuilder(UserRow row) {
+        GlobalUser.Builder user = GlobalUser.newBuilder().setId(row.id());
+
+        if (row.username() != null) user.setUsername(row.username());
+        if (row.fullname() != null) user.setFullname(row.fullname());
+        if (row.dob() != null) user.setDob(row.dob());
+        if (row.email() != null) user.setEmail(row.email());
+        if (row.mobile() != null) user.setMobile(row.mobile());
+        if (row.active() != null) user.setActive(row.active());
+        if (row.accountNonExpired() != null) user.setAccountNonExpired(row.accountNonExpired());
+        if (row.accountNonLocked() != null) user.setAccountNonLocked(row.accountNonLocked());
+        if (row.credentialsNonExpired() != null) user.setCredentialsNonExpired(row.credentialsNonExpired());
+        if (row.pic() != null) user.setProfilePicture(ByteString.copyFrom(row.pic()));
+        if (row.picHash() != null) user.setProfilePictureHash(row.picHash());
+        return user;
+    }
+}
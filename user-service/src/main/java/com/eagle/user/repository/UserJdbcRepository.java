@@ -2,9 +2,20 @@ package com.eagle.user.repository;
 
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
 
 import com.eagle.user.CreateUserRequest;
 import com.eagle.user.GlobalUser;
@@ -12,63 +23,181 @@ import com.eagle.user.GlobalUserRole;
 import com.eagle.user.TokenUsernameResponse;
 import com.eagle.user.UpdateUserRequest;
 import com.eagle.user.UserList;
-import com.google.protobuf.ByteString;
+import com.eagle.user.datasource.ReadRouting;
+import com.eagle.user.datasource.ShardRouting;
+import com.eagle.user.exception.UserNotFoundException;
+import com.eagle.user.metrics.QueryMetrics;
 
+import org.reactivestreams.Publisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionalOperator;
 
 import io.r2dbc.spi.Row;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Flux;
-
+import reactor.util.context.Context;
+
+/**
+ * Users with their roles and addresses, all on the shard that owns the user (see
+ * {@link ShardRouting}). Lookups by id go to that shard; lookups by anything else ask every
+ * shard and keep only the rows it owns. Transactions are opened here rather than by callers,
+ * once the shard is known, since an R2DBC transaction stays on the connection it began on.
+ * <p>
+ * Statements run per user or per batch of users are package-private constants, so
+ * {@code QueryPlanTest} explains exactly the SQL that runs here.
+ */
 @Repository
 public class UserJdbcRepository {
 
     private final DatabaseClient databaseClient;
-    private final IdSequenceRepository idSequenceRepository;
-
-    public UserJdbcRepository(DatabaseClient databaseClient, IdSequenceRepository idSequenceRepository) {
+    private final IdBlockAllocator idBlockAllocator;
+    private final UserHydrator userHydrator;
+    private final BatchWriter batchWriter;
+    private final QueryMetrics queryMetrics;
+    private final ReadRouting readRouting;
+    private final ShardRouting shardRouting;
+    private final TransactionalOperator transactionalOperator;
+
+    public UserJdbcRepository(DatabaseClient databaseClient, IdBlockAllocator idBlockAllocator,
+                              UserHydrator userHydrator, BatchWriter batchWriter, QueryMetrics queryMetrics,
+                              ReadRouting readRouting, ShardRouting shardRouting,
+                              TransactionalOperator transactionalOperator) {
         this.databaseClient = databaseClient;
-        this.idSequenceRepository = idSequenceRepository;
+        this.idBlockAllocator = idBlockAllocator;
+        this.userHydrator = userHydrator;
+        this.batchWriter = batchWriter;
+        this.queryMetrics = queryMetrics;
+        this.readRouting = readRouting;
+        this.shardRouting = shardRouting;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    private static final String USER_ID_PREFIX = "EGL";
+
+    private static String formatUserId(long seq) {
+        return USER_ID_PREFIX + String.format("%05d", seq);
     }
 
     private Mono<String> generateUserId() {
-        return idSequenceRepository.next("EGL")
-                .map(seq -> "EGL" + String.format("%05d", seq));
+        return idBlockAllocator.next(USER_ID_PREFIX)
+                .map(UserJdbcRepository::formatUserId);
+    }
+
+    public Mono<List<String>> reserveUserIds(int count) {
+        return idBlockAllocator.nextRange(USER_ID_PREFIX, count)
+                .map(first -> LongStream.range(first, first + count)
+                        .mapToObj(UserJdbcRepository::formatUserId)
+                        .toList());
+    }
+
+    // ------------------- SHARDS -------------------
+    /** Runs the query on every shard and merges what they return. */
+    private <T> Flux<T> everyShard(Function<String, Publisher<T>> query) {
+        return Flux.fromIterable(shardRouting.shards())
+                .flatMap(shard -> Flux.from(query.apply(shard)).contextWrite(shardRouting.on(shard)));
+    }
+
+    /** Skips the copies a shard holds of users it does not own, i.e. of buckets being moved onto it. */
+    private Predicate<String> ownedBy(String shard) {
+        return userId -> !shardRouting.isSharded() || shardRouting.owns(shard, userId);
+    }
+
+    private <T> Mono<T> readOn(String userId, Mono<T> read) {
+        return Mono.defer(() -> read.contextWrite(shardRouting.read(userId)));
+    }
+
+    private <T> Mono<T> transactionOn(String userId, Mono<T> write) {
+        return Mono.defer(() -> write.as(transactionalOperator::transactional)
+                .contextWrite(shardRouting.write(userId)));
+    }
+
+    static final String ID_BY_USERNAME = """
+            SELECT id FROM feedbackapp.global_user WHERE username = :username
+            """;
+
+    /** Where writes for the user with this username go; empty if there is no such user. */
+    private Mono<Function<Context, Context>> writeRouteFor(String username) {
+        if (!shardRouting.isSharded()) return Mono.just(shardRouting.on(ShardRouting.PRIMARY));
+
+        return everyShard(shard -> databaseClient.sql(ID_BY_USERNAME)
+                        .bind("username", username)
+                        .map((row, meta) -> row.get("id", String.class))
+                        .all()
+                        .filter(ownedBy(shard)))
+                .next()
+                .transform(queryMetrics.timed("user.shard.by-username"))
+                .map(shardRouting::write);
+    }
+
+    static final String ANY_CLAIMED = """
+            SELECT id FROM feedbackapp.global_user
+            WHERE username = ANY(:usernames) OR email = ANY(:emails) OR mobile = ANY(:mobiles)
+            LIMIT 1
+            """;
+
+    /**
+     * The unique constraints only see one shard, so with several the usernames and contacts are
+     * first looked up on all of them. Two concurrent creates on different shards can still both pass.
+     */
+    private Mono<Void> requireUnclaimed(Collection<String> usernames, Collection<String> emails,
+                                        Collection<Long> mobiles) {
+        if (!shardRouting.isSharded()) return Mono.empty();
+
+        return everyShard(shard -> databaseClient.sql(ANY_CLAIMED)
+                        .bind("usernames", usernames.toArray(String[]::new))
+                        .bind("emails", emails.toArray(String[]::new))
+                        .bind("mobiles", mobiles.toArray(Long[]::new))
+                        .map((row, meta) -> row.get("id", String.class))
+                        .all())
+                .next()
+                .transform(queryMetrics.timed("user.shard.unclaimed"))
+                .flatMap(id -> Mono.<Void>error(new DuplicateKeyException("Email, mobile or username already registered")));
+    }
+
+    /** Puts per-shard results, each already {@code ORDER BY fullname}, back into one such order. */
+    private <T> List<T> inNameOrder(List<List<T>> perShard, Map<String, String> sortNames, Function<T, String> id) {
+        if (perShard.size() == 1) return perShard.get(0);
+
+        Comparator<T> order = Comparator
+                .comparing((T value) -> sortNames.get(id.apply(value)), Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                .thenComparing(id);
+        return perShard.stream()
+                .flatMap(List::stream)
+                .sorted(order)
+                .toList();
     }
 
     // ------------------- INSERT USER -------------------
-    private Mono<String> insertUser(CreateUserRequest user) {
-        return generateUserId()
-                .flatMap(userId -> {
-                    // Build user with generated ID
-                    CreateUserRequest userWithId = user.toBuilder().setId(userId).build();
+    private Mono<Void> insertUser(String userId, CreateUserRequest user) {
+        // Build user with generated ID
+        CreateUserRequest userWithId = user.toBuilder().setId(userId).build();
 
-                    return databaseClient.sql("""
+        return databaseClient.sql("""
                     INSERT INTO feedbackapp.global_user(
                         id, username, fullname, dob, email, password, mobile, is_active,
                         account_non_expired, account_non_locked, credential_non_expired,
-                        profile_pic, created_date
+                        profile_pic_hash, created_date
                     ) VALUES(:id,:username, :fullname,:dob,:email,:password,:mobile,:active,
-                           :expired,:locked,:credentialexpired,:pic,:createdDate)
+                           :expired,:locked,:credentialexpired,:picHash,:createdDate)
                 """)
-                            .bind("id", userWithId.getId())
-                            .bind("username", userWithId.getUsername())
-                            .bind("fullname", userWithId.getFullname())
-                            .bind("dob", userWithId.getDob())
-                            .bind("email", userWithId.getEmail())
-                            .bind("password", userWithId.getPassword())
-                            .bind("mobile", userWithId.getMobile())
-                            .bind("active", userWithId.getActive())
-                            .bind("expired", userWithId.getAccountNonExpired())
-                            .bind("locked", userWithId.getAccountNonLocked())
-                            .bind("credentialexpired", userWithId.getCredentialsNonExpired())
-                            .bind("pic", userWithId.getProfilePicture().toByteArray())
-                            .bind("createdDate", Timestamp.valueOf(LocalDateTime.now()))
-                            .then()
-                            .thenReturn(userId); // return generated ID
-                });
+                .bind("id", userWithId.getId())
+                .bind("username", userWithId.getUsername())
+                .bind("fullname", userWithId.getFullname())
+                .bind("dob", userWithId.getDob())
+                .bind("email", userWithId.getEmail())
+                .bind("password", userWithId.getPassword())
+                .bind("mobile", userWithId.getMobile())
+                .bind("active", userWithId.getActive())
+                .bind("expired", userWithId.getAccountNonExpired())
+                .bind("locked", userWithId.getAccountNonLocked())
+                .bind("credentialexpired", userWithId.getCredentialsNonExpired())
+                .bind("picHash", pictureHash(userWithId.getProfilePictureHash()))
+                .bind("createdDate", Timestamp.valueOf(LocalDateTime.now()))
+                .then()
+                .transform(queryMetrics.timed("user.insert"));
     }
 
     // ------------------- INSERT ROLE -------------------
@@ -76,298 +205,581 @@ public class UserJdbcRepository {
 
         if (roles == null || roles.isEmpty() ) return Mono.empty();
 
-        StringBuilder sql = new StringBuilder("""
-            INSERT INTO feedbackapp.global_user_role(user_id, rolename) VALUES
-        """);
+        return batchWriter.insertRoles(
+                Collections.nCopies(roles.size(), userId),
+                roles.stream().map(GlobalUserRole::getRolename).toList());
+    }
 
-        DatabaseClient.GenericExecuteSpec spec;
+    // ------------------- INSERT ADDRESSES -------------------
+    private Mono<Void> insertAddresses(String userId, Map<String, String> addressMap) {
 
-        for (int i = 0; i < roles.size(); i++) {
-            if (i > 0) sql.append(",");
-            sql.append("(:user").append(i)
-                    .append(", :role").append(i).append(")");
-        }
+        if (addressMap.isEmpty()) return Mono.empty();
+
+        return batchWriter.insertAddresses(
+                Collections.nCopies(addressMap.size(), userId),
+                List.copyOf(addressMap.keySet()),
+                List.copyOf(addressMap.values()));
+    }
+
+    // ------------------- FULL TRANSACTION -------------------
+    public Mono<String> createUserWithRolesAndAddresses(CreateUserRequest user) {
+        return generateUserId()
+                .flatMap(userId ->
+                        requireUnclaimed(List.of(user.getUsername()), List.of(user.getEmail()), List.of(user.getMobile()))
+                                .then(transactionOn(userId, insertUser(userId, user)
+                                        .then(insertRolesBatch(userId, user.getGlobaluserroleList()))
+                                        .then(insertAddresses(userId, user.getAddressMap()))))
+                                .doOnSuccess(done -> readRouting.written(userId, user.getUsername()))
+                                .thenReturn(userId)
+                );
+    }
 
-        spec = databaseClient.sql(sql.toString());
 
-        for (int i = 0; i < roles.size(); i++) {
-            spec = spec
-                    .bind("user"+i, userId)
-                    .bind("role"+i, roles.get(i).getRolename());
+    // ------------------- BULK IMPORT -------------------
+    static final String CONTACTS_BY_CONTACTS = """
+            SELECT email, mobile FROM feedbackapp.global_user
+            WHERE email = ANY(:emails) OR mobile = ANY(:mobiles)
+            """;
+
+    public Mono<RegisteredContacts> findRegisteredContacts(Collection<String> emails, Collection<Long> mobiles) {
+        return everyShard(shard -> databaseClient.sql(CONTACTS_BY_CONTACTS)
+                .bind("emails", emails.toArray(String[]::new))
+                .bind("mobiles", mobiles.toArray(Long[]::new))
+                .map((row, meta) -> new Object[]{row.get("email", String.class), row.get("mobile", Long.class)})
+                .all())
+                .collect(
+                        () -> new RegisteredContacts(new HashSet<>(), new HashSet<>()),
+                        (found, cols) -> {
+                            found.emails().add((String) cols[0]);
+                            found.mobiles().add((Long) cols[1]);
+                        }
+                )
+                .transform(queryMetrics.timed("user.contacts.find"));
+    }
+
+    /**
+     * Writes already id-assigned users, their roles and addresses with one statement per table
+     * and shard. Each shard commits on its own, so a failure can leave part of the batch written.
+     */
+    public Mono<Void> insertUsersBatch(List<CreateUserRequest> users) {
+
+        if (users.isEmpty()) return Mono.empty();
+
+        return requireUnclaimed(
+                        users.stream().map(CreateUserRequest::getUsername).toList(),
+                        users.stream().map(CreateUserRequest::getEmail).toList(),
+                        users.stream().map(CreateUserRequest::getMobile).toList())
+                .then(Mono.defer(() -> Flux.fromIterable(shardRouting.groupForWrite(users, CreateUserRequest::getId).entrySet())
+                        .flatMap(shard -> insertUsers(shard.getValue())
+                                .as(transactionalOperator::transactional)
+                                .contextWrite(shardRouting.on(shard.getKey())))
+                        .then()))
+                .doOnSuccess(done -> users.forEach(u -> readRouting.written(u.getId(), u.getUsername())));
+    }
+
+    private Mono<Void> insertUsers(List<CreateUserRequest> users) {
+        List<String> roleUsers = new ArrayList<>();
+        List<String> rolenames = new ArrayList<>();
+        List<String> addressUsers = new ArrayList<>();
+        List<String> addressKeys = new ArrayList<>();
+        List<String> addressValues = new ArrayList<>();
+
+        for (CreateUserRequest user : users) {
+            for (GlobalUserRole role : user.getGlobaluserroleList()) {
+                roleUsers.add(user.getId());
+                rolenames.add(role.getRolename());
+            }
+            for (var e : user.getAddressMapMap().entrySet()) {
+                addressUsers.add(user.getId());
+                addressKeys.add(e.getKey());
+                addressValues.add(e.getValue());
+            }
         }
 
-        return spec.then();
+        return batchWriter.insertUsers(users, LocalDateTime.now())
+                .then(batchWriter.insertRoles(roleUsers, rolenames))
+                .then(batchWriter.insertAddresses(addressUsers, addressKeys, addressValues));
     }
 
-    // ------------------- INSERT ADDRESSES -------------------
-    private Mono<Void> insertAddresses(String userId, Map<String, String> addressMap) {
-        return Flux.fromIterable(addressMap.entrySet())
-                .flatMap(entry ->
-                        databaseClient.sql("""
-                    INSERT INTO feedbackapp.global_user_address(user_id, addr_key, addr_value)
-                    VALUES (:userId, :key, :value)
-                """)
-                                .bind("userId", userId)
-                                .bind("key", entry.getKey())
-                                .bind("value", entry.getValue())
-                                .then()
-                )
-                .then();
+    public record RegisteredContacts(Set<String> emails, Set<Long> mobiles) {}
+
+    public record UserContact(String email, long mobile) {}
+
+    /** Every user's contacts, read from the primaries like {@link #streamSearchFields()}. */
+    public Flux<UserContact> streamContacts() {
+        return everyShard(shard -> databaseClient.sql("""
+                 SELECT email, mobile FROM feedbackapp.global_user
+             """)
+                .map((row, meta) -> new UserContact(
+                        row.get("email", String.class),
+                        Optional.ofNullable(row.get("mobile", Long.class)).orElse(0L)))
+                .all())
+                .transform(queryMetrics.timedMany("user.contacts.stream"));
     }
 
-    // ------------------- FULL TRANSACTION -------------------
-    @Transactional
-    public Mono<Void> createUserWithRolesAndAddresses(CreateUserRequest user) {
-        return insertUser(user)
-                .flatMap(userId ->
-                        insertRolesBatch(userId, user.getGlobaluserroleList())
-                                .then(insertAddresses(userId, user.getAddressMap()))
-                );
+
+    // ------------------- SEARCH INDEX -------------------
+    /**
+     * The fields the search index covers, for every user. Read from the primaries: a lagging
+     * replica would leave out users written just before the scan started, for good.
+     */
+    public Flux<UserRow> streamSearchFields() {
+        return everyShard(shard -> databaseClient.sql("""
+                 SELECT u.id, u.username, u.fullname, u.email, u.mobile FROM feedbackapp.global_user u
+             """)
+                .map((row, meta) -> UserRow.of(RowView.of(row)))
+                .all()
+                .filter(user -> ownedBy(shard).test(user.id())))
+                .transform(queryMetrics.timedMany("user.search-fields.stream"));
     }
 
 
     // ------------------- GET ALL USERS -------------------
     public Mono<UserList> getAllUsers() {
+        return getAllUsers(UserProjection.ALL);
+    }
+
+    public Mono<UserList> getAllUsers(UserProjection projection) {
 
         String sql = """
-            SELECT u.id, u.fullname, u.dob, u.email, u.mobile,
-                   u.is_active, u.account_non_expired, u.account_non_locked, u.credential_non_expired,
-                   u.profile_pic,
-                   r.id AS role_id, r.rolename,
-                   a.addr_key, a.addr_value
+            SELECT %s, u.fullname AS sort_name
             FROM feedbackapp.global_user u
-            LEFT JOIN feedbackapp.global_user_role r ON r.user_id = u.id
-            LEFT JOIN feedbackapp.global_user_address a ON a.user_id = u.id
             ORDER BY u.fullname
-        """;
+        """.formatted(projection.selectList());
+
+        Map<String, String> sortNames = new ConcurrentHashMap<>();
+        return everyShard(shard -> databaseClient.sql(sql)
+                .map((row, meta) -> {
+                    UserRow user = UserRow.of(RowView.of(row));
+                    Optional.ofNullable(row.get("sort_name", String.class)).ifPresent(name -> sortNames.put(user.id(), name));
+                    return user;
+                })
+                .all()
+                .filter(user -> ownedBy(shard).test(user.id()))
+                .collectList()
+                .transform(queryMetrics.timed("user.all"))
+                .flatMap(users -> userHydrator.hydrate(users, projection)))
+                .collectList()
+                .map(perShard -> UserList.newBuilder()
+                        .addAllGlobaluser(inNameOrder(perShard, sortNames, GlobalUser::getId))
+                        .build())
+                .contextWrite(readRouting.replica());
+    }
+
 
-        return databaseClient.sql(sql)
-                .map((row, meta) -> RowView.of(row))
+    // ------------------- USER VERSIONS -------------------
+    /** Id and row version of every user, in the order {@link #getAllUsers()} returns them. */
+    public Mono<List<UserVersion>> getUserVersions() {
+        Map<String, String> sortNames = new ConcurrentHashMap<>();
+        return everyShard(shard -> databaseClient.sql("""
+                SELECT u.id, u.xmin::text::bigint AS version, u.fullname AS sort_name
+                FROM feedbackapp.global_user u
+                ORDER BY u.fullname
+            """)
+                .map((row, meta) -> {
+                    UserVersion version = new UserVersion(row.get("id", String.class), row.get("version", Long.class));
+                    Optional.ofNullable(row.get("sort_name", String.class)).ifPresent(name -> sortNames.put(version.id(), name));
+                    return version;
+                })
                 .all()
-                .collect(
-                        () -> new LinkedHashMap<String, GlobalUser.Builder>(),
-                        (map, r) -> {
-
-                            String id = r.getString("id");
-
-                            GlobalUser.Builder user = map.computeIfAbsent(id, k ->
-                                    GlobalUser.newBuilder()
-                                            .setId(id)
-                                            .setFullname(r.getString("fullname"))
-                                            .setDob(r.getString("dob"))
-                                            .setEmail(r.getString("email"))
-                                            .setMobile(r.getLong("mobile"))
-                                            .setActive(r.getBoolean("is_active"))
-                                            .setAccountNonExpired(r.getBoolean("account_non_expired"))
-                                            .setAccountNonLocked(r.getBoolean("account_non_locked"))
-                                            .setCredentialsNonExpired(r.getBoolean("credential_non_expired"))
-                            );
-
-                            byte[] pic = r.getBytes("profile_pic");
-                            if (pic != null) {
-                                user.setProfilePicture(ByteString.copyFrom(pic));
-                            }
-
-                            Long roleId = r.getLong("role_id");
-                            if (roleId != null) {
-                                user.addGlobaluserrole(
-                                        GlobalUserRole.newBuilder()
-                                                .setId(roleId)
-                                                .setRolename(r.getString("rolename"))
-                                                .build()
-                                );
-                            }
-
-                            String key = r.getString("addr_key");
-                            if (key != null) {
-                                user.putAddressMap(key, r.getString("addr_value"));
-                            }
-                        }
-                )
-                .map(map -> UserList.newBuilder()
-                        .addAllGlobaluser(
-                                map.values().stream().map(GlobalUser.Builder::build).toList()
-                        )
-                        .build()
-                );
+                .filter(version -> ownedBy(shard).test(version.id()))
+                .collectList()
+                .transform(queryMetrics.timed("user.versions")))
+                .collectList()
+                .map(perShard -> inNameOrder(perShard, sortNames, UserVersion::id))
+                .contextWrite(readRouting.replica());
+    }
+
+    static final String VERSIONED_USERS_BY_IDS = """
+            SELECT %s, u.xmin::text::bigint AS version
+            FROM feedbackapp.global_user u
+            WHERE u.id = ANY(:ids)
+            """.formatted(UserProjection.ALL.selectList());
+
+    /**
+     * Full users keyed by the version they were read at. Always read from the primary, so the
+     * roles and addresses loaded after the row are never older than that version.
+     */
+
+    public Mono<Map<UserVersion, GlobalUser>> getVersionedUsersByIds(Collection<String> ids) {
+
+        if (ids.isEmpty()) return Mono.just(Map.of());
+
+        Map<String, Long> versions = new ConcurrentHashMap<>();
+        return Mono.defer(() -> Flux.fromIterable(shardRouting.groupByOwner(ids, Function.identity()).entrySet())
+                .flatMap(shard -> databaseClient.sql(VERSIONED_USERS_BY_IDS)
+                        .bind("ids", shard.getValue().toArray(String[]::new))
+                        .map((row, meta) -> {
+                            UserRow user = UserRow.of(RowView.of(row));
+                            versions.put(user.id(), row.get("version", Long.class));
+                            return user;
+                        })
+                        .all()
+                        .collectList()
+                        .transform(queryMetrics.timed("user.by-ids.versioned"))
+                        .flatMap(userHydrator::hydrate)
+                        .contextWrite(shardRouting.on(shard.getKey())))
+                .<Map<UserVersion, GlobalUser>>collect(() -> new HashMap<>(ids.size() * 2), (byVersion, users) ->
+                        users.forEach(user -> byVersion.put(new UserVersion(user.getId(), versions.get(user.getId())), user))));
+    }
+
+
+    // ------------------- STREAM USERS -------------------
+    public Flux<GlobalUser> streamUsers(String afterId, int pageSize) {
+        return streamUsers(afterId, pageSize, true);
+    }
+
+    /** With {@code allowReplica} false the pages are read from the primary, for snapshots that must not lag. */
+    @SuppressWarnings("unchecked")
+    public Flux<GlobalUser> streamUsers(String afterId, int pageSize, boolean allowReplica) {
+        // every shard is paged in id order on its own; merging keeps the stream in id order
+        Flux<GlobalUser>[] perShard = shardRouting.shards().stream()
+                .map(shard -> fetchUserPage(shard, afterId, pageSize)
+                        .expand(page -> page.full()
+                                ? fetchUserPage(shard, page.lastId(), pageSize)
+                                : Mono.empty())
+                        .concatMapIterable(Page::users)
+                        .contextWrite(shardRouting.on(shard)))
+                .toArray(Flux[]::new);
+        Flux<GlobalUser> users = Flux.mergeComparing(Comparator.comparing(GlobalUser::getId), perShard);
+        return allowReplica ? users.contextWrite(readRouting.replica()) : users;
+    }
+
+    /** A page of one shard; {@code lastId} and {@code full} also count rows the shard holds but does not own. */
+    private record Page(List<GlobalUser> users, String lastId, boolean full) {}
+
+    static final String USER_PAGE = """
+            SELECT u.id, u.username, u.fullname, u.dob, u.email, u.mobile,
+                   u.is_active, u.account_non_expired, u.account_non_locked, u.credential_non_expired,
+                   u.profile_pic, u.profile_pic_hash
+            FROM feedbackapp.global_user u
+            WHERE u.id > :afterId
+            ORDER BY u.id
+            LIMIT :limit
+            """;
+
+    private Mono<Page> fetchUserPage(String shard, String afterId, int pageSize) {
+        return databaseClient.sql(USER_PAGE)
+                .bind("afterId", afterId)
+                .bind("limit", pageSize)
+                .map((row, meta) -> UserRow.of(RowView.of(row)))
+                .all()
+                .collectList()
+                .transform(queryMetrics.timed("user.page"))
+                .flatMap(rows -> userHydrator.hydrate(rows.stream().filter(user -> ownedBy(shard).test(user.id())).toList())
+                        .map(users -> new Page(users,
+                                rows.isEmpty() ? afterId : rows.get(rows.size() - 1).id(),
+                                rows.size() == pageSize)));
     }
 
 
     // ------------------- GET USERS BY ID -------------------
     public Mono<UserList> getGlobalUserById(String id) {
+        return getGlobalUserById(id, UserProjection.ALL);
+    }
 
-        String sql = """
-            SELECT u.id, u.fullname, u.dob, u.email, u.mobile, u.is_active,
-                   u.account_non_expired, u.account_non_locked, u.credential_non_expired,
-                   u.profile_pic,
-                   r.id AS role_id, r.rolename,
-                   a.addr_key, a.addr_value
+    static final String USERS_BY_IDS = """
+            SELECT %s
+            FROM feedbackapp.global_user u
+            WHERE u.id = ANY(:ids)
+            """.formatted(UserProjection.ALL.selectList());
+
+    /** Full users for several ids in one round of queries, each wrapped in its own {@link UserList}. */
+    public Mono<Map<String, UserList>> getGlobalUsersByIds(Collection<String> ids) {
+
+        if (ids.isEmpty()) return Mono.just(Map.of());
+
+        return Mono.defer(() -> Flux.fromIterable(shardRouting.groupByOwner(ids, Function.identity()).entrySet())
+                .flatMap(shard -> databaseClient.sql(USERS_BY_IDS)
+                        .bind("ids", shard.getValue().toArray(String[]::new))
+                        .map((row, meta) -> UserRow.of(RowView.of(row)))
+                        .all()
+                        .collectList()
+                        .transform(queryMetrics.timed("user.by-ids"))
+                        .flatMap(userHydrator::hydrate)
+                        .contextWrite(shardRouting.on(shard.getKey())))
+                .<Map<String, UserList>>collect(() -> new HashMap<>(ids.size() * 2), (byId, users) ->
+                        users.forEach(user -> byId.put(user.getId(), UserList.newBuilder().addGlobaluser(user).build()))))
+                .contextWrite(readRouting.replica(ids.toArray(String[]::new)));
+    }
+
+    public Mono<UserList> getGlobalUserById(String id, UserProjection projection) {
+        return getGlobalUserById(id, projection, true);
+    }
+
+    // formatted with the projection's select list
+    static final String USER_BY_ID = """
+            SELECT %s
             FROM feedbackapp.global_user u
-            LEFT JOIN feedbackapp.global_user_role r ON r.user_id = u.id
-            LEFT JOIN feedbackapp.global_user_address a ON a.user_id = u.id
             WHERE u.id = :id
-        """;
+            """;
 
-        return databaseClient.sql(sql)
+    /** With {@code allowReplica} false the user is read from its shard's primary, for reads that must not lag. */
+    public Mono<UserList> getGlobalUserById(String id, UserProjection projection, boolean allowReplica) {
+        return readOn(id, databaseClient.sql(USER_BY_ID.formatted(projection.selectList()))
                 .bind("id", id)
-                .map((row, meta) -> RowView.of(row))
+                .map((row, meta) -> UserRow.of(RowView.of(row)))
                 .all()
-                .collect(
-                        () -> new LinkedHashMap<String, GlobalUser.Builder>(),
-                        (map, r) -> {
-                            GlobalUser.Builder user = map.computeIfAbsent(id, k ->
-                                    GlobalUser.newBuilder()
-                                            .setId(id)
-                                            .setFullname(r.getString("fullname"))
-                                            .setDob(r.getString("dob"))
-                                            .setEmail(r.getString("email"))
-                                            .setMobile(r.getLong("mobile"))
-                                            .setActive(r.getBoolean("is_active"))
-                                            .setAccountNonExpired(r.getBoolean("account_non_expired"))
-                                            .setAccountNonLocked(r.getBoolean("account_non_locked"))
-                                            .setCredentialsNonExpired(r.getBoolean("credential_non_expired"))
-                            );
-
-                            byte[] pic = r.getBytes("profile_pic");
-                            if (pic != null) {
-                                user.setProfilePicture(ByteString.copyFrom(pic));
-                            }
-
-                            Long roleId = r.getLong("role_id");
-                            if (roleId != null) {
-                                user.addGlobaluserrole(
-                                        GlobalUserRole.newBuilder()
-                                                .setId(roleId)
-                                                .setRolename(r.getString("rolename"))
-                                                .build()
-                                );
-                            }
-
-                            String key = r.getString("addr_key");
-                            if (key != null) {
-                                user.putAddressMap(key, r.getString("addr_value"));
-                            }
-                        }
-                )
-                .map(map -> UserList.newBuilder()
-                        .addAllGlobaluser(
-                                map.values().stream().map(GlobalUser.Builder::build).toList()
-                        )
-                        .build()
-                );
+                .collectList()
+                .transform(queryMetrics.timed("user.by-id"))
+                .flatMap(users -> userHydrator.hydrate(users, projection))
+                .map(users -> UserList.newBuilder().addAllGlobaluser(users).build()))
+                .contextWrite(allowReplica ? readRouting.replica(id) : Function.identity());
     }
 
 
 
     //------------------- UPDATE USERS -------------------
-    public Mono<Void> updateUser(UpdateUserRequest user){
-        return databaseClient.sql(""" 
-    			UPDATE feedbackapp.global_user SET 
-    			fullname = :fullname, dob = :dob, is_active = :active,
-        account_non_expired = :expired, account_non_locked = :locked, credential_non_expired = :credentialexpired,
-        profile_pic = :pic WHERE id = :id
-    			""")
-                .bind("id", user.getId())
-                .bind("fullname", user.getFullname())
-                .bind("dob", user.getDob())
-//                .bind("email", user.getEmail())
-//                .bind("mobile", user.getMobile())
-                .bind("active", user.getActive())
-                .bind("expired", user.getAccountNonExpired())
-                .bind("locked", user.getAccountNonLocked())
-                .bind("credentialexpired", user.getCredentialsNonExpired())
-                .bind("pic", user.getProfilePicture().toByteArray())
-                .then();
+    /** Writes only what differs from the stored user; emits whether anything was changed. */
+    public Mono<Boolean> udateUserWithRolesAndAddress(UpdateUserRequest user){
+        return transactionOn(user.getId(), loadForUpdate(user.getId())
+                .switchIfEmpty(Mono.error(new UserNotFoundException("User not found: " + user.getId())))
+                .flatMap(stored -> {
+                    UserChangeSet changes = UserChangeSet.diff(stored, user);
+                    if (changes.isEmpty()) return Mono.just(false);
+                    return applyChanges(user.getId(), changes)
+                            .doOnSuccess(done -> readRouting.written(user.getId(), stored.row().username()))
+                            .thenReturn(true);
+                }));
     }
 
+    static final String LOCK_USER = """
+            SELECT u.id, u.username, u.fullname, u.dob, u.is_active, u.account_non_expired,
+                   u.account_non_locked, u.credential_non_expired, u.profile_pic_hash
+            FROM feedbackapp.global_user u
+            WHERE u.id = :id
+            FOR UPDATE
+            """;
 
-    //------------------- UPDATE USERS ROLE -------------------
-    public Mono<Void> deleteRolesByUser(String userId){
-        return databaseClient.sql(""" 
-    			DELETE FROM feedbackapp.global_user_role WHERE user_id = :id
-    			""")
-                .bind("id", userId).then();
+    private Mono<UserChangeSet.StoredUser> loadForUpdate(String userId) {
+        return databaseClient.sql(LOCK_USER)
+                .bind("id", userId)
+                .map((row, meta) -> UserRow.of(RowView.of(row)))
+                .one()
+                .transform(queryMetrics.timed("user.lock"))
+                .flatMap(row -> Mono.zip(
+                                userHydrator.loadRoles(List.of(userId)),
+                                userHydrator.loadAddresses(List.of(userId)))
+                        .map(children -> new UserChangeSet.StoredUser(row,
+                                children.getT1().getOrDefault(userId, List.of()),
+                                children.getT2().getOrDefault(userId, Map.of()))));
     }
 
-    public Mono<Void> deleteAddressesByUser(String userId) {
-        return databaseClient.sql("""
-            DELETE FROM feedbackapp.global_user_address WHERE user_id = :id
-        """).bind("id", userId).then();
+    private Mono<Void> applyChanges(String userId, UserChangeSet changes) {
+        List<GlobalUserRole> addedRoles = changes.addedRoles().stream()
+                .map(name -> GlobalUserRole.newBuilder().setRolename(name).build())
+                .toList();
+
+        return updateColumns(userId, changes.columns())
+                .then(deleteRoles(changes.removedRoleIds()))
+                .then(insertRolesBatch(userId, addedRoles))
+                .then(deleteAddressKeys(userId, changes.removedAddressKeys()))
+                .then(updateAddressValues(userId, changes.changedAddresses()))
+                .then(insertAddresses(userId, changes.addedAddresses()));
     }
 
-    public Mono<Void> replaceAddresses(UpdateUserRequest user) {
-
-        if (user.getAddressMapMap().isEmpty()) return Mono.empty();
+    // role or address changes only: still rewrite the row so its version (xmin) moves
+    static final String TOUCH_USER = "UPDATE feedbackapp.global_user SET id = id WHERE id = :id";
 
-        StringBuilder sql = new StringBuilder("""
-            INSERT INTO feedbackapp.global_user_address(user_id, addr_key, addr_value) VALUES
-        """);
+    private Mono<Void> updateColumns(String userId, Map<String, Object> columns) {
 
-        int i = 0;
-        for (var e : user.getAddressMapMap().entrySet()) {
-            if (i > 0) sql.append(",");
-            sql.append("(:user").append(i)
-                    .append(", :key").append(i)
-                    .append(", :val").append(i).append(")");
-            i++;
+        if (columns.isEmpty()) {
+            return databaseClient.sql(TOUCH_USER)
+                    .bind("id", userId)
+                    .then()
+                    .transform(queryMetrics.timed("user.touch"));
         }
 
-        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(updateColumnsSql(columns.keySet())).bind("id", userId);
+        for (var e : columns.entrySet()) {
+            spec = spec.bind(e.getKey(), Parameter.fromOrEmpty(e.getValue(), String.class));
+        }
+        return spec.then().transform(queryMetrics.timed("user.update"));
+    }
 
-        i = 0;
-        for (var e : user.getAddressMapMap().entrySet()) {
-            spec = spec
-                    .bind("user"+i, user.getId())
-                    .bind("key"+i, e.getKey())
-                    .bind("val"+i, e.getValue());
-            i++;
+    static String updateColumnsSql(Collection<String> columns) {
+        StringBuilder sql = new StringBuilder("UPDATE feedbackapp.global_user SET ");
+        columns.forEach(column -> sql.append(column).append(" = :").append(column).append(", "));
+        if (columns.contains("profile_pic_hash")) {
+            // the legacy inline picture is superseded by any picture change
+            sql.append("profile_pic = NULL, ");
         }
+        sql.setLength(sql.length() - 2);
+        sql.append(" WHERE id = :id");
+        return sql.toString();
+    }
+
+    static final String DELETE_ROLES = """
+            DELETE FROM feedbackapp.global_user_role WHERE id = ANY(:ids)
+            """;
+
+    private Mono<Void> deleteRoles(List<Long> roleIds) {
+
+        if (roleIds.isEmpty()) return Mono.empty();
+
+        return databaseClient.sql(DELETE_ROLES).bind("ids", roleIds.toArray(Long[]::new)).then()
+                .transform(queryMetrics.timed("role.delete"));
+    }
+
+    static final String DELETE_ADDRESS_KEYS = """
+            DELETE FROM feedbackapp.global_user_address WHERE user_id = :id AND addr_key = ANY(:keys)
+            """;
+
+    private Mono<Void> deleteAddressKeys(String userId, List<String> keys) {
+
+        if (keys.isEmpty()) return Mono.empty();
 
-        return spec.then();
+        return databaseClient.sql(DELETE_ADDRESS_KEYS)
+                .bind("id", userId)
+                .bind("keys", keys.toArray(String[]::new))
+                .then()
+                .transform(queryMetrics.timed("address.delete-keys"));
     }
 
+    static final String UPDATE_ADDRESS_VALUES = """
+            UPDATE feedbackapp.global_user_address a SET addr_value = v.addr_value
+            FROM unnest(:keys::text[], :vals::text[]) AS v(addr_key, addr_value)
+            WHERE a.user_id = :id AND a.addr_key = v.addr_key
+            """;
 
-    @Transactional
-    public Mono<Void> udateUserWithRolesAndAddress(UpdateUserRequest user){
-        return deleteRolesByUser(user.getId())
-                .then(insertRolesBatch(user.getId(), user.getGlobaluserroleList())
-                        .then(deleteAddressesByUser(user.getId())
-                                .then(replaceAddresses(user))));
+    private Mono<Void> updateAddressValues(String userId, Map<String, String> values) {
+
+        if (values.isEmpty()) return Mono.empty();
+
+        return databaseClient.sql(UPDATE_ADDRESS_VALUES)
+                .bind("id", userId)
+                .bind("keys", values.keySet().toArray(String[]::new))
+                .bind("vals", values.values().toArray(String[]::new))
+                .then()
+                .transform(queryMetrics.timed("address.update"));
+    }
+
+
+    //------------------- PROFILE PICTURE -------------------
+    static final String UPDATE_PICTURE_HASH = """
+            UPDATE feedbackapp.global_user SET profile_pic_hash = :hash, profile_pic = NULL WHERE id = :id
+            """;
+
+    static final String PICTURE_HASH_BY_ID = """
+            SELECT profile_pic_hash FROM feedbackapp.global_user WHERE id = :id
+            """;
+
+    public Mono<Void> updatePictureHash(String userId, String hash) {
+        return transactionOn(userId, databaseClient.sql(UPDATE_PICTURE_HASH)
+                .bind("hash", hash)
+                .bind("id", userId)
+                .fetch()
+                .rowsUpdated()
+                .transform(queryMetrics.timed("user.picture.update"))
+                .flatMap(updated -> updated == 0
+                        ? Mono.error(new UserNotFoundException("User not found: " + userId))
+                        : Mono.fromRunnable(() -> readRouting.written(userId))));
+    }
+
+    public Mono<String> findPictureHash(String userId) {
+        return readOn(userId, databaseClient.sql(PICTURE_HASH_BY_ID)
+                .bind("id", userId)
+                .map((row, meta) -> Optional.ofNullable(row.get("profile_pic_hash", String.class)))
+                .one()
+                .transform(queryMetrics.timed("user.picture.find"))
+                .flatMap(Mono::justOrEmpty))
+                .contextWrite(readRouting.replica(userId));
+    }
+
+    private static Parameter pictureHash(String hash) {
+        return Parameter.fromOrEmpty(hash.isEmpty() ? null : hash, String.class);
+    }
+
+
+    //------------------- UPDATE USERS ROLE -------------------
+    static final String DELETE_ROLES_BY_USER = """
+            DELETE FROM feedbackapp.global_user_role WHERE user_id = :id
+            """;
+
+    static final String DELETE_ADDRESSES_BY_USER = """
+            DELETE FROM feedbackapp.global_user_address WHERE user_id = :id
+            """;
+
+    static final String DELETE_USER = """
+            DELETE FROM feedbackapp.global_user WHERE id = :id RETURNING username
+            """;
+
+    private Mono<Void> deleteRolesByUser(String userId){
+        return databaseClient.sql(DELETE_ROLES_BY_USER)
+                .bind("id", userId).then()
+                .transform(queryMetrics.timed("role.delete-by-user"));
     }
 
+    private Mono<Void> deleteAddressesByUser(String userId) {
+        return databaseClient.sql(DELETE_ADDRESSES_BY_USER).bind("id", userId).then()
+                .transform(queryMetrics.timed("address.delete-by-user"));
+    }
 
-    @Transactional
+    /** Deletes the user with its addresses and roles in one transaction on its shard. */
     public Mono<Void> deleteUser(String userId) {
-        return databaseClient.sql("""
-            DELETE FROM feedbackapp.global_user WHERE id = :id
-        """).bind("id", userId).then();
+        return transactionOn(userId, deleteAddressesByUser(userId)
+                .then(deleteRolesByUser(userId))
+                .thenMany(databaseClient.sql(DELETE_USER).bind("id", userId)
+                        .map((row, meta) -> row.get("username", String.class))
+                        .all()
+                        .transform(queryMetrics.timedMany("user.delete")))
+                .doOnNext(username -> readRouting.written(userId, username))
+                .then());
     }
 
-    @Transactional
+    static final String UPDATE_PASSWORD = """
+            UPDATE feedbackapp.global_user
+            SET password = :password
+            WHERE username = :username
+            """;
+
+    static final String REHASH_PASSWORD = """
+            UPDATE feedbackapp.global_user
+            SET password = :newHash
+            WHERE username = :username AND password = :verifiedHash
+            """;
+
     public Mono<Void> updatePassword(String username, String password){
-        String sql = """
-    	        UPDATE feedbackapp.global_user
-    	        SET password = :password
-    	        WHERE username = :username
-    	        """;
+        return writeRouteFor(username)
+                .flatMap(route -> databaseClient.sql(UPDATE_PASSWORD)
+                        .bind("password", password)
+                        .bind("username", username)
+                        .then()
+                        .transform(queryMetrics.timed("user.password.update"))
+                        .contextWrite(route))
+                .doOnSuccess(done -> readRouting.written(username));
+    }
 
-        return databaseClient.sql(sql)
-                .bind("password", password)
-                .bind("username", username)
-                .then();
+    /** Replaces the hash only if it is still the one that was verified, so a concurrent password change wins. */
+    public Mono<Boolean> rehashPassword(String username, String verifiedHash, String newHash) {
+        return writeRouteFor(username)
+                .flatMap(route -> databaseClient.sql(REHASH_PASSWORD)
+                        .bind("newHash", newHash)
+                        .bind("username", username)
+                        .bind("verifiedHash", verifiedHash)
+                        .fetch()
+                        .rowsUpdated()
+                        .map(rows -> rows > 0)
+                        .transform(queryMetrics.timed("user.password.rehash"))
+                        .contextWrite(route))
+                .defaultIfEmpty(false)
+                .doOnSuccess(done -> readRouting.written(username));
     }
 
 
+    static final String COUNT_BY_CONTACT = """
+            SELECT COUNT(*) FROM feedbackapp.global_user
+            WHERE email = :email OR mobile = :mobile
+            """;
+
     public Mono<Boolean> existsByEmailOrContact(String email, long mobile) {
-        return databaseClient.sql("""
-                 SELECT COUNT(*) FROM feedbackapp.global_user 
-                 WHERE email = :email OR mobile = :mobile
-             """)
+        return everyShard(shard -> databaseClient.sql(COUNT_BY_CONTACT)
                 .bind("email",email)
                 .bind("mobile", mobile)
                 .map((row, meta) -> row.get("count", Long.class) > 0)
                 .one()
-                .defaultIfEmpty(false);
+                .transform(queryMetrics.timed("user.contacts.exists")))
+                .any(Boolean::booleanValue);
     }
 
     public record RowView(Row row) {
@@ -377,55 +789,48 @@ public class UserJdbcRepository {
         Long getLong(String c) { return row.get(c, Long.class); }
         Boolean getBoolean(String c) { return row.get(c, Boolean.class); }
         byte[] getBytes(String c) { return row.get(c, byte[].class); }
+        boolean has(String c) { return row.getMetadata().contains(c); }
     }
 
+    static final String TOKEN_USERS_BY_USERNAMES = """
+            SELECT u.id, u.username, u.password,
+            u.is_active, u.account_non_expired, u.account_non_locked, u.credential_non_expired
+            FROM feedbackapp.global_user u
+            WHERE u.username = ANY(:usernames)
+            """;
 
-    public Mono<TokenUsernameResponse> getUserByUsername(String tokenUsername) {
+    /** Users by username with one parent query and one roles query per shard, keyed by username. */
+    public Mono<Map<String, TokenUsernameResponse>> getUsersByUsernames(Collection<String> usernames) {
 
-        String sql = """
-             SELECT u.id, u.username, u.password, r.id AS role_id, r.rolename,
-             u.is_active, u.account_non_expired, u.account_non_locked, u.credential_non_expired
-             FROM feedbackapp.global_user u
-             LEFT JOIN feedbackapp.global_user_role r ON r.user_id = u.id
-             WHERE u.username = :username
-         """;
-
-        return databaseClient.sql(sql)
-                .bind("username", tokenUsername)
-                .map((row, meta) -> RowView.of(row))
+        if (usernames.isEmpty()) return Mono.just(Map.of());
+
+        return everyShard(shard -> databaseClient.sql(TOKEN_USERS_BY_USERNAMES)
+                .bind("usernames", usernames.toArray(String[]::new))
+                .map((row, meta) -> toTokenUser(RowView.of(row)))
                 .all()
-                .collect(
-                        () -> new LinkedHashMap<String, TokenUsernameResponse.Builder>(),
-                        (map, r) -> {
-
-                            String userId = r.getString("id");
-                            TokenUsernameResponse.Builder user = map.computeIfAbsent(userId, k ->
-                                    TokenUsernameResponse.newBuilder()
-                                            .setId(userId)
-                                            .setUsername(r.getString("username"))
-                                            .setPassword(r.getString("password"))
-                                            .setActive(r.getBoolean("is_active"))
-                                            .setAccountNonExpired(r.getBoolean("account_non_expired"))
-                                            .setAccountNonLocked(r.getBoolean("account_non_locked"))
-                                            .setCredentialsNonExpired(r.getBoolean("credential_non_expired"))
-                            );
-
-                            Long roleId = r.getLong("role_id");
-                            if (roleId != null) {
-                                user.addGlobaluserrole(
-                                        GlobalUserRole.newBuilder()
-                                                .setId(roleId)
-                                                .setRolename(r.getString("rolename"))
-                                                .build()
-                                );
-                            }
-                        }
-                )
-                .flatMap(map ->
-                        map.values().stream()
-                                .findFirst()
-                                .map(builder -> Mono.just(builder.build()))
-                                .orElse(Mono.empty())
-                );
+                .filter(user -> ownedBy(shard).test(user.getId()))
+                .collectList()
+                .transform(queryMetrics.timed("user.by-usernames"))
+                .filter(users -> !users.isEmpty())
+                .flatMap(users -> userHydrator.loadRoles(users.stream().map(TokenUsernameResponse.Builder::getId).toList())
+                        .map(roles -> users.stream()
+                                .map(user -> user
+                                        .addAllGlobaluserrole(roles.getOrDefault(user.getId(), List.of()))
+                                        .build())
+                                .toList())))
+                .<Map<String, TokenUsernameResponse>>collect(() -> new HashMap<>(usernames.size() * 2), (byUsername, users) ->
+                        users.forEach(user -> byUsername.put(user.getUsername(), user)))
+                .contextWrite(readRouting.replica(usernames.toArray(String[]::new)));
+    }
+
+    private static TokenUsernameResponse.Builder toTokenUser(RowView r) {
+        return TokenUsernameResponse.newBuilder()
+                .setId(r.getString("id"))
+                .setUsername(r.getString("username"))
+                .setPassword(r.getString("password"))
+                .setActive(r.getBoolean("is_active"))
+                .setAccountNonExpired(r.getBoolean("account_non_expired"))
+                .setAccountNonLocked(r.getBoolean("account_non_locked"))
+                .setCredentialsNonExpired(r.getBoolean("credential_non_expired"));
     }
 }
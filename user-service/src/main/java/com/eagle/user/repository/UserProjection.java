@@ -0,0 +1,76 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.exception.InvalidRequestException;
+import com.google.protobuf.FieldMask;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The {@code GlobalUser} fields a read should return, derived from a request {@link FieldMask}.
+ * Only the columns and child tables behind those fields are queried; {@code id} is always read.
+ * An empty mask selects every field.
+ */
+public record UserProjection(Set<String> fields) {
+
+    public static final String ROLES = "globaluserrole";
+    public static final String ADDRESSES = "addressMap";
+
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put("id", "u.id");
+        COLUMNS.put("username", "u.username");
+        COLUMNS.put("fullname", "u.fullname");
+        COLUMNS.put("dob", "u.dob");
+        COLUMNS.put("email", "u.email");
+        COLUMNS.put("mobile", "u.mobile");
+        COLUMNS.put("active", "u.is_active");
+        COLUMNS.put("accountNonExpired", "u.account_non_expired");
+        COLUMNS.put("accountNonLocked", "u.account_non_locked");
+        COLUMNS.put("credentialsNonExpired", "u.credential_non_expired");
+        COLUMNS.put("profilePicture", "u.profile_pic");
+        COLUMNS.put("profilePictureHash", "u.profile_pic_hash");
+    }
+
+    private static final Set<String> ALL_FIELDS = allFields();
+
+    public static final UserProjection ALL = new UserProjection(ALL_FIELDS);
+
+    public static UserProjection of(FieldMask mask) {
+        if (mask == null || mask.getPathsCount() == 0) return ALL;
+
+        for (String path : mask.getPathsList()) {
+            if (!COLUMNS.containsKey(path) && !ROLES.equals(path) && !ADDRESSES.equals(path)) {
+                throw new InvalidRequestException("Unknown field in read mask: " + path);
+            }
+        }
+        return new UserProjection(Set.copyOf(mask.getPathsList()));
+    }
+
+    public boolean includes(String field) {
+        return "id".equals(field) || fields.contains(field);
+    }
+
+    public boolean isAll() {
+        return fields.containsAll(ALL_FIELDS);
+    }
+
+    /** Column list for a {@code SELECT} over {@code feedbackapp.global_user u}. */
+    public String selectList() {
+        return COLUMNS.entrySet().stream()
+                .filter(e -> includes(e.getKey()))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.joining(", "));
+    }
+
+    private static Set<String> allFields() {
+        Set<String> all = new HashSet<>(COLUMNS.keySet());
+        all.add(ROLES);
+        all.add(ADDRESSES);
+        return Set.copyOf(all);
+    }
+}
@@ -0,0 +1,27 @@
+package com.eagle.user.repository;
+
+/**
+ * Scalar columns of one {@code feedbackapp.global_user} row, copied out of the driver row
+ * so it can outlive the mapping callback.
+ */
+public record UserRow(String id, String username, String fullname, String dob, String email, Long mobile,
+                      Boolean active, Boolean accountNonExpired, Boolean accountNonLocked,
+                      Boolean credentialsNonExpired, byte[] pic, String picHash) {
+
+    /** Columns left out of the select list by a {@link UserProjection} come back as {@code null}. */
+    static UserRow of(UserJdbcRepository.RowView r) {
+        return new UserRow(
+                r.getString("id"),
+                r.has("username") ? r.getString("username") : null,
+                r.has("fullname") ? r.getString("fullname") : null,
+                r.has("dob") ? r.getString("dob") : null,
+                r.has("email") ? r.getString("email") : null,
+                r.has("mobile") ? r.getLong("mobile") : null,
+                r.has("is_active") ? r.getBoolean("is_active") : null,
+                r.has("account_non_expired") ? r.getBoolean("account_non_expired") : null,
+                r.has("account_non_locked") ? r.getBoolean("account_non_locked") : null,
+                r.has("credential_non_expired") ? r.getBoolean("credential_non_expired") : null,
+                r.has("profile_pic") ? r.getBytes("profile_pic") : null,
+                r.has("profile_pic_hash") ? r.getString("profile_pic_hash") : null);
+    }
+}
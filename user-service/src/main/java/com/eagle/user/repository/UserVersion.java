@@ -0,0 +1,9 @@
+package com.eagle.user.repository;
+
+/**
+ * A user row and its Postgres {@code xmin}, which changes whenever the row is rewritten.
+ * Role and address changes rewrite the parent row too (see {@code UserJdbcRepository.updateColumns}),
+ * so an unchanged version means an unchanged user.
+ */
+public record UserVersion(String id, long version) {
+}
@@ -0,0 +1,237 @@
+package com.eagle.user.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram index over the searchable fields of every user. Each word of a field is indexed by its
+ * trigrams and by its one- and two-character prefixes, so any query token finds its candidates
+ * through one posting list; candidates are then verified against the normalized fields and
+ * scored. Postings are append-only arrays of document numbers: an update indexes a new document
+ * and tombstones the old one, and the postings are rebuilt once tombstones outnumber live users.
+ */
+final class UserNgramIndex {
+
+    record Entry(String id, String username, String fullname, String email, long mobile) {}
+
+    record Match(Entry entry, double score) {}
+
+    private static final double USERNAME_WEIGHT = 1.2;
+    private static final double FULLNAME_WEIGHT = 1.0;
+    private static final double EMAIL_WEIGHT = 0.9;
+    private static final double MOBILE_WEIGHT = 0.8;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<String, Integer> docById = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int tombstones;
+
+    void put(Entry entry) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = docById.get(entry.id());
+            if (previous != null) {
+                docs.set(previous, null);
+                tombstones++;
+            }
+            int docNo = docs.size();
+            Doc doc = new Doc(entry);
+            docs.add(doc);
+            docById.put(entry.id(), docNo);
+            for (String gram : doc.grams()) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(docNo);
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer docNo = docById.remove(id);
+            if (docNo != null) {
+                docs.set(docNo, null);
+                tombstones++;
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return docById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return docById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Users matching every token of {@code query}, best first, at most {@code limit}. */
+    List<Match> search(String query, int limit) {
+        List<String> tokens = words(query);
+        if (tokens.isEmpty() || limit <= 0) return List.of();
+
+        lock.readLock().lock();
+        try {
+            // the rarest gram of any token bounds the candidates, the rest is verification
+            Postings candidates = null;
+            for (String token : tokens) {
+                for (String gram : queryGrams(token)) {
+                    Postings p = postings.get(gram);
+                    if (p == null) return List.of();
+                    if (candidates == null || p.size < candidates.size) candidates = p;
+                }
+            }
+
+            PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, UserNgramIndex::worstFirst);
+            for (int i = 0; i < candidates.size; i++) {
+                Doc doc = docs.get(candidates.docs[i]);
+                if (doc == null) continue;
+                double score = doc.score(tokens);
+                if (score <= 0) continue;
+                best.add(new Match(doc.entry, score));
+                if (best.size() > limit) best.poll();
+            }
+
+            List<Match> result = new ArrayList<>(best);
+            result.sort((a, b) -> worstFirst(b, a));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // lower score first; on equal scores the longer name counts as worse, then the larger id
+    private static int worstFirst(Match a, Match b) {
+        int c = Double.compare(a.score(), b.score());
+        if (c != 0) return c;
+        c = Integer.compare(b.entry().fullname().length(), a.entry().fullname().length());
+        if (c != 0) return c;
+        return b.entry().id().compareTo(a.entry().id());
+    }
+
+    private void compactIfNeeded() {
+        if (tombstones < 1024 || tombstones < docById.size()) return;
+
+        List<Doc> live = docs.stream().filter(d -> d != null).toList();
+        docs.clear();
+        docById.clear();
+        postings.clear();
+        tombstones = 0;
+        for (Doc doc : live) {
+            int docNo = docs.size();
+            docs.add(doc);
+            docById.put(doc.entry.id(), docNo);
+            for (String gram : doc.grams()) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(docNo);
+            }
+        }
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    // words are runs of letters and digits; email addresses split at @ and dots
+    static List<String> words(String value) {
+        List<String> words = new ArrayList<>();
+        for (String word : normalize(value).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words;
+    }
+
+    private static List<String> queryGrams(String token) {
+        if (token.length() < 3) return List.of("^" + token);
+        List<String> grams = new ArrayList<>(token.length() - 2);
+        for (int i = 0; i + 3 <= token.length(); i++) grams.add(token.substring(i, i + 3));
+        return grams;
+    }
+
+    private static final class Doc {
+
+        final Entry entry;
+        final String username;
+        final String fullname;
+        final String email;
+        final String mobile;
+
+        Doc(Entry entry) {
+            this.entry = entry;
+            this.username = normalize(entry.username());
+            this.fullname = normalize(entry.fullname());
+            this.email = normalize(entry.email());
+            this.mobile = entry.mobile() == 0 ? "" : Long.toString(entry.mobile());
+        }
+
+        Set<String> grams() {
+            Set<String> grams = new LinkedHashSet<>();
+            for (String field : List.of(username, fullname, email, mobile)) {
+                for (String word : words(field)) {
+                    grams.add("^" + word.charAt(0));
+                    if (word.length() >= 2) grams.add("^" + word.substring(0, 2));
+                    for (int i = 0; i + 3 <= word.length(); i++) grams.add(word.substring(i, i + 3));
+                }
+            }
+            return grams;
+        }
+
+        /** Sum over tokens of the best field match, 0 when some token matches no field. */
+        double score(List<String> tokens) {
+            double total = 0;
+            for (String token : tokens) {
+                double best = Math.max(
+                        Math.max(USERNAME_WEIGHT * fieldScore(username, token), FULLNAME_WEIGHT * fieldScore(fullname, token)),
+                        Math.max(EMAIL_WEIGHT * fieldScore(email, token), MOBILE_WEIGHT * fieldScore(mobile, token)));
+                if (best == 0) return 0;
+                total += best;
+            }
+            return total;
+        }
+
+        private static double fieldScore(String field, String token) {
+            if (field.isEmpty()) return 0;
+            if (field.equals(token)) return 100;
+            if (field.startsWith(token)) return 50;
+            int at = field.indexOf(token);
+            if (at < 0) return 0;
+            // a match at the start of a later word ranks above one inside a word
+            return Character.isLetterOrDigit(field.charAt(at - 1)) ? 10 : 30;
+        }
+    }
+
+    private static final class Postings {
+
+        int[] docs = new int[4];
+        int size;
+
+        // document numbers are handed out in increasing order, so appends keep the list sorted
+        void add(int docNo) {
+            if (size == docs.length) docs = Arrays.copyOf(docs, size * 2);
+            docs[size++] = docNo;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.eagle.user.search;
+
+import com.eagle.user.CreateUserRequest;
+import com.eagle.user.GlobalUser;
+import com.eagle.user.UserMatch;
+import com.eagle.user.repository.UserJdbcRepository;
+import com.eagle.user.repository.UserRow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * In-process typeahead index over fullname, email, username and mobile. Loaded from
+ * {@code feedbackapp.global_user} once the application is ready. This instance's writes are
+ * applied as they happen and those of every instance as {@code UserEventChannel} receives them;
+ * the reload on a fixed interval catches up on changes missed while the channel was down.
+ * Until the first load finishes searches only see users written since startup.
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private final UserJdbcRepository userJdbcRepository;
+    private final Duration rebuildInterval;
+
+    private volatile UserNgramIndex active = new UserNgramIndex();
+    // writes and the swap to a rebuilt index take this lock, so no write lands only in a discarded index
+    private final Object lock = new Object();
+    // receives writes while a rebuild is scanning the table; ids in touched are newer than the scan
+    private UserNgramIndex building; // guarded by lock
+    private Set<String> touched; // guarded by lock
+    private Disposable rebuilds;
+
+    public UserSearchIndex(UserJdbcRepository userJdbcRepository, MeterRegistry meterRegistry,
+                           @Value("${eagle.user.search.rebuild-interval:1h}") Duration rebuildInterval) {
+        this.userJdbcRepository = userJdbcRepository;
+        this.rebuildInterval = rebuildInterval;
+        Gauge.builder("user.search.index.size", this, index -> index.active.size()).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuilds = Flux.interval(Duration.ZERO, rebuildInterval)
+                .concatMap(tick -> rebuild()
+                        .onErrorResume(e -> {
+                            log.warn("Search index rebuild failed", e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rebuilds != null) rebuilds.dispose();
+    }
+
+    /** Best matches first; reads only the in-memory index. */
+    public List<UserMatch> search(String query, int limit) {
+        return active.search(query, limit).stream()
+                .map(match -> UserMatch.newBuilder()
+                        .setId(match.entry().id())
+                        .setUsername(match.entry().username())
+                        .setFullname(match.entry().fullname())
+                        .setEmail(match.entry().email())
+                        .setMobile(match.entry().mobile())
+                        .setScore(match.score())
+                        .build())
+                .toList();
+    }
+
+    public void put(GlobalUser user) {
+        apply(new UserNgramIndex.Entry(user.getId(), user.getUsername(), user.getFullname(),
+                user.getEmail(), user.getMobile()));
+    }
+
+    public void put(CreateUserRequest user) {
+        apply(new UserNgramIndex.Entry(user.getId(), user.getUsername(), user.getFullname(),
+                user.getEmail(), user.getMobile()));
+    }
+
+    public void remove(String id) {
+        synchronized (lock) {
+            active.remove(id);
+            if (building != null) {
+                touched.add(id);
+                building.remove(id);
+            }
+        }
+    }
+
+    private void apply(UserNgramIndex.Entry entry) {
+        synchronized (lock) {
+            active.put(entry);
+            if (building != null) {
+                touched.add(entry.id());
+                building.put(entry);
+            }
+        }
+    }
+
+    private Mono<Void> rebuild() {
+        return Mono.defer(() -> {
+            UserNgramIndex next = new UserNgramIndex();
+            Set<String> written = new HashSet<>();
+            synchronized (lock) {
+                touched = written;
+                building = next;
+            }
+            return userJdbcRepository.streamSearchFields()
+                    .doOnNext(row -> {
+                        synchronized (lock) {
+                            if (!written.contains(row.id())) next.put(entry(row));
+                        }
+                    })
+                    .then(Mono.fromRunnable(() -> {
+                        synchronized (lock) {
+                            active = next;
+                            building = null;
+                            touched = null;
+                        }
+                    }))
+                    .doFinally(signal -> {
+                        synchronized (lock) {
+                            if (building == next) {
+                                building = null;
+                                touched = null;
+                            }
+                        }
+                    })
+                    .then();
+        });
+    }
+
+    private static UserNgramIndex.Entry entry(UserRow row) {
+        return new UserNgramIndex.Entry(row.id(),
+                Objects.requireNonNullElse(row.username(), ""),
+                Objects.requireNonNullElse(row.fullname(), ""),
+                Objects.requireNonNullElse(row.email(), ""),
+                Objects.requireNonNullElse(row.mobile(), 0L));
+    }
+}
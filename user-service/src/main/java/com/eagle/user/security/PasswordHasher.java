@@ -0,0 +1,173 @@
+package com.eagle.user.security;
+
+import com.eagle.user.exception.InvalidRequestException;
+import com.eagle.user.exception.ServerBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Password hashing on a fixed pool of its own, so bcrypt never runs on gRPC or event loop
+ * threads. The queue in front of the pool is bounded; once it is full new work fails fast
+ * with {@link ServerBusyException} rather than piling up behind callers that have already
+ * timed out. Hashes are stored as {@code {bcrypt}...}; values without a prefix are legacy
+ * plaintext and, like hashes below the configured strength, are replaced on the next
+ * successful verify.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final String ENCODING = "bcrypt";
+    // bcrypt ignores everything past 72 bytes; reject instead of silently truncating
+    private static final int MAX_PASSWORD_BYTES = 72;
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer queueWait;
+    private final Timer hashTime;
+    private final Timer verifyTime;
+    private final Counter rejected;
+    // compared against when the username does not exist, so misses cost the same as hits
+    private final String unknownUserHash;
+
+    public PasswordHasher(MeterRegistry meterRegistry,
+                          @Value("${eagle.user.password.bcrypt-strength:10}") int strength,
+                          @Value("${eagle.user.password.threads:0}") int threads,
+                          @Value("${eagle.user.password.queue-capacity:64}") int queueCapacity) {
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(ENCODING,
+                Map.of(ENCODING, new BCryptPasswordEncoder(strength)));
+        delegating.setDefaultPasswordEncoderForMatches(new LegacyPlaintext(delegating));
+        this.encoder = delegating;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        this.queueWait = meterRegistry.timer("user.password.queue.wait");
+        this.hashTime = meterRegistry.timer("user.password.work", "operation", "hash");
+        this.verifyTime = meterRegistry.timer("user.password.work", "operation", "verify");
+        this.rejected = meterRegistry.counter("user.password.rejected");
+        meterRegistry.gauge("user.password.queue.depth", executor, pool -> pool.getQueue().size());
+        meterRegistry.gauge("user.password.active", executor, ThreadPoolExecutor::getActiveCount);
+
+        this.unknownUserHash = encoder.encode("unknown-user");
+    }
+
+    public record Verification(boolean matches, String upgradedHash) {
+        public boolean needsUpgrade() {
+            return upgradedHash != null;
+        }
+    }
+
+    /** Threads in the pool; callers fanning out should not keep more hashes in flight than this. */
+    public int parallelism() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public Mono<String> hash(String password) {
+        if (password.getBytes(StandardCharsets.UTF_8).length > MAX_PASSWORD_BYTES) {
+            return Mono.error(new InvalidRequestException("Password longer than " + MAX_PASSWORD_BYTES + " bytes"));
+        }
+        return submit(hashTime, () -> encoder.encode(password));
+    }
+
+    /** Checks the password and, on a match against an outdated hash, computes its replacement. */
+    public Mono<Verification> verify(String password, String stored) {
+        return submit(verifyTime, () -> {
+            if (stored == null || stored.isEmpty() || !matches(password, stored)) {
+                return new Verification(false, null);
+            }
+            return new Verification(true, encoder.upgradeEncoding(stored) ? encoder.encode(password) : null);
+        });
+    }
+
+    /** Same cost as a failed {@link #verify}, for lookups that found no user. */
+    public Mono<Verification> verifyUnknown(String password) {
+        return submit(verifyTime, () -> {
+            matches(password, unknownUserHash);
+            return new Verification(false, null);
+        });
+    }
+
+    private boolean matches(String password, String stored) {
+        try {
+            return encoder.matches(password, stored);
+        } catch (IllegalArgumentException e) {
+            // oversized password or a malformed stored value
+            return false;
+        }
+    }
+
+    private <T> Mono<T> submit(Timer work, Supplier<T> task) {
+        return Mono.defer(() -> {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            long enqueued = System.nanoTime();
+            try {
+                executor.execute(() -> {
+                    // cancelled while queued, nobody is waiting for it
+                    if (result.isDone()) return;
+                    long started = System.nanoTime();
+                    queueWait.record(started - enqueued, TimeUnit.NANOSECONDS);
+                    try {
+                        result.complete(task.get());
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        work.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                return Mono.error(new ServerBusyException("Password hashing is saturated, retry later"));
+            }
+            return Mono.fromFuture(result);
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Matches unprefixed legacy plaintext. Plaintext is never written: anything encoded through
+     * it gets the current prefixed hash from {@code current}.
+     */
+    private record LegacyPlaintext(PasswordEncoder current) implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return current.encode(rawPassword);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return MessageDigest.isEqual(
+                    rawPassword.toString().getBytes(StandardCharsets.UTF_8),
+                    encodedPassword.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -1,43 +1,118 @@
 package com.eagle.user.service;
 
 import com.eagle.user.*;
+import com.eagle.user.exception.GlobalExceptionHandler;
+import com.eagle.user.grpc.FlowControlledSubscriber;
+import com.eagle.user.grpc.InboundStreamFlux;
+import com.eagle.user.grpc.TraceContext;
+import com.eagle.user.grpc.UnarySubscriber;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
+import reactor.core.publisher.Flux;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @GrpcService
 public class GlobalUserGrpcService extends GlobalUserServiceGrpc.GlobalUserServiceImplBase {
 
+    private static final Empty EMPTY = Empty.getDefaultInstance();
+
     private final GlobalUserService globalUserService;
+    private final GlobalExceptionHandler exceptionHandler;
+    private final long compressAbove;
 
-    public GlobalUserGrpcService(GlobalUserService globalUserService){
+    public GlobalUserGrpcService(GlobalUserService globalUserService, GlobalExceptionHandler exceptionHandler,
+                                 @Value("${eagle.user.grpc.compress-above:64KB}") DataSize compressAbove){
         this.globalUserService =  globalUserService;
+        this.exceptionHandler = exceptionHandler;
+        this.compressAbove = compressAbove.toBytes();
     }
 
+    // ------------------- Encoded user lists -------------------
+    // getAllGlobalUsers and getGlobalUser are bound with an EncodedUserList response marshaller
+    // in place of the generated UserList one; the two are wire-identical, so clients see no change
+
     @Override
-    public void getAllGlobalUsers(Empty request, StreamObserver<UserList> responseObserver) {
-        super.getAllGlobalUsers(request, responseObserver);
+    public ServerServiceDefinition bindService() {
+        ServerServiceDefinition generated = super.bindService();
+        MethodDescriptor<ListUsersRequest, EncodedUserList> getAll = encoded(GlobalUserServiceGrpc.getGetAllGlobalUsersMethod());
+        MethodDescriptor<UserIdRequest, EncodedUserList> getOne = encoded(GlobalUserServiceGrpc.getGetGlobalUserMethod());
+
+        List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        for (ServerMethodDefinition<?, ?> method : generated.getMethods()) {
+            String name = method.getMethodDescriptor().getFullMethodName();
+            if (name.equals(getAll.getFullMethodName())) {
+                methods.add(ServerMethodDefinition.create(getAll, ServerCalls.asyncUnaryCall(this::getAllGlobalUsersEncoded)));
+            } else if (name.equals(getOne.getFullMethodName())) {
+                methods.add(ServerMethodDefinition.create(getOne, ServerCalls.asyncUnaryCall(this::getGlobalUserEncoded)));
+            } else {
+                methods.add(method);
+            }
+        }
+
+        ServiceDescriptor generatedService = generated.getServiceDescriptor();
+        ServiceDescriptor.Builder service = ServiceDescriptor.newBuilder(generatedService.getName())
+                .setSchemaDescriptor(generatedService.getSchemaDescriptor());
+        methods.forEach(method -> service.addMethod(method.getMethodDescriptor()));
+
+        ServerServiceDefinition.Builder definition = ServerServiceDefinition.builder(service.build());
+        for (ServerMethodDefinition<?, ?> method : methods) {
+            definition.addMethod(method);
+        }
+        return definition.build();
     }
 
-    @Override
-    public void getGlobalUser(UserIdRequest request, StreamObserver<UserList> responseObserver) {
-        super.getGlobalUser(request, responseObserver);
+    static <ReqT> MethodDescriptor<ReqT, EncodedUserList> encoded(MethodDescriptor<ReqT, UserList> method) {
+        return method.toBuilder(method.getRequestMarshaller(), ProtoUtils.marshaller(EncodedUserList.getDefaultInstance()))
+                .build();
+    }
+
+    private void getAllGlobalUsersEncoded(ListUsersRequest request, StreamObserver<EncodedUserList> responseObserver) {
+        unary(globalUserService.getAllGlobalUsersEncoded(request)
+                .doOnNext(users -> compressIfLarge(users, responseObserver)), responseObserver);
+    }
+
+    private void getGlobalUserEncoded(UserIdRequest request, StreamObserver<EncodedUserList> responseObserver) {
+        unary(globalUserService.getGlobalUserEncoded(request)
+                .doOnNext(users -> compressIfLarge(users, responseObserver)), responseObserver);
+    }
+
+    // only takes effect when the client listed gzip in grpc-accept-encoding; must precede the response headers
+    void compressIfLarge(EncodedUserList users, StreamObserver<EncodedUserList> responseObserver) {
+        if (users.getSerializedSize() >= compressAbove) {
+            ((ServerCallStreamObserver<EncodedUserList>) responseObserver).setCompression("gzip");
+        }
     }
 
+    // ------------------- Calls -------------------
+
     @Override
     public void addGlobalUser(CreateUserRequest request, StreamObserver<UserList> responseObserver) {
-        super.addGlobalUser(request, responseObserver);
+        unary(globalUserService.create(request), responseObserver);
     }
 
     @Override
     public void updateGlobalUser(UpdateUserRequest request, StreamObserver<UserList> responseObserver) {
-        super.updateGlobalUser(request, responseObserver);
+        unary(globalUserService.updateGlobalUser(request), responseObserver);
     }
 
     @Override
     public void deleteGlobalUser(UserIdRequest request, StreamObserver<Empty> responseObserver) {
-        super.deleteGlobalUser(request, responseObserver);
+        unary(globalUserService.deleteGlobalUser(request.getId()).thenReturn(EMPTY), responseObserver);
     }
 
+    // tokens are issued and resolved by the auth server; this service has no token store
     @Override
     public void getGlobalUserToken(UserToken request, StreamObserver<UserList> responseObserver) {
         super.getGlobalUserToken(request, responseObserver);
@@ -45,11 +120,65 @@ public class GlobalUserGrpcService extends GlobalUserServiceGrpc.GlobalUserServi
 
     @Override
     public void getUserNameForToken(TokenUsernameRequest request, StreamObserver<TokenUsernameResponse> responseObserver) {
-        super.getUserNameForToken(request, responseObserver);
+        unary(globalUserService.getUserDetail(request), responseObserver);
     }
 
     @Override
     public void updateUserPassword(UpdatePasswordRequest request, StreamObserver<Empty> responseObserver) {
-        super.updateUserPassword(request, responseObserver);
+        unary(globalUserService.UpdatePassword(request).thenReturn(EMPTY), responseObserver);
+    }
+
+    @Override
+    public void streamGlobalUsers(StreamUsersRequest request, StreamObserver<GlobalUser> responseObserver) {
+        stream(globalUserService.streamGlobalUsers(request), responseObserver);
+    }
+
+    @Override
+    public StreamObserver<CreateUserRequest> importGlobalUsers(StreamObserver<ImportSummary> responseObserver) {
+        InboundStreamFlux<CreateUserRequest> requests = new InboundStreamFlux<>(responseObserver);
+        unary(globalUserService.importGlobalUsers(requests.flux()), responseObserver);
+        return requests;
+    }
+
+    @Override
+    public StreamObserver<UploadPictureRequest> uploadProfilePicture(StreamObserver<PictureRef> responseObserver) {
+        InboundStreamFlux<UploadPictureRequest> chunks = new InboundStreamFlux<>(responseObserver);
+        unary(globalUserService.uploadProfilePicture(chunks.flux()), responseObserver);
+        return chunks;
+    }
+
+    @Override
+    public void downloadProfilePicture(DownloadPictureRequest request, StreamObserver<PictureChunk> responseObserver) {
+        stream(globalUserService.downloadProfilePicture(request), responseObserver);
+    }
+
+    @Override
+    public void searchGlobalUsers(SearchUsersRequest request, StreamObserver<SearchUsersResponse> responseObserver) {
+        unary(globalUserService.searchGlobalUsers(request), responseObserver);
+    }
+
+    @Override
+    public void watchGlobalUsers(WatchUsersRequest request, StreamObserver<UserEvent> responseObserver) {
+        stream(globalUserService.watchGlobalUsers(request), responseObserver);
+    }
+
+    @Override
+    public void verifyCredentials(VerifyCredentialsRequest request,
+                                  StreamObserver<VerifyCredentialsResponse> responseObserver) {
+        unary(globalUserService.verifyCredentials(request), responseObserver);
+    }
+
+    // ------------------- Reactor bridge -------------------
+    // the subscriber is created, and its cancel handler registered, before subscribing, so a
+    // call cancelled or past its deadline at any point disposes the pipeline
+
+    private <T> void unary(Mono<T> response, StreamObserver<T> responseObserver) {
+        response.contextWrite(TraceContext.capture())
+                .subscribe(new UnarySubscriber<>(responseObserver, exceptionHandler::toStatus));
+    }
+
+    private <T> void stream(Flux<T> responses, StreamObserver<T> responseObserver) {
+        responses.contextWrite(TraceContext.capture())
+                .subscribe(new FlowControlledSubscriber<>(responseObserver, exceptionHandler::toStatus));
     }
 }
@@ -1,70 +1,493 @@
 package com.eagle.user.service;
 
 import com.eagle.user.UserList;
+import com.eagle.user.cache.ContactPreFilter;
+import com.eagle.user.cache.EncodedUserCache;
+import com.eagle.user.cache.UserCache;
+import com.eagle.user.events.UserEventChannel;
+import com.eagle.user.events.UserEventLog;
 import com.eagle.user.exception.DuplicateUserException;
+import com.eagle.user.exception.InvalidRequestException;
+import com.eagle.user.exception.UserNotFoundException;
 import com.eagle.user.repository.UserJdbcRepository;
+import com.eagle.user.repository.UserProjection;
+import com.eagle.user.search.UserSearchIndex;
+import com.eagle.user.security.PasswordHasher;
+import com.eagle.user.storage.ProfilePictureStore;
+import com.google.protobuf.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.eagle.user.CreateUserRequest;
+import com.eagle.user.DownloadPictureRequest;
+import com.eagle.user.EncodedUserList;
+import com.eagle.user.GlobalUser;
+import com.eagle.user.ImportResult;
+import com.eagle.user.ImportSummary;
+import com.eagle.user.ListUsersRequest;
+import com.eagle.user.PictureChunk;
+import com.eagle.user.PictureRef;
+import com.eagle.user.SearchUsersRequest;
+import com.eagle.user.SearchUsersResponse;
+import com.eagle.user.StreamUsersRequest;
 import com.eagle.user.TokenUsernameRequest;
 import com.eagle.user.TokenUsernameResponse;
 import com.eagle.user.UpdatePasswordRequest;
 import com.eagle.user.UpdateUserRequest;
+import com.eagle.user.UploadPictureRequest;
+import com.eagle.user.UserEvent;
+import com.eagle.user.UserIdRequest;
+import com.eagle.user.VerifyCredentialsRequest;
+import com.eagle.user.VerifyCredentialsResponse;
+import com.eagle.user.WatchUsersRequest;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// transactions are opened per shard by the repository once it knows the shard; one begun here
+// would hold a primary connection for the whole call
 @Service
-@Transactional
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 public class GlobalUserService {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalUserService.class);
+
+    private static final int DEFAULT_STREAM_PAGE_SIZE = 500;
+    private static final int MAX_STREAM_PAGE_SIZE = 5000;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 200;
+
     private final UserJdbcRepository userJdbcRepository;
+    private final UserCache userCache;
+    private final EncodedUserCache encodedUserCache;
+    private final ProfilePictureStore profilePictureStore;
+    private final ContactPreFilter contactPreFilter;
+    private final UserSearchIndex userSearchIndex;
+    private final UserEventLog userEventLog;
+    private final UserEventChannel userEventChannel;
+    private final PasswordHasher passwordHasher;
 
-    public GlobalUserService(UserJdbcRepository userJdbcRepository) {
+    private final int importChunkSize;
+
+    public GlobalUserService(UserJdbcRepository userJdbcRepository, UserCache userCache, EncodedUserCache encodedUserCache,
+                             ProfilePictureStore profilePictureStore, ContactPreFilter contactPreFilter,
+                             UserSearchIndex userSearchIndex, UserEventLog userEventLog, UserEventChannel userEventChannel,
+                             PasswordHasher passwordHasher,
+                             @Value("${eagle.user.import.chunk-size:500}") int importChunkSize) {
         this.userJdbcRepository = userJdbcRepository;
+        this.userCache = userCache;
+        this.encodedUserCache = encodedUserCache;
+        this.profilePictureStore = profilePictureStore;
+        this.contactPreFilter = contactPreFilter;
+        this.userSearchIndex = userSearchIndex;
+        this.userEventLog = userEventLog;
+        this.userEventChannel = userEventChannel;
+        this.passwordHasher = passwordHasher;
+        this.importChunkSize = importChunkSize;
     }
 
     public Mono<UserList> create(CreateUserRequest user) {
-        return userJdbcRepository.existsByEmailOrContact(user.getEmail(), user.getMobile())
+        // contacts the filter has never seen skip the lookup; the unique constraints still guard the insert
+        Mono<Boolean> registered = contactPreFilter.mightBeRegistered(user.getEmail(), user.getMobile())
+                ? userJdbcRepository.existsByEmailOrContact(user.getEmail(), user.getMobile())
+                : Mono.just(false);
+
+        return registered
                 .flatMap(exists -> {
                     if (exists) {
                         return Mono.error(new DuplicateUserException("Email or mobile already registered"));
                     }
-                    return userJdbcRepository.createUserWithRolesAndAddresses(user)
-                            .then(
-                                    userJdbcRepository.getGlobalUserById(user.getId()));
+                    return hashPassword(user)
+                            .flatMap(this::withStoredPicture)
+                            .flatMap(userJdbcRepository::createUserWithRolesAndAddresses)
+                            .onErrorMap(DuplicateKeyException.class,
+                                    e -> new DuplicateUserException("Email, mobile or username already registered"))
+                            .doOnNext(userId -> contactPreFilter.add(user.getEmail(), user.getMobile()))
+                            .flatMap(userId -> userJdbcRepository.getGlobalUserById(userId)
+                                    .doOnNext(created -> {
+                                        userCache.invalidateUser(userId, user.getUsername());
+                                        userCache.putById(userId, created);
+                                        created.getGlobaluserList().forEach(userSearchIndex::put);
+                                    })
+                                    .flatMap(created -> publish(UserEvent.Type.CREATED, created).thenReturn(created)));
                 });
     }
 
-    public Mono<UserList> getAllGlobalUser() {
-        return userJdbcRepository.getAllUsers();
+    // each chunk commits on its own, see UserJdbcRepository.insertUsersBatch
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Mono<ImportSummary> importGlobalUsers(Flux<CreateUserRequest> users) {
+        return users.index()
+                .buffer(importChunkSize)
+                .concatMap(this::importChunk)
+                .collect(ImportSummary::newBuilder, (summary, result) -> summary
+                        .addResults(result)
+                        .setTotal(summary.getTotal() + 1)
+                        .setImported(summary.getImported() + (result.getImported() ? 1 : 0))
+                        .setFailed(summary.getFailed() + (result.getImported() ? 0 : 1)))
+                .map(ImportSummary.Builder::build);
+    }
+
+    private Flux<ImportResult> importChunk(List<Tuple2<Long, CreateUserRequest>> chunk) {
+        List<String> emails = chunk.stream().map(t -> t.getT2().getEmail()).toList();
+        List<Long> mobiles = chunk.stream().map(t -> t.getT2().getMobile()).toList();
+
+        return userJdbcRepository.findRegisteredContacts(emails, mobiles)
+                .flatMapMany(registered -> {
+                    List<ImportResult> rejected = new ArrayList<>();
+                    List<Tuple2<Long, CreateUserRequest>> accepted = new ArrayList<>();
+                    for (Tuple2<Long, CreateUserRequest> record : chunk) {
+                        CreateUserRequest user = record.getT2();
+                        // registered also collects this chunk's own contacts so in-chunk duplicates are caught
+                        if (registered.emails().contains(user.getEmail())
+                                || registered.mobiles().contains(user.getMobile())) {
+                            rejected.add(failed(record.getT1(), "Email or mobile already registered"));
+                        } else {
+                            registered.emails().add(user.getEmail());
+                            registered.mobiles().add(user.getMobile());
+                            accepted.add(record);
+                        }
+                    }
+                    return Flux.fromIterable(rejected).concatWith(writeChunk(accepted));
+                });
+    }
+
+    private Flux<ImportResult> writeChunk(List<Tuple2<Long, CreateUserRequest>> accepted) {
+        if (accepted.isEmpty()) return Flux.empty();
+
+        return userJdbcRepository.reserveUserIds(accepted.size())
+                .flatMapMany(ids -> {
+                    List<CreateUserRequest> users = new ArrayList<>(accepted.size());
+                    List<ImportResult> results = new ArrayList<>(accepted.size());
+                    for (int i = 0; i < accepted.size(); i++) {
+                        users.add(accepted.get(i).getT2().toBuilder().setId(ids.get(i)).build());
+                        results.add(ImportResult.newBuilder()
+                                .setIndex(accepted.get(i).getT1())
+                                .setId(ids.get(i))
+                                .setImported(true)
+                                .build());
+                    }
+                    // bounded to the hasher's pool so a large chunk does not overflow its queue
+                    return Flux.fromIterable(users)
+                            .flatMapSequential(this::hashPassword, passwordHasher.parallelism())
+                            .concatMap(this::withStoredPicture)
+                            .collectList()
+                            .flatMap(userJdbcRepository::insertUsersBatch)
+                            .doOnSuccess(done -> users.forEach(u -> {
+                                contactPreFilter.add(u.getEmail(), u.getMobile());
+                                userSearchIndex.put(u);
+                            }))
+                            .then(Mono.defer(() -> userJdbcRepository.getGlobalUsersByIds(ids)))
+                            .flatMapMany(created -> Flux.fromIterable(created.values()))
+                            .concatMap(created -> publish(UserEvent.Type.CREATED, created))
+                            .thenMany(Flux.fromIterable(results));
+                })
+                .onErrorResume(e -> Flux.fromIterable(accepted)
+                        .map(record -> failed(record.getT1(), e.getMessage())));
+    }
+
+    private static ImportResult failed(long index, String error) {
+        return ImportResult.newBuilder()
+                .setIndex(index)
+                .setImported(false)
+                .setError(String.valueOf(error))
+                .build();
+    }
+
+    // reads join a caller's transaction if there is one; otherwise they run without one, so the
+    // repository can route them to a replica (see ReadRouting)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Flux<GlobalUser> streamGlobalUsers(StreamUsersRequest request) {
+        int pageSize = request.getPageSize() > 0
+                ? Math.min(request.getPageSize(), MAX_STREAM_PAGE_SIZE)
+                : DEFAULT_STREAM_PAGE_SIZE;
+        return userJdbcRepository.streamUsers(request.getAfterId(), pageSize);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Mono<UserList> getGlobalUserById(String id) {
-        return userJdbcRepository.getGlobalUserById(id);
+        return userCache.getById(id);
+    }
+
+    // masked reads are cheap projections and go straight to the repository; full reads use the cache
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Mono<UserList> getGlobalUser(UserIdRequest request) {
+        return Mono.fromCallable(() -> UserProjection.of(request.getReadMask()))
+                .flatMap(projection -> projection.isAll()
+                        ? getGlobalUserById(request.getId())
+                        : userJdbcRepository.getGlobalUserById(request.getId(), projection))
+                .filter(users -> users.getGlobaluserCount() > 0)
+                .switchIfEmpty(Mono.error(() -> new UserNotFoundException("User not found: " + request.getId())));
+    }
+
+    // ------------------- ENCODED READS -------------------
+    // full-user responses are assembled from cached bytes; only users whose row version
+    // changed since they were last encoded are read and encoded again
+
+    private static final int ENCODE_FETCH_BATCH = 1000;
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Mono<EncodedUserList> getAllGlobalUsersEncoded(ListUsersRequest request) {
+        return Mono.fromCallable(() -> UserProjection.of(request.getReadMask()))
+                .flatMap(projection -> projection.isAll()
+                        ? allUsersEncoded()
+                        : userJdbcRepository.getAllUsers(projection).map(this::encode));
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Mono<EncodedUserList> getGlobalUserEncoded(UserIdRequest request) {
+        return getGlobalUser(request).map(this::encode);
+    }
+
+    private Mono<EncodedUserList> allUsersEncoded() {
+        return userJdbcRepository.getUserVersions()
+                .flatMap(versions -> {
+                    ByteString[] encoded = new ByteString[versions.size()];
+                    List<String> stale = new ArrayList<>();
+                    for (int i = 0; i < versions.size(); i++) {
+                        encoded[i] = encodedUserCache.get(versions.get(i));
+                        if (encoded[i] == null) stale.add(versions.get(i).id());
+                    }
+                    return Flux.fromIterable(stale)
+                            .buffer(ENCODE_FETCH_BATCH)
+                            .concatMap(userJdbcRepository::getVersionedUsersByIds)
+                            .collect(HashMap<String, ByteString>::new, (fresh, users) -> users.forEach(
+                                    (version, user) -> fresh.put(version.id(), encodedUserCache.put(version, user))))
+                            .map(fresh -> {
+                                EncodedUserList.Builder list = EncodedUserList.newBuilder();
+                                for (int i = 0; i < encoded.length; i++) {
+                                    ByteString bytes = encoded[i] != null ? encoded[i] : fresh.get(versions.get(i).id());
+                                    // absent when the user was deleted between the two reads
+                                    if (bytes != null) list.addGlobaluser(bytes);
+                                }
+                                return list.build();
+                            });
+                });
+    }
+
+    private EncodedUserList encode(UserList users) {
+        EncodedUserList.Builder list = EncodedUserList.newBuilder();
+        users.getGlobaluserList().forEach(user -> list.addGlobaluser(encodedUserCache.encode(user)));
+        return list.build();
+    }
+
+
+    // served from memory; SUPPORTS keeps the class-level transaction from taking a connection
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Mono<SearchUsersResponse> searchGlobalUsers(SearchUsersRequest request) {
+        return Mono.fromCallable(() -> {
+            if (request.getQuery().isBlank()) {
+                throw new InvalidRequestException("Search query must not be empty");
+            }
+            int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), MAX_SEARCH_LIMIT) : DEFAULT_SEARCH_LIMIT;
+            return SearchUsersResponse.newBuilder()
+                    .addAllMatches(userSearchIndex.search(request.getQuery(), limit))
+                    .build();
+        });
     }
 
 
-    @Transactional
     public Mono<UserList> updateGlobalUser(UpdateUserRequest user){
-        return userJdbcRepository.udateUserWithRolesAndAddress(user)
-                .then(
-                        userJdbcRepository.getGlobalUserById(user.getId()));
+        return withStoredPicture(user)
+                .flatMap(userJdbcRepository::udateUserWithRolesAndAddress)
+                .flatMap(changed -> {
+                    if (!changed) {
+                        return getGlobalUserById(user.getId());
+                    }
+                    userCache.invalidateUser(user.getId());
+                    return userJdbcRepository.getGlobalUserById(user.getId())
+                            .doOnNext(updated -> {
+                                userCache.putById(user.getId(), updated);
+                                updated.getGlobaluserList().forEach(userSearchIndex::put);
+                            })
+                            .flatMap(updated -> publish(UserEvent.Type.UPDATED, updated).thenReturn(updated));
+                });
     }
 
-    @Transactional
     public Mono<Void> deleteGlobalUser(String id) {
-        return userJdbcRepository.deleteAddressesByUser(id)
-                .then(userJdbcRepository.deleteRolesByUser(id)
-                        .then(userJdbcRepository.deleteUser(id)));
+        return userJdbcRepository.deleteUser(id)
+                .then(Mono.fromRunnable(() -> {
+                    userCache.invalidateUser(id);
+                    userSearchIndex.remove(id);
+                }))
+                .then(userEventChannel.publish(UserEvent.Type.DELETED, id, null));
+    }
+
+    // ------------------- CHANGE EVENTS -------------------
+    // an endless stream, so it must not hold a transaction (or its connection) open
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Flux<UserEvent> watchGlobalUsers(WatchUsersRequest request) {
+        return watchFrom(request.getAfterSequence());
+    }
+
+    private Flux<UserEvent> watchFrom(long position) {
+        return Flux.defer(() -> userEventLog.canResumeFrom(position)
+                ? userEventLog.eventsAfter(position)
+                        .onErrorResume(UserEventLog.FellBehindException.class, e -> snapshot())
+                : snapshot());
+    }
+
+    // every user as of the current position, read from the primary, then the events after it
+    private Flux<UserEvent> snapshot() {
+        return Flux.defer(() -> {
+            long position = userEventLog.lastSequence();
+            return userJdbcRepository.streamUsers("", DEFAULT_STREAM_PAGE_SIZE, false)
+                    .map(user -> UserEvent.newBuilder()
+                            .setSequence(position)
+                            .setType(UserEvent.Type.SNAPSHOT)
+                            .setUserId(user.getId())
+                            .setUser(user)
+                            .build())
+                    .concatWith(Mono.fromSupplier(() -> UserEvent.newBuilder()
+                            .setSequence(position)
+                            .setType(UserEvent.Type.SNAPSHOT_COMPLETE)
+                            .build()))
+                    .concatWith(watchFrom(position));
+        });
+    }
+
+    private Mono<Void> publish(UserEvent.Type type, UserList users) {
+        return Flux.fromIterable(users.getGlobaluserList())
+                .concatMap(user -> userEventChannel.publish(type, user.getId(), user))
+                .then();
+    }
+
+    // ------------------- PROFILE PICTURES -------------------
+    public Mono<PictureRef> uploadProfilePicture(Flux<UploadPictureRequest> upload) {
+        return upload.switchOnFirst((first, chunks) -> {
+                    String userId = first.hasValue() ? first.get().getUserId() : "";
+                    return profilePictureStore.write(chunks.map(UploadPictureRequest::getData))
+                            .flatMap(stored -> attachPicture(userId, stored.hash())
+                                    .thenReturn(PictureRef.newBuilder()
+                                            .setUserId(userId)
+                                            .setHash(stored.hash())
+                                            .setSize(stored.size())
+                                            .build()));
+                })
+                .single();
+    }
+
+    private Mono<Void> attachPicture(String userId, String hash) {
+        if (userId.isEmpty()) return Mono.empty();
+        return userJdbcRepository.updatePictureHash(userId, hash)
+                .then(Mono.fromRunnable(() -> userCache.invalidateUser(userId)))
+                .then(Mono.defer(() -> userJdbcRepository.getGlobalUserById(userId)))
+                .flatMap(updated -> publish(UserEvent.Type.UPDATED, updated));
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Flux<PictureChunk> downloadProfilePicture(DownloadPictureRequest request) {
+        Mono<String> hash = request.getHash().isEmpty()
+                ? userJdbcRepository.findPictureHash(request.getUserId())
+                : Mono.just(request.getHash());
+        return hash
+                .filterWhen(profilePictureStore::exists)
+                .switchIfEmpty(Mono.error(new UserNotFoundException("Profile picture not found")))
+                .flatMapMany(profilePictureStore::read)
+                .map(data -> PictureChunk.newBuilder().setData(data).build());
     }
 
+    private Mono<CreateUserRequest> withStoredPicture(CreateUserRequest user) {
+        return storePicture(user.getProfilePicture(), user.getProfilePictureHash())
+                .map(hash -> user.toBuilder().clearProfilePicture().setProfilePictureHash(hash).build())
+                .defaultIfEmpty(user);
+    }
+
+    private Mono<UpdateUserRequest> withStoredPicture(UpdateUserRequest user) {
+        return storePicture(user.getProfilePicture(), user.getProfilePictureHash())
+                .map(hash -> user.toBuilder().clearProfilePicture().setProfilePictureHash(hash).build())
+                .defaultIfEmpty(user);
+    }
+
+    // inline bytes are moved to the store; a referenced hash must already be stored
+    private Mono<String> storePicture(ByteString inline, String hash) {
+        if (!inline.isEmpty()) {
+            return profilePictureStore.write(inline).map(ProfilePictureStore.StoredPicture::hash);
+        }
+        if (hash.isEmpty()) return Mono.empty();
+        return profilePictureStore.exists(hash)
+                .flatMap(exists -> exists
+                        ? Mono.just(hash)
+                        : Mono.error(new InvalidRequestException("Unknown profile picture " + hash)));
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Mono<TokenUsernameResponse> getUserDetail(TokenUsernameRequest tokenUsername) {
-        return userJdbcRepository.getUserByUsername(tokenUsername.getUsername());
+        return userCache.getByUsername(tokenUsername.getUsername())
+                .switchIfEmpty(Mono.error(() -> new UserNotFoundException("User not found: " + tokenUsername.getUsername())));
     }
 
-    @Transactional
+    // a single statement; no transaction, so no connection is held while the hash is queued.
+    // the event makes every other instance drop its cached credentials
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Mono<Void> UpdatePassword(UpdatePasswordRequest request){
-        return userJdbcRepository.updatePassword(request.getUsername(),request.getNewPassword());
+        return passwordHasher.hash(request.getNewPassword())
+                .flatMap(hash -> userJdbcRepository.updatePassword(request.getUsername(), hash))
+                .then(Mono.fromRunnable(() -> userCache.invalidateUsername(request.getUsername())))
+                .then(Mono.defer(() -> userJdbcRepository.getUsersByUsernames(List.of(request.getUsername()))))
+                .flatMap(users -> Mono.justOrEmpty(users.get(request.getUsername())))
+                .flatMap(user -> userJdbcRepository.getGlobalUserById(user.getId(), UserProjection.ALL, false))
+                .flatMap(updated -> publish(UserEvent.Type.UPDATED, updated));
+    }
+
+    // ------------------- Credentials -------------------
+
+    private static final VerifyCredentialsResponse INVALID_CREDENTIALS =
+            VerifyCredentialsResponse.newBuilder().setValid(false).build();
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Mono<VerifyCredentialsResponse> verifyCredentials(VerifyCredentialsRequest request) {
+        if (request.getUsername().isEmpty()) {
+            return Mono.error(new InvalidRequestException("username is required"));
+        }
+        return userCache.getByUsername(request.getUsername())
+                .flatMap(user -> passwordHasher.verify(request.getPassword(), user.getPassword())
+                        .flatMap(result -> {
+                            if (!result.matches()) return Mono.just(INVALID_CREDENTIALS);
+                            Mono<Void> upgrade = result.needsUpgrade()
+                                    ? rehash(user, result.upgradedHash())
+                                    : Mono.empty();
+                            return upgrade.thenReturn(verified(user));
+                        }))
+                .switchIfEmpty(Mono.defer(() -> passwordHasher.verifyUnknown(request.getPassword())
+                        .thenReturn(INVALID_CREDENTIALS)));
+    }
+
+    // best effort: the login already succeeded, a failed upgrade is retried on the next one
+    private Mono<Void> rehash(TokenUsernameResponse user, String newHash) {
+        return userJdbcRepository.rehashPassword(user.getUsername(), user.getPassword(), newHash)
+                .doOnNext(updated -> userCache.invalidateUsername(user.getUsername()))
+                .onErrorResume(e -> {
+                    log.warn("Password rehash failed for {}", user.getId(), e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static VerifyCredentialsResponse verified(TokenUsernameResponse user) {
+        return VerifyCredentialsResponse.newBuilder()
+                .setValid(true)
+                .setId(user.getId())
+                .setUsername(user.getUsername())
+                .addAllGlobaluserrole(user.getGlobaluserroleList())
+                .setActive(user.getActive())
+                .setAccountNonExpired(user.getAccountNonExpired())
+                .setAccountNonLocked(user.getAccountNonLocked())
+                .setCredentialsNonExpired(user.getCredentialsNonExpired())
+                .build();
+    }
+
+    private Mono<CreateUserRequest> hashPassword(CreateUserRequest user) {
+        return passwordHasher.hash(user.getPassword())
+                .map(hash -> user.toBuilder().setPassword(hash).build());
     }
 }
@@ -0,0 +1,161 @@
+package com.eagle.user.storage;
+
+import com.eagle.user.exception.InvalidRequestException;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store for profile pictures on the local filesystem. Files are named by
+ * their SHA-256, so identical pictures are stored once. Uploads are streamed to a temp file
+ * while hashing and moved into place atomically; downloads are served as slices of a
+ * memory-mapped file wrapped without copying.
+ */
+@Component
+public class ProfilePictureStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final Path incoming;
+    private final long maxSize;
+    private final int chunkSize;
+
+    public ProfilePictureStore(@Value("${eagle.user.pictures.root:data/profile-pictures}") Path root,
+                               @Value("${eagle.user.pictures.max-size:5MB}") DataSize maxSize,
+                               @Value("${eagle.user.pictures.chunk-size:64KB}") DataSize chunkSize) throws IOException {
+        this.root = root;
+        this.incoming = Files.createDirectories(root.resolve("incoming"));
+        this.maxSize = maxSize.toBytes();
+        this.chunkSize = (int) chunkSize.toBytes();
+    }
+
+    public record StoredPicture(String hash, long size) {}
+
+    // ------------------- WRITE -------------------
+    public Mono<StoredPicture> write(Flux<ByteString> chunks) {
+        return Mono.usingWhen(
+                Mono.fromCallable(PendingWrite::new).subscribeOn(Schedulers.boundedElastic()),
+                pending -> chunks
+                        .publishOn(Schedulers.boundedElastic())
+                        .doOnNext(pending::append)
+                        .then(Mono.fromCallable(pending::commit)),
+                pending -> Mono.fromRunnable(pending::discard),
+                (pending, error) -> Mono.fromRunnable(pending::discard),
+                pending -> Mono.fromRunnable(pending::discard));
+    }
+
+    public Mono<StoredPicture> write(ByteString picture) {
+        return write(Flux.just(picture));
+    }
+
+    // ------------------- READ -------------------
+    public Flux<ByteString> read(String hash) {
+        return Mono.fromCallable(() -> map(hash))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(buffer -> Flux.range(0, (buffer.capacity() + chunkSize - 1) / chunkSize)
+                        .map(i -> {
+                            int offset = i * chunkSize;
+                            int length = Math.min(chunkSize, buffer.capacity() - offset);
+                            return UnsafeByteOperations.unsafeWrap(buffer.slice(offset, length));
+                        }));
+    }
+
+    public Mono<Boolean> exists(String hash) {
+        return Mono.fromCallable(() -> Files.exists(pathOf(hash)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private MappedByteBuffer map(String hash) throws IOException {
+        try (FileChannel channel = FileChannel.open(pathOf(hash), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private Path pathOf(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new InvalidRequestException("Invalid picture hash");
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private final class PendingWrite {
+
+        private final Path temp;
+        private final FileChannel channel;
+        private final MessageDigest digest;
+        private long size;
+
+        PendingWrite() throws IOException {
+            this.temp = Files.createTempFile(incoming, "upload-", ".part");
+            this.channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void append(ByteString chunk) {
+            size += chunk.size();
+            if (size > maxSize) {
+                throw new InvalidRequestException("Profile picture exceeds " + maxSize + " bytes");
+            }
+            try {
+                for (ByteBuffer buffer : chunk.asReadOnlyByteBufferList()) {
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        StoredPicture commit() throws IOException {
+            channel.close();
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(hash);
+            Files.createDirectories(target.getParent());
+            if (!Files.exists(target)) {
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException ignored) {
+                    // stored concurrently by another upload of the same content
+                }
+            }
+            return new StoredPicture(hash, size);
+        }
+
+        void discard() {
+            try {
+                channel.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.eagle.user.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * DataLoader-style lookups: a key already being loaded shares the pending result, and distinct
+ * keys requested within {@code window} of each other are fetched with one call to the batch
+ * function, dispatched early once {@code maxBatchSize} keys are waiting. Keys missing from the
+ * batch result complete empty. A batch runs in the Reactor context of the caller that opened it,
+ * so tracing and other context-bound state follow the first of the callers it serves.
+ * <p>
+ * After a write, {@link #forget} keeps later lookups of a key from joining a load that may have
+ * read it before the write; that load still completes for the callers already waiting on it.
+ * {@code user.loader.requests} counts lookups and {@code user.loader.queries} batch calls, both
+ * tagged by loader; their difference is the number of queries saved.
+ */
+public class BatchLoader<K, V> {
+
+    private final Function<Set<K>, Mono<Map<K, V>>> batchFunction;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter requests;
+    private final Counter coalesced;
+    private final Counter queries;
+    private final DistributionSummary batchSize;
+
+    // guarded by this; a key forgotten while pending can be queued again with a second future
+    private List<Map.Entry<K, CompletableFuture<V>>> pending = new ArrayList<>();
+    private ContextView pendingContext;
+
+    public BatchLoader(String name, Function<Set<K>, Mono<Map<K, V>>> batchFunction, Duration window,
+                       int maxBatchSize, MeterRegistry meterRegistry) {
+        this.batchFunction = batchFunction;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.requests = meterRegistry.counter("user.loader.requests", "loader", name);
+        this.coalesced = meterRegistry.counter("user.loader.coalesced", "loader", name);
+        this.queries = meterRegistry.counter("user.loader.queries", "loader", name);
+        this.batchSize = DistributionSummary.builder("user.loader.batch.size")
+                .tag("loader", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<V> load(K key) {
+        // the future is shared between callers, so one caller cancelling must not cancel the load
+        return Mono.deferContextual(context -> Mono.fromFuture(enqueue(key, context), true));
+    }
+
+    /** Later lookups of {@code key} start a new load rather than joining one already in flight. */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    /** {@link #forget} for every key, when the keys a write affects are not known. */
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    private CompletableFuture<V> enqueue(K key, ContextView context) {
+        requests.increment();
+
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        List<Map.Entry<K, CompletableFuture<V>>> full = null;
+        ContextView fullContext = null;
+        boolean first;
+        synchronized (this) {
+            pending.add(Map.entry(key, created));
+            first = pending.size() == 1;
+            if (first) pendingContext = context;
+            if (pending.size() >= maxBatchSize) {
+                full = pending;
+                fullContext = pendingContext;
+                pending = new ArrayList<>();
+                pendingContext = null;
+            }
+        }
+
+        if (full != null) {
+            dispatch(full, fullContext);
+        } else if (first) {
+            if (windowNanos <= 0) {
+                dispatchPending();
+            } else {
+                scheduler.schedule(this::dispatchPending, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        return created;
+    }
+
+    private void dispatchPending() {
+        List<Map.Entry<K, CompletableFuture<V>>> batch;
+        ContextView context;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            batch = pending;
+            context = pendingContext;
+            pending = new ArrayList<>();
+            pendingContext = null;
+        }
+        dispatch(batch, context);
+    }
+
+    private void dispatch(List<Map.Entry<K, CompletableFuture<V>>> batch, ContextView context) {
+        Set<K> keys = new LinkedHashSet<>();
+        batch.forEach(waiting -> keys.add(waiting.getKey()));
+        queries.increment();
+        batchSize.record(keys.size());
+
+        batchFunction.apply(keys)
+                .defaultIfEmpty(Map.of())
+                .contextWrite(context)
+                .subscribe(
+                        found -> batch.forEach(waiting -> complete(waiting, found.get(waiting.getKey()), null)),
+                        error -> batch.forEach(waiting -> complete(waiting, null, error)));
+    }
+
+    private void complete(Map.Entry<K, CompletableFuture<V>> waiting, V value, Throwable error) {
+        CompletableFuture<V> future = waiting.getValue();
+        // only if it was not forgotten and replaced by a newer load meanwhile
+        inFlight.remove(waiting.getKey(), future);
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(value);
+        }
+    }
+}
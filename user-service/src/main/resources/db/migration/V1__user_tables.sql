@@ -0,0 +1,37 @@
+-- The tables user-service reads and writes. Databases set up before these scripts already
+-- have them; they are baselined at version 0, so only what is missing is created.
+CREATE SCHEMA IF NOT EXISTS feedbackapp;
+
+CREATE TABLE IF NOT EXISTS feedbackapp.global_user (
+    id                      VARCHAR(32) PRIMARY KEY,
+    username                VARCHAR(100) NOT NULL,
+    fullname                VARCHAR(200),
+    dob                     VARCHAR(20),
+    email                   VARCHAR(200),
+    password                VARCHAR(200),
+    mobile                  BIGINT,
+    is_active               BOOLEAN NOT NULL DEFAULT TRUE,
+    account_non_expired     BOOLEAN NOT NULL DEFAULT TRUE,
+    account_non_locked      BOOLEAN NOT NULL DEFAULT TRUE,
+    credential_non_expired  BOOLEAN NOT NULL DEFAULT TRUE,
+    profile_pic             BYTEA,
+    created_date            TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS feedbackapp.global_user_role (
+    id        BIGSERIAL PRIMARY KEY,
+    user_id   VARCHAR(32) NOT NULL REFERENCES feedbackapp.global_user(id) ON DELETE CASCADE,
+    rolename  VARCHAR(100) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS feedbackapp.global_user_address (
+    user_id     VARCHAR(32) NOT NULL REFERENCES feedbackapp.global_user(id) ON DELETE CASCADE,
+    addr_key    VARCHAR(100) NOT NULL,
+    addr_value  VARCHAR(500),
+    PRIMARY KEY (user_id, addr_key)
+);
+
+CREATE TABLE IF NOT EXISTS feedbackapp.id_sequence (
+    prefix      VARCHAR(10) PRIMARY KEY,
+    last_value  BIGINT NOT NULL
+);
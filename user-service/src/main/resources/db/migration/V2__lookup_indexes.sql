@@ -0,0 +1,11 @@
+-- Lookups by username (login, password changes), by email or mobile (duplicate checks) and
+-- by user_id (roles loaded with every user, deletes cascading from global_user). The names are
+-- the ones Postgres gives inline UNIQUE constraints, so databases that have them are left as is.
+CREATE UNIQUE INDEX IF NOT EXISTS global_user_username_key ON feedbackapp.global_user(username);
+CREATE UNIQUE INDEX IF NOT EXISTS global_user_email_key ON feedbackapp.global_user(email);
+CREATE UNIQUE INDEX IF NOT EXISTS global_user_mobile_key ON feedbackapp.global_user(mobile);
+
+CREATE INDEX IF NOT EXISTS global_user_role_user_id ON feedbackapp.global_user_role(user_id);
+
+-- pictures moved out of the row to content-addressed files; see ProfilePictureStore
+ALTER TABLE feedbackapp.global_user ADD COLUMN IF NOT EXISTS profile_pic_hash CHAR(64);
@@ -0,0 +1,9 @@
+-- Which shard owns each hash bucket of user ids. Only read from the primary, and only with
+-- eagle.user.sharding.shards configured; see ShardCatalog.
+CREATE TABLE IF NOT EXISTS feedbackapp.user_shard_bucket (
+    bucket      INT PRIMARY KEY,
+    shard       VARCHAR(64) NOT NULL,
+    moving_to   VARCHAR(64),
+    frozen      BOOLEAN NOT NULL DEFAULT FALSE,
+    drain_from  VARCHAR(64)
+);
@@ -0,0 +1,7 @@
+-- The hash ShardRouting places users by (first 32 bits of the id's MD5, unsigned). Buckets are
+-- ranges of it, so moving a bucket between shards reads its users through this index.
+CREATE OR REPLACE FUNCTION feedbackapp.user_id_hash(id text) RETURNS bigint
+    LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE
+    AS $$ SELECT ('x' || substr(md5(id), 1, 8))::bit(32)::bigint $$;
+
+CREATE INDEX IF NOT EXISTS global_user_id_hash ON feedbackapp.global_user (feedbackapp.user_id_hash(id));
@@ -0,0 +1,78 @@
+package com.eagle.user.cache;
+
+import com.eagle.user.repository.UserJdbcRepository;
+import com.eagle.user.repository.UserJdbcRepository.UserContact;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContactPreFilterTest {
+
+    private Sinks.Many<UserContact> table;
+    private ContactPreFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        table = Sinks.many().unicast().onBackpressureBuffer();
+        filter = new ContactPreFilter(new StreamingRepository(), new SimpleMeterRegistry(),
+                10_000, 0.01, Duration.ofHours(6));
+    }
+
+    @Test
+    void everythingMightBeRegisteredBeforeTheFirstLoad() {
+        assertTrue(filter.mightBeRegistered("nobody@example.com", 9_999_999_999L));
+    }
+
+    @Test
+    void scannedContactsAndAddsDuringAndAfterARebuildAreKept() {
+        filter.rebuild().subscribe();
+        table.tryEmitNext(new UserContact("scanned@example.com", 9_000_000_001L));
+        filter.add("during@example.com", 9_000_000_002L);
+        table.tryEmitComplete();
+        filter.add("after@example.com", 9_000_000_003L);
+
+        assertTrue(filter.mightBeRegistered("scanned@example.com", 0));
+        assertTrue(filter.mightBeRegistered("during@example.com", 0));
+        assertTrue(filter.mightBeRegistered("after@example.com", 0));
+        assertTrue(filter.mightBeRegistered("", 9_000_000_002L));
+        assertFalse(filter.mightBeRegistered("nobody@example.com", 9_999_999_999L));
+    }
+
+    @Test
+    void noConcurrentAddIsLostAcrossTheSwap() throws InterruptedException {
+        int contacts = 20_000;
+        filter.rebuild().subscribe();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < contacts; i++) {
+                filter.add("user" + i + "@example.com", 9_000_000_000L + i);
+            }
+        });
+        writer.start();
+        table.tryEmitComplete();
+        writer.join();
+
+        for (int i = 0; i < contacts; i++) {
+            assertTrue(filter.mightBeRegistered("user" + i + "@example.com", 0), "lost add " + i);
+        }
+    }
+
+    /** A repository whose contact scan is whatever the test emits into {@link #table}. */
+    private class StreamingRepository extends UserJdbcRepository {
+
+        StreamingRepository() {
+            super(null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public Flux<UserContact> streamContacts() {
+            return table.asFlux();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.eagle.user.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SchemaMigrationsTest {
+
+    @Test
+    void plainUrlKeepsHostPortAndDatabase() {
+        assertEquals("jdbc:postgresql://db.internal:5400/feedback",
+                SchemaMigrations.jdbcUrl("r2dbc:postgresql://db.internal:5400/feedback"));
+    }
+
+    @Test
+    void sslOptionsAreRenamed() {
+        assertEquals("jdbc:postgresql://db/feedback?ssl=true&sslmode=verify-full&sslrootcert=%2Fetc%2Fca.pem",
+                SchemaMigrations.jdbcUrl("r2dbcs:postgresql://db/feedback?sslMode=VERIFY_FULL&sslRootCert=/etc/ca.pem"));
+    }
+
+    @Test
+    void schemaAndApplicationNameAreCarriedOver() {
+        assertEquals("jdbc:postgresql://db/feedback?currentSchema=feedbackapp&ApplicationName=user-service",
+                SchemaMigrations.jdbcUrl("r2dbc:postgresql://db/feedback?schema=feedbackapp&applicationName=user-service"));
+    }
+
+    @Test
+    void timeoutsBecomeJdbcPropertiesOrServerSettings() {
+        assertEquals("jdbc:postgresql://db/feedback?connectTimeout=10"
+                        + "&options=-c+statement_timeout%3D5000+-c+lock_timeout%3D2000+-c+search_path%3Dfeedbackapp",
+                SchemaMigrations.jdbcUrl("r2dbc:postgresql://db/feedback?connectTimeout=PT10S&statementTimeout=5s"
+                        + "&lockWaitTimeout=2000ms&options=search_path%3Dfeedbackapp"));
+    }
+
+    @Test
+    void unknownOptionsPassThrough() {
+        assertEquals("jdbc:postgresql://db/feedback?tcpKeepAlive=true",
+                SchemaMigrations.jdbcUrl("r2dbc:postgresql://db/feedback?tcpKeepAlive=true"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.eagle.user.events;
+
+import com.eagle.user.UserEvent;
+import com.eagle.user.events.UserEventLog.FellBehindException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserEventLogTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final UserEventLog log = new UserEventLog(new SimpleMeterRegistry(), 4);
+
+    private void append(String... userIds) {
+        for (String userId : userIds) {
+            log.append(UserEvent.Type.UPDATED, userId, null);
+        }
+    }
+
+    private List<String> userIdsAfter(long position, int count) {
+        return log.eventsAfter(position).take(count).map(UserEvent::getUserId).collectList().block(TIMEOUT);
+    }
+
+    @Test
+    void heldEventsAreReplayedThenNewOnesFollow() {
+        long start = log.lastSequence();
+        append("a", "b");
+
+        Mono<List<UserEvent>> events = log.eventsAfter(start).take(3).collectList().cache();
+        events.subscribe();
+        append("c");
+
+        List<UserEvent> received = events.block(TIMEOUT);
+        assertEquals(List.of("a", "b", "c"), received.stream().map(UserEvent::getUserId).toList());
+        assertEquals(List.of(start + 1, start + 2, start + 3),
+                received.stream().map(UserEvent::getSequence).toList());
+    }
+
+    @Test
+    void theRingKeepsTheLastCapacityEventsAcrossWrapAround() {
+        long start = log.lastSequence();
+        append("a", "b", "c", "d", "e", "f");
+
+        assertTrue(log.canResumeFrom(start + 2));
+        assertEquals(List.of("c", "d", "e", "f"), userIdsAfter(start + 2, 4));
+    }
+
+    @Test
+    void aReaderOlderThanTheRingFellBehind() {
+        long start = log.lastSequence();
+        append("a", "b", "c", "d", "e");
+
+        assertFalse(log.canResumeFrom(start));
+        assertThrows(FellBehindException.class, () -> log.eventsAfter(start).blockFirst(TIMEOUT));
+    }
+
+    @Test
+    void aPositionFromAnotherEpochIsRefused() {
+        long before = log.lastSequence();
+        append("a");
+        log.restart();
+        append("b");
+
+        assertFalse(log.canResumeFrom(before));
+        assertFalse(log.canResumeFrom(before + 1));
+        assertThrows(FellBehindException.class, () -> log.eventsAfter(before + 1).blockFirst(TIMEOUT));
+        assertTrue(log.canResumeFrom(log.lastSequence() - 1));
+        assertEquals(List.of("b"), userIdsAfter(log.lastSequence() - 1, 1));
+    }
+
+    @Test
+    void aRestartFailsLiveSubscribers() {
+        Mono<UserEvent> live = log.eventsAfter(log.lastSequence()).next().cache();
+        live.subscribe(event -> {}, error -> {});
+        log.restart();
+
+        assertThrows(FellBehindException.class, () -> live.block(TIMEOUT));
+    }
+}
@@ -0,0 +1,72 @@
+package com.eagle.user.grpc.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    // 10 per second: one token every 100 ms, at most 3 at once
+    private final TokenBucket bucket = new TokenBucket(10, 3, now::get);
+
+    @Test
+    void acceptsABurstThenRejects() {
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        drain();
+
+        advance(50);
+        assertFalse(bucket.tryAcquire());
+
+        advance(50);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        advance(200);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void idleTimeBanksNoMoreThanTheBurst() {
+        drain();
+
+        advance(10_000);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void refundHandsBackOneToken() {
+        drain();
+
+        bucket.refund();
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    private void drain() {
+        while (bucket.tryAcquire()) {
+            // take every banked token
+        }
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,125 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.datasource.ShardProperties;
+import com.eagle.user.datasource.ShardProperties.Rebalance;
+import com.eagle.user.datasource.ShardProperties.Shard;
+import com.eagle.user.datasource.ShardRouting;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdBlockAllocatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final InMemorySequences sequences = new InMemorySequences();
+
+    private IdBlockAllocator allocator(List<Shard> shards, long idRange, int blockSize, int refillThreshold) {
+        ShardProperties properties = new ShardProperties(shards, 1024, Duration.ofSeconds(5), idRange,
+                new Rebalance(false, Duration.ofSeconds(30), Duration.ofSeconds(5), 8, 500));
+        return new IdBlockAllocator(sequences, new ShardRouting(properties, new SimpleMeterRegistry()),
+                properties, blockSize, refillThreshold);
+    }
+
+    private IdBlockAllocator allocator(int blockSize, int refillThreshold) {
+        return allocator(List.of(), 1_000_000, blockSize, refillThreshold);
+    }
+
+    private static List<Long> take(IdBlockAllocator allocator, int count) {
+        return Flux.range(0, count).concatMap(i -> allocator.next("EGL")).collectList().block(TIMEOUT);
+    }
+
+    @Test
+    void valuesRunOnFromOneBlockIntoTheNext() {
+        IdBlockAllocator allocator = allocator(10, 3);
+
+        assertEquals(LongStream.rangeClosed(1, 25).boxed().toList(), take(allocator, 25));
+        // the first block, then one prefetched as each block ran low
+        assertEquals(3, sequences.reservations.get());
+    }
+
+    @Test
+    void callersWaitingOnAnEmptyPoolShareOneReservation() {
+        IdBlockAllocator allocator = allocator(10, 3);
+        Sinks.Empty<Void> gate = Sinks.empty();
+        sequences.gate = gate.asMono();
+
+        Mono<List<Long>> values = Flux.merge(Flux.range(0, 5).map(i -> allocator.next("EGL")))
+                .collectList()
+                .cache();
+        values.subscribe();
+        gate.tryEmitEmpty();
+
+        assertEquals(new HashSet<>(List.of(1L, 2L, 3L, 4L, 5L)), new HashSet<>(values.block(TIMEOUT)));
+        assertEquals(1, sequences.reservations.get());
+    }
+
+    @Test
+    void aFailedReservationIsRetriedByTheNextCaller() {
+        IdBlockAllocator allocator = allocator(10, 3);
+        sequences.failures.set(1);
+
+        assertThrows(IllegalStateException.class, () -> allocator.next("EGL").block(TIMEOUT));
+        assertEquals(1L, allocator.next("EGL").block(TIMEOUT));
+    }
+
+    @Test
+    void reservationsRotateOverTheShardsWithinTheirIdRanges() {
+        IdBlockAllocator allocator = allocator(
+                List.of(new Shard("east", "r2dbc:postgresql://east/feedback", "user", "", 10)), 1000, 10, 3);
+
+        assertEquals(List.of(1L, 1001L, 2L, 1002L), take(allocator, 4));
+        assertEquals(2, sequences.reservations.get());
+    }
+
+    @Test
+    void aShardWhoseIdRangeIsUsedUpFails() {
+        IdBlockAllocator allocator = allocator(List.of(), 15, 10, 3);
+
+        assertEquals(LongStream.rangeClosed(1, 10).boxed().toList(), take(allocator, 10));
+        assertThrows(IllegalStateException.class, () -> allocator.next("EGL").block(TIMEOUT));
+    }
+
+    @Test
+    void aRangeIsADedicatedBlock() {
+        IdBlockAllocator allocator = allocator(10, 3);
+
+        assertEquals(1L, allocator.nextRange("EGL", 50).block(TIMEOUT));
+        assertEquals(51L, allocator.next("EGL").block(TIMEOUT));
+    }
+
+    /** {@code feedbackapp.id_sequence} of every shard in memory, with an optional gate and failures. */
+    private static class InMemorySequences extends IdSequenceRepository {
+
+        final Map<String, Long> lastValues = new ConcurrentHashMap<>();
+        final AtomicInteger reservations = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        volatile Mono<Void> gate = Mono.empty();
+
+        InMemorySequences() {
+            super(null, null, null);
+        }
+
+        @Override
+        public Mono<Long> reserveBlock(String shard, long floor, String prefix, int size) {
+            return gate.then(Mono.defer(() -> {
+                if (failures.getAndDecrement() > 0) return Mono.error(new IllegalStateException("shard down"));
+                reservations.incrementAndGet();
+                return Mono.just(lastValues.merge(shard + "/" + prefix, floor + size, (last, ignored) -> last + size));
+            }));
+        }
+    }
+}
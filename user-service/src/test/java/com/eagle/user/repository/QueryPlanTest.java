@@ -0,0 +1,156 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.datasource.SchemaMigrations;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * The per-user statements of the repository, as the repository runs them, must not read a
+ * whole user table. Runs against an embedded Postgres migrated with the service's scripts and
+ * seeded with enough users, roles and addresses for the planner to choose as it would in
+ * production. Each statement is prepared with a generic plan, the one a driver's cached
+ * statement ends up with, so the plan cannot depend on sample values.
+ * <p>
+ * Reads of every user (getAllUsers, getUserVersions, the search and contact-filter rebuilds)
+ * scan by design and are not listed. Tagged {@code database}; run with
+ * {@code ./gradlew :user-service:databaseTest}.
+ */
+@Tag("database")
+class QueryPlanTest {
+
+    private static final int USERS = 50_000;
+
+    private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<![:\\w]):([A-Za-z]\\w*)");
+    private static final Pattern TABLE_SCAN =
+            Pattern.compile("Seq Scan on (global_user|global_user_role|global_user_address)\\b");
+
+    private static EmbeddedPostgres postgres;
+    private static Connection connection;
+
+    @BeforeAll
+    static void migrateAndSeed() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        SchemaMigrations.migrate(postgres.getJdbcUrl("postgres", "postgres"), "postgres", "");
+        connection = postgres.getPostgresDatabase().getConnection();
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    INSERT INTO feedbackapp.global_user(id, username, fullname, dob, email, password, mobile, profile_pic_hash)
+                    SELECT 'EGL' || lpad(n::text, 7, '0'), 'user' || n, 'User ' || n, '1990-01-01',
+                           'user' || n || '@example.com', md5(n::text), 9000000000 + n,
+                           CASE WHEN n % 3 = 0 THEN md5(n::text) || md5((n + 1)::text) END
+                    FROM generate_series(1, %d) AS n
+                    """.formatted(USERS));
+            statement.execute("""
+                    INSERT INTO feedbackapp.global_user_role(user_id, rolename)
+                    SELECT id, 'ROLE_USER' FROM feedbackapp.global_user
+                    UNION ALL
+                    SELECT id, 'ROLE_ADMIN' FROM feedbackapp.global_user WHERE right(id, 1) = '0'
+                    """);
+            statement.execute("""
+                    INSERT INTO feedbackapp.global_user_address(user_id, addr_key, addr_value)
+                    SELECT id, key, key || ' street ' || right(id, 5)
+                    FROM feedbackapp.global_user, unnest(ARRAY['home', 'work']) AS key
+                    """);
+            statement.execute("ANALYZE");
+            statement.execute("SET plan_cache_mode = force_generic_plan");
+        }
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (connection != null) connection.close();
+        if (postgres != null) postgres.close();
+    }
+
+    static Stream<Arguments> perUserStatements() {
+        String selectAll = UserProjection.ALL.selectList();
+        return Stream.of(
+                arguments("user.by-id", UserJdbcRepository.USER_BY_ID.formatted(selectAll)),
+                arguments("user.by-ids", UserJdbcRepository.USERS_BY_IDS),
+                arguments("user.by-ids.versioned", UserJdbcRepository.VERSIONED_USERS_BY_IDS),
+                arguments("user.page", UserJdbcRepository.USER_PAGE),
+                arguments("user.lock", UserJdbcRepository.LOCK_USER),
+                arguments("user.touch", UserJdbcRepository.TOUCH_USER),
+                arguments("user.update", UserJdbcRepository.updateColumnsSql(List.of("fullname", "profile_pic_hash"))),
+                arguments("user.delete", UserJdbcRepository.DELETE_USER),
+                arguments("user.by-usernames", UserJdbcRepository.TOKEN_USERS_BY_USERNAMES),
+                arguments("user.shard.by-username", UserJdbcRepository.ID_BY_USERNAME),
+                arguments("user.shard.unclaimed", UserJdbcRepository.ANY_CLAIMED),
+                arguments("user.contacts.exists", UserJdbcRepository.COUNT_BY_CONTACT),
+                arguments("user.contacts.find", UserJdbcRepository.CONTACTS_BY_CONTACTS),
+                arguments("user.password.update", UserJdbcRepository.UPDATE_PASSWORD),
+                arguments("user.password.rehash", UserJdbcRepository.REHASH_PASSWORD),
+                arguments("user.picture.update", UserJdbcRepository.UPDATE_PICTURE_HASH),
+                arguments("user.picture.find", UserJdbcRepository.PICTURE_HASH_BY_ID),
+                arguments("role.by-users", UserHydrator.ROLES_BY_USERS),
+                arguments("role.delete", UserJdbcRepository.DELETE_ROLES),
+                arguments("role.delete-by-user", UserJdbcRepository.DELETE_ROLES_BY_USER),
+                arguments("address.by-users", UserHydrator.ADDRESSES_BY_USERS),
+                arguments("address.delete-keys", UserJdbcRepository.DELETE_ADDRESS_KEYS),
+                arguments("address.update", UserJdbcRepository.UPDATE_ADDRESS_VALUES),
+                arguments("address.delete-by-user", UserJdbcRepository.DELETE_ADDRESSES_BY_USER),
+                arguments("shard.move.select", ShardRebalancer.SELECT_USERS),
+                arguments("shard.move.scan", ShardRebalancer.IDS_IN_HASH_RANGE),
+                arguments("shard.move.delete addresses", ShardRebalancer.DELETE_ADDRESSES),
+                arguments("shard.move.delete roles", ShardRebalancer.DELETE_ROLES),
+                arguments("shard.move.delete users", ShardRebalancer.DELETE_USERS)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("perUserStatements")
+    void usesAnIndex(String name, String sql) throws SQLException {
+        List<String> plan = genericPlan(sql);
+        assertTrue(plan.stream().noneMatch(line -> TABLE_SCAN.matcher(line).find()),
+                () -> name + " reads a whole table:\n    " + String.join("\n    ", plan));
+    }
+
+    /** The plan of {@code sql} with its {@code :name} parameters made positional and left unbound. */
+    private static List<String> genericPlan(String sql) throws SQLException {
+        Map<String, Integer> positions = new LinkedHashMap<>();
+        Matcher parameter = NAMED_PARAMETER.matcher(sql);
+        StringBuilder positional = new StringBuilder();
+        while (parameter.find()) {
+            int position = positions.computeIfAbsent(parameter.group(1), name -> positions.size() + 1);
+            parameter.appendReplacement(positional, "\\$" + position);
+        }
+        parameter.appendTail(positional);
+
+        String arguments = positions.isEmpty() ? ""
+                : "(" + String.join(", ", Collections.nCopies(positions.size(), "NULL")) + ")";
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PREPARE plan_check AS " + positional);
+            try (ResultSet rows = statement.executeQuery("EXPLAIN EXECUTE plan_check" + arguments)) {
+                List<String> plan = new ArrayList<>();
+                while (rows.next()) {
+                    plan.add(rows.getString(1));
+                }
+                return plan;
+            } finally {
+                statement.execute("DEALLOCATE plan_check");
+            }
+        }
+    }
+}
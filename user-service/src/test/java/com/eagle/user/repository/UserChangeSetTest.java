@@ -0,0 +1,132 @@
+package com.eagle.user.repository;
+
+import com.eagle.user.GlobalUserRole;
+import com.eagle.user.UpdateUserRequest;
+import com.eagle.user.exception.InvalidRequestException;
+import com.eagle.user.repository.UserChangeSet.StoredUser;
+import com.google.protobuf.FieldMask;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserChangeSetTest {
+
+    private static final StoredUser STORED = new StoredUser(
+            new UserRow("EGL0000001", "ann", "Ann Lee", "1990-01-01", "ann@example.com", 9_000_000_001L,
+                    true, true, true, true, null, "picturehash"),
+            List.of(role(1, "ROLE_USER"), role(2, "ROLE_ADMIN"), role(3, "ROLE_USER")),
+            Map.of("home", "1 Eagle Street", "work", "2 Eagle Street"));
+
+    private static GlobalUserRole role(long id, String rolename) {
+        return GlobalUserRole.newBuilder().setId(id).setRolename(rolename).build();
+    }
+
+    /** A request that restates the stored user, with the duplicate role row collapsed. */
+    private static UpdateUserRequest.Builder unchanged() {
+        return UpdateUserRequest.newBuilder()
+                .setId("EGL0000001")
+                .setFullname("Ann Lee")
+                .setDob("1990-01-01")
+                .setActive(true)
+                .setAccountNonExpired(true)
+                .setAccountNonLocked(true)
+                .setCredentialsNonExpired(true)
+                .addGlobaluserrole(role(0, "ROLE_USER"))
+                .addGlobaluserrole(role(0, "ROLE_ADMIN"))
+                .putAllAddressMap(STORED.addresses());
+    }
+
+    private static FieldMask mask(String... paths) {
+        return FieldMask.newBuilder().addAllPaths(List.of(paths)).build();
+    }
+
+    @Test
+    void restatingTheStoredUserChangesOnlyTheDuplicateRole() {
+        UserChangeSet changes = UserChangeSet.diff(STORED, unchanged().build());
+
+        assertTrue(changes.columns().isEmpty());
+        assertEquals(List.of(3L), changes.removedRoleIds());
+        assertTrue(changes.addedRoles().isEmpty());
+        assertTrue(changes.removedAddressKeys().isEmpty());
+        assertTrue(changes.changedAddresses().isEmpty());
+        assertTrue(changes.addedAddresses().isEmpty());
+    }
+
+    @Test
+    void onlyMaskedFieldsAreCompared() {
+        UpdateUserRequest request = UpdateUserRequest.newBuilder()
+                .setFullname("Ann Park")
+                .setDob("2000-12-31")
+                .setUpdateMask(mask("fullname"))
+                .build();
+
+        UserChangeSet changes = UserChangeSet.diff(STORED, request);
+
+        assertEquals(Map.of("fullname", "Ann Park"), changes.columns());
+        assertTrue(changes.removedRoleIds().isEmpty());
+        assertTrue(changes.removedAddressKeys().isEmpty());
+    }
+
+    @Test
+    void changedFlagsMapToTheirColumns() {
+        UserChangeSet changes = UserChangeSet.diff(STORED, unchanged().setActive(false).setAccountNonLocked(false).build());
+
+        assertEquals(Map.of("is_active", false, "account_non_locked", false), changes.columns());
+    }
+
+    @Test
+    void anEmptyPictureHashKeepsThePictureUnlessMasked() {
+        assertTrue(UserChangeSet.diff(STORED, unchanged().build()).columns().isEmpty());
+
+        UserChangeSet cleared = UserChangeSet.diff(STORED,
+                UpdateUserRequest.newBuilder().setUpdateMask(mask("profilePictureHash")).build());
+        assertTrue(cleared.columns().containsKey("profile_pic_hash"));
+        assertNull(cleared.columns().get("profile_pic_hash"));
+    }
+
+    @Test
+    void rolesAreDiffedByName() {
+        UpdateUserRequest request = UpdateUserRequest.newBuilder()
+                .addGlobaluserrole(role(0, "ROLE_USER"))
+                .addGlobaluserrole(role(0, "ROLE_AUDITOR"))
+                .setUpdateMask(mask("globaluserrole"))
+                .build();
+
+        UserChangeSet changes = UserChangeSet.diff(STORED, request);
+
+        assertEquals(List.of(2L, 3L), changes.removedRoleIds());
+        assertEquals(List.of("ROLE_AUDITOR"), changes.addedRoles());
+        assertTrue(changes.columns().isEmpty());
+    }
+
+    @Test
+    void addressesAreDiffedByKey() {
+        UpdateUserRequest request = UpdateUserRequest.newBuilder()
+                .putAddressMap("home", "1 Eagle Street")
+                .putAddressMap("work", "9 Hawk Road")
+                .putAddressMap("other", "3 Owl Lane")
+                .setUpdateMask(mask("addressMap"))
+                .build();
+        StoredUser stored = new StoredUser(STORED.row(), STORED.roles(),
+                Map.of("home", "1 Eagle Street", "work", "2 Eagle Street", "old", "4 Kite Close"));
+
+        UserChangeSet changes = UserChangeSet.diff(stored, request);
+
+        assertEquals(List.of("old"), changes.removedAddressKeys());
+        assertEquals(Map.of("work", "9 Hawk Road"), changes.changedAddresses());
+        assertEquals(Map.of("other", "3 Owl Lane"), changes.addedAddresses());
+    }
+
+    @Test
+    void aMaskNamingAFieldThatCannotBeUpdatedIsRejected() {
+        UpdateUserRequest request = UpdateUserRequest.newBuilder().setUpdateMask(mask("email")).build();
+
+        assertThrows(InvalidRequestException.class, () -> UserChangeSet.diff(STORED, request));
+    }
+}
@@ -0,0 +1,102 @@
+package com.eagle.user.search;
+
+import com.eagle.user.search.UserNgramIndex.Entry;
+import com.eagle.user.search.UserNgramIndex.Match;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserNgramIndexTest {
+
+    private final UserNgramIndex index = new UserNgramIndex();
+
+    private static Entry user(String id, String username, String fullname) {
+        return new Entry(id, username, fullname, username + "@example.com", 0);
+    }
+
+    private List<String> ids(String query, int limit) {
+        return index.search(query, limit).stream().map(Match::entry).map(Entry::id).toList();
+    }
+
+    @Test
+    void exactMatchesRankAbovePrefixesWordStartsAndInfixes() {
+        index.put(user("4", "jo", "Joanne Smith"));
+        index.put(user("3", "mary", "Mary Ann"));
+        index.put(user("2", "annabel", "Bel"));
+        index.put(user("1", "ann", "Zed"));
+
+        assertEquals(List.of("1", "2", "3", "4"), ids("ann", 10));
+    }
+
+    @Test
+    void equalScoresPreferTheShorterNameThenTheSmallerId() {
+        index.put(user("3", "annx", "Ann Lee"));
+        index.put(user("2", "anny", "Ann Leeds"));
+        index.put(user("1", "annz", "Ann Lee"));
+
+        assertEquals(List.of("1", "3", "2"), ids("ann", 10));
+        assertEquals(List.of("1", "3"), ids("ann", 2));
+    }
+
+    @Test
+    void everyTokenHasToMatch() {
+        index.put(user("1", "alee", "Ann Lee"));
+        index.put(user("2", "apark", "Ann Park"));
+
+        assertEquals(List.of("1"), ids("ann lee", 10));
+        assertEquals(List.of("2"), ids("Park, Ann", 10));
+        assertTrue(ids("ann kim", 10).isEmpty());
+        assertTrue(ids("", 10).isEmpty());
+    }
+
+    @Test
+    void shortTokensMatchWordPrefixesAndMobilesAreSearchable() {
+        index.put(new Entry("1", "ann", "Ann Lee", "ann@example.com", 9_876_543_210L));
+
+        assertEquals(List.of("1"), ids("an", 10));
+        assertEquals(List.of("1"), ids("l", 10));
+        assertEquals(List.of("1"), ids("543210", 10));
+    }
+
+    @Test
+    void anUpdateReplacesTheIndexedFields() {
+        index.put(user("1", "ann", "Ann Lee"));
+        index.put(user("1", "ann", "Ann Park"));
+
+        assertEquals(1, index.size());
+        assertTrue(ids("lee", 10).isEmpty());
+        assertEquals(List.of("1"), ids("park", 10));
+    }
+
+    @Test
+    void compactionKeepsLiveUsersAndDropsRemovedOnes() {
+        int users = 3000;
+        for (int i = 0; i < users; i++) {
+            index.put(user("id" + i, "user" + i, "First" + i + " Last"));
+        }
+        // enough removals and updates for the postings to be rebuilt at least once
+        for (int i = 0; i < users; i += 2) {
+            index.remove("id" + i);
+        }
+        for (int i = 1; i < users; i += 2) {
+            index.put(user("id" + i, "user" + i, "Renamed" + i + " Last"));
+        }
+
+        assertEquals(users / 2, index.size());
+        for (int i = 0; i < users; i++) {
+            String id = "id" + i;
+            if (i % 2 == 0) {
+                assertFalse(index.contains(id));
+                assertFalse(ids("user" + i, 10).contains(id), () -> id + " still found after removal");
+            } else {
+                assertTrue(index.contains(id));
+                assertEquals(id, ids("renamed" + i, 1).get(0));
+                assertFalse(ids("first" + i, 10).contains(id), () -> id + " still found by its old name");
+            }
+        }
+    }
+}
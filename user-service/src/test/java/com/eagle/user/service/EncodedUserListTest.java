@@ -0,0 +1,203 @@
+package com.eagle.user.service;
+
+import com.eagle.user.EncodedUserList;
+import com.eagle.user.GlobalUser;
+import com.eagle.user.GlobalUserRole;
+import com.eagle.user.GlobalUserServiceGrpc;
+import com.eagle.user.ListUsersRequest;
+import com.eagle.user.UserList;
+import com.eagle.user.cache.EncodedUserCache;
+import com.eagle.user.repository.UserVersion;
+import com.google.protobuf.ByteString;
+import io.grpc.Codec;
+import io.grpc.MethodDescriptor;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Responses built from cached bytes and sent with the EncodedUserList marshaller must be what
+ * the generated UserList marshaller would have sent: clients parse them as UserList.
+ */
+class EncodedUserListTest {
+
+    private static final MethodDescriptor<ListUsersRequest, UserList> GET_ALL =
+            GlobalUserServiceGrpc.getGetAllGlobalUsersMethod();
+    private static final DataSize COMPRESS_ABOVE = DataSize.ofKilobytes(64);
+
+    private final EncodedUserCache encodedUserCache = new EncodedUserCache(new SimpleMeterRegistry(), DataSize.ofMegabytes(16));
+    private final GlobalUserGrpcService grpcService = new GlobalUserGrpcService(null, null, COMPRESS_ABOVE);
+
+    private static GlobalUser user(int n, ByteString picture) {
+        return GlobalUser.newBuilder()
+                .setId("EGL" + String.format("%07d", n))
+                .setUsername("user" + n)
+                .setFullname("User " + n)
+                .setDob("1990-01-01")
+                .setEmail("user" + n + "@example.com")
+                .setMobile(9_000_000_000L + n)
+                .addGlobaluserrole(GlobalUserRole.newBuilder().setId(n).setRolename("ROLE_USER"))
+                .putAddressMap("home", n + " Eagle Street")
+                .setActive(true)
+                .setAccountNonExpired(true)
+                .setAccountNonLocked(true)
+                .setCredentialsNonExpired(true)
+                .setProfilePicture(picture)
+                .setProfilePictureHash(picture.isEmpty() ? "" : "hash" + n)
+                .build();
+    }
+
+    private static ByteString picture(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return ByteString.copyFrom(bytes);
+    }
+
+    // assembled the way GlobalUserService does: bytes cached per version or per instance
+    private EncodedUserList encode(List<GlobalUser> users) {
+        EncodedUserList.Builder list = EncodedUserList.newBuilder();
+        for (int i = 0; i < users.size(); i++) {
+            GlobalUser user = users.get(i);
+            list.addGlobaluser(i % 2 == 0
+                    ? encodedUserCache.put(new UserVersion(user.getId(), i), user)
+                    : encodedUserCache.encode(user));
+        }
+        return list.build();
+    }
+
+    private static byte[] serverBytes(EncodedUserList users) throws IOException {
+        try (InputStream stream = GlobalUserGrpcService.encoded(GET_ALL).getResponseMarshaller().stream(users)) {
+            return stream.readAllBytes();
+        }
+    }
+
+    private static UserList clientParse(byte[] wire) {
+        return GET_ALL.getResponseMarshaller().parse(new ByteArrayInputStream(wire));
+    }
+
+    private static byte[] gzipRoundTrip(byte[] message) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new Codec.Gzip().compress(compressed)) {
+            out.write(message);
+        }
+        try (InputStream in = new Codec.Gzip().decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private void assertWireIdentical(List<GlobalUser> users) throws IOException {
+        UserList expected = UserList.newBuilder().addAllGlobaluser(users).build();
+        byte[] wire = serverBytes(encode(users));
+
+        assertArrayEquals(expected.toByteArray(), wire);
+        assertEquals(expected, clientParse(wire));
+    }
+
+    @Test
+    void anEmptyListIsAnEmptyUserList() throws IOException {
+        assertWireIdentical(List.of());
+    }
+
+    @Test
+    void usersWithoutPicturesMatchUserList() throws IOException {
+        List<GlobalUser> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            users.add(user(i, ByteString.EMPTY));
+        }
+        assertWireIdentical(users);
+    }
+
+    @Test
+    void inlinePicturesMatchUserList() throws IOException {
+        assertWireIdentical(List.of(user(1, picture(1)), user(2, ByteString.EMPTY), user(3, picture(20_000))));
+    }
+
+    @Test
+    void aLargeListIsGzippedAndStillParsesAsUserList() throws IOException {
+        List<GlobalUser> users = List.of(user(1, picture(40_000)), user(2, picture(40_000)));
+        EncodedUserList encoded = encode(users);
+        RecordingObserver observer = new RecordingObserver();
+
+        grpcService.compressIfLarge(encoded, observer);
+
+        assertEquals("gzip", observer.compression);
+        UserList expected = UserList.newBuilder().addAllGlobaluser(users).build();
+        assertEquals(expected, clientParse(gzipRoundTrip(serverBytes(encoded))));
+    }
+
+    @Test
+    void aSmallListIsSentUncompressed() {
+        RecordingObserver observer = new RecordingObserver();
+
+        grpcService.compressIfLarge(encode(List.of(user(1, picture(1_000)))), observer);
+
+        assertNull(observer.compression);
+    }
+
+    /** Records the compression the service asks for; nothing is sent through it. */
+    private static final class RecordingObserver extends ServerCallStreamObserver<EncodedUserList> {
+
+        String compression;
+
+        @Override
+        public void setCompression(String compression) {
+            this.compression = compression;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void onNext(EncodedUserList value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
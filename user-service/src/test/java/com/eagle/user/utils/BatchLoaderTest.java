@@ -0,0 +1,119 @@
+package com.eagle.user.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchLoaderTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final List<Set<String>> calls = new CopyOnWriteArrayList<>();
+
+    private BatchLoader<String, String> loader(Function<Set<String>, Mono<Map<String, String>>> batchFunction,
+                                               Duration window, int maxBatchSize) {
+        return new BatchLoader<>("test", keys -> {
+            calls.add(keys);
+            return batchFunction.apply(keys);
+        }, window, maxBatchSize, new SimpleMeterRegistry());
+    }
+
+    private static Mono<Map<String, String>> upperCase(Set<String> keys) {
+        return Mono.just(keys.stream().collect(Collectors.toMap(key -> key, String::toUpperCase)));
+    }
+
+    @Test
+    void loadsOfAKeyInFlightShareOneCall() {
+        Sinks.One<Map<String, String>> result = Sinks.one();
+        BatchLoader<String, String> loader = loader(keys -> result.asMono(), Duration.ZERO, 100);
+
+        Mono<List<String>> both = Flux.merge(loader.load("a"), loader.load("a")).collectList().cache();
+        both.subscribe();
+        result.tryEmitValue(Map.of("a", "A"));
+
+        assertEquals(List.of("A", "A"), both.block(TIMEOUT));
+        assertEquals(List.of(Set.of("a")), calls);
+    }
+
+    @Test
+    void aForgottenKeyStartsANewLoadWhileTheOldOneFinishesForItsCallers() {
+        Sinks.One<Map<String, String>> before = Sinks.one();
+        BatchLoader<String, String> loader = loader(
+                keys -> calls.size() == 1 ? before.asMono() : Mono.just(Map.of("a", "after")), Duration.ZERO, 100);
+
+        Mono<String> early = loader.load("a").cache();
+        early.subscribe();
+        loader.forget("a");
+
+        assertEquals("after", loader.load("a").block(TIMEOUT));
+        before.tryEmitValue(Map.of("a", "before"));
+        assertEquals("before", early.block(TIMEOUT));
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    void keysRequestedWithinTheWindowAreFetchedTogether() {
+        BatchLoader<String, String> loader = loader(BatchLoaderTest::upperCase, Duration.ofMillis(50), 100);
+
+        List<String> values = Flux.merge(loader.load("a"), loader.load("b"), loader.load("c"))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertEquals(Set.of("A", "B", "C"), new HashSet<>(values));
+        assertEquals(List.of(Set.of("a", "b", "c")), calls);
+    }
+
+    @Test
+    void aFullBatchIsDispatchedWithoutWaitingForTheWindow() {
+        BatchLoader<String, String> loader = loader(BatchLoaderTest::upperCase, Duration.ofHours(1), 2);
+
+        List<String> values = Flux.merge(loader.load("a"), loader.load("b"))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertEquals(Set.of("A", "B"), new HashSet<>(values));
+        assertEquals(List.of(Set.of("a", "b")), calls);
+    }
+
+    @Test
+    void keysMissingFromTheResultCompleteEmpty() {
+        BatchLoader<String, String> loader = loader(keys -> Mono.just(Map.of("a", "A")), Duration.ZERO, 100);
+
+        assertNull(loader.load("missing").block(TIMEOUT));
+    }
+
+    @Test
+    void aFailedBatchFailsEveryKeyAndIsRetriedOnTheNextLoad() {
+        BatchLoader<String, String> loader = loader(
+                keys -> calls.size() == 1 ? Mono.error(new IllegalStateException("down")) : upperCase(keys),
+                Duration.ZERO, 100);
+
+        assertThrows(IllegalStateException.class, () -> loader.load("a").block(TIMEOUT));
+        assertEquals("A", loader.load("a").block(TIMEOUT));
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    void theBatchRunsInTheContextOfTheCallerThatOpenedIt() {
+        BatchLoader<String, String> loader = loader(
+                keys -> Mono.deferContextual(context -> Mono.just(Map.of("a", context.<String>get("caller")))),
+                Duration.ZERO, 100);
+
+        assertEquals("first", loader.load("a").contextWrite(context -> context.put("caller", "first")).block(TIMEOUT));
+    }
+}
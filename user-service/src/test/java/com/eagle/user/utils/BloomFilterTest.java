@@ -0,0 +1,34 @@
+package com.eagle.user.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void everyAddedKeyMightBeContained() {
+        BloomFilter filter = new BloomFilter(KEYS, 0.01);
+        for (int i = 0; i < KEYS; i++) {
+            filter.put("e:user" + i + "@example.com");
+        }
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(filter.mightContain("e:user" + i + "@example.com"), "false negative for key " + i);
+        }
+    }
+
+    @Test
+    void falsePositivesStayNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(KEYS, 0.01);
+        for (int i = 0; i < KEYS; i++) {
+            filter.put("m:" + (9_000_000_000L + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < KEYS; i++) {
+            if (filter.mightContain("m:" + (8_000_000_000L + i))) falsePositives++;
+        }
+        assertTrue(falsePositives < KEYS * 0.02, falsePositives + " false positives in " + KEYS);
+    }
+}